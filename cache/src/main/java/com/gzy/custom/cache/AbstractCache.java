@@ -2,8 +2,13 @@ package com.gzy.custom.cache;
 
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -18,6 +23,7 @@ import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +37,30 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
      */
     private volatile ConcurrentHashMap<Object, LoaderLock> loaderMap;
 
+    /**
+     * 包装当前缓存的写回缓存，不为空时加载得到的数据由它判断是否写入
+     */
+    private volatile WriteBehindCache<K, V> writeBehindCache;
+
+    void setWriteBehindCache(WriteBehindCache<K, V> writeBehindCache) {
+        this.writeBehindCache = writeBehindCache;
+    }
+
+    /**
+     * 写入由 CacheLoader 加载（或刷新）得到的数据：不发布失效消息，
+     * 被 WriteBehindCache 包装时跳过待写回的 Key，避免数据源中的旧数据覆盖缓存中还未写回的数据
+     *
+     * @param values 加载得到的数据
+     * @param put 写入缓存的操作，参数为过滤后的数据
+     */
+    CacheResult putLoaded(Map<K, V> values, Function<Map<K, V>, CacheResult> put) {
+        WriteBehindCache<K, V> w = writeBehindCache;
+        if (w != null) {
+            return w.putLoaded(values, m -> MultiLevelCache.loaderWrite(() -> put.apply(m)));
+        }
+        return MultiLevelCache.loaderWrite(() -> put.apply(values));
+    }
+
     ConcurrentHashMap<Object, LoaderLock> initOrGetLoaderMap() {
         if (loaderMap == null) {
             synchronized (this) {
@@ -85,7 +115,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheGetResult<V> GET(K key) {
-        long t = System.currentTimeMillis();
         CacheGetResult<V> result;
         if (key == null) {
             result = new CacheGetResult<V>(CacheResultCode.FAIL, CacheResult.MSG_ILLEGAL_ARGUMENT, null);
@@ -99,7 +128,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final MultiGetResult<K, V> GET_ALL(Set<? extends K> keys) {
-        long t = System.currentTimeMillis();
         MultiGetResult<K, V> result;
         if (keys == null) {
             result = new MultiGetResult<>(CacheResultCode.FAIL, CacheResult.MSG_ILLEGAL_ARGUMENT, null);
@@ -124,6 +152,19 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
                 expireAfterWrite, timeUnit, this);
     }
 
+    @Override
+    public final CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader,
+                                                         boolean cacheNullWhenLoaderReturnNull) {
+        return computeIfAbsentAsyncImpl(key, loader, cacheNullWhenLoaderReturnNull, 0, null, this);
+    }
+
+    @Override
+    public final CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader,
+                                                         boolean cacheNullWhenLoaderReturnNull,
+                                                         long expireAfterWrite, TimeUnit timeUnit) {
+        return computeIfAbsentAsyncImpl(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit, this);
+    }
+
     private static <K, V> boolean needUpdate(V loadedValue, boolean cacheNullWhenLoaderReturnNull, Function<K, V> loader) {
         if (loadedValue == null && !cacheNullWhenLoaderReturnNull) {
             return false;
@@ -160,36 +201,85 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
         if (r.isSuccess()) { // 缓存命中
             return r.getValue();
         } else { // 缓存未命中
-            // 创建当缓存未命中去更新缓存的函数
-            Consumer<V> cacheUpdater = (loadedValue) -> {
-                if(needUpdate(loadedValue, cacheNullWhenLoaderReturnNull, newLoader)) {
-                    /*
-                     * 未在缓存注解中配置 key 的生成方式则默认取入参作为缓存 key
-                     * 在进入当前方法时是否可以考虑为 key 创建一个副本？？？？
-                     * 因为缓存未命中然后通过 loader 重新加载方法时，如果方法内部对入参进行了修改，那么生成的缓存 key 也会被修改
-                     * 从而导致相同的 key 进入该方法时一直与缓存中的 key 不相同，一直出现缓存未命中
-                     */
-                    if (timeUnit != null) {
-                        cache.PUT(key, loadedValue, expireAfterWrite, timeUnit).waitForResult();
-                    } else {
-                        cache.PUT(key, loadedValue).waitForResult();
-                    }
-                }
-            };
+            return loadAndUpdate(key, newLoader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit, cache,
+                    abstractCache);
+        }
+    }
 
-            V loadedValue;
-            if (cache.config().isCachePenetrationProtect()) { // 添加了 @CachePenetrationProtect 注解
-                // 一个JVM只允许一个线程执行
-                loadedValue = synchronizedLoad(cache.config(), abstractCache, key, newLoader, cacheUpdater);
-            } else {
-                // 执行方法
-                loadedValue = newLoader.apply(key);
-                // 将新的结果异步缓存
-                cacheUpdater.accept(loadedValue);
+    /**
+     * 缓存未命中时执行 loader 并更新缓存
+     */
+    private static <K, V> V loadAndUpdate(K key, CacheLoader<K, V> newLoader, boolean cacheNullWhenLoaderReturnNull,
+                                          long expireAfterWrite, TimeUnit timeUnit, Cache<K, V> cache,
+                                          AbstractCache<K, V> abstractCache) {
+        // 创建当缓存未命中去更新缓存的函数
+        Consumer<V> cacheUpdater = (loadedValue) -> {
+            if(needUpdate(loadedValue, cacheNullWhenLoaderReturnNull, newLoader)) {
+                /*
+                 * 未在缓存注解中配置 key 的生成方式则默认取入参作为缓存 key
+                 * 在进入当前方法时是否可以考虑为 key 创建一个副本？？？？
+                 * 因为缓存未命中然后通过 loader 重新加载方法时，如果方法内部对入参进行了修改，那么生成的缓存 key 也会被修改
+                 * 从而导致相同的 key 进入该方法时一直与缓存中的 key 不相同，一直出现缓存未命中
+                 */
+                abstractCache.putLoaded(Collections.singletonMap(key, loadedValue), m -> timeUnit != null
+                        ? cache.PUT(key, loadedValue, expireAfterWrite, timeUnit)
+                        : cache.PUT(key, loadedValue)).waitForResult();
             }
+        };
+
+        V loadedValue;
+        if (cache.config().isCachePenetrationProtect()) { // 添加了 @CachePenetrationProtect 注解
+            // 一个JVM只允许一个线程执行
+            loadedValue = synchronizedLoad(cache.config(), abstractCache, key, newLoader, cacheUpdater);
+        } else {
+            // 执行方法
+            loadedValue = newLoader.apply(key);
+            // 将新的结果异步缓存
+            cacheUpdater.accept(loadedValue);
+        }
+
+        return loadedValue;
+    }
 
-            return loadedValue;
+    /**
+     * computeIfAbsentImpl 的异步版本：组合 GET 结果的 future，命中时直接完成，
+     * 未命中时在 loaderExecutor 中执行 loader，再组合更新缓存（PUT）的 future，调用线程和 IO 线程都不会等待；
+     * 开启了缓存穿透保护时需要等待其他线程的加载结果，整个加载过程在 loaderExecutor 中执行
+     */
+    static <K, V> CompletionStage<V> computeIfAbsentAsyncImpl(K key, Function<K, V> loader,
+                                                             boolean cacheNullWhenLoaderReturnNull,
+                                                             long expireAfterWrite, TimeUnit timeUnit,
+                                                             Cache<K, V> cache) {
+        AbstractCache<K, V> abstractCache = CacheUtil.getAbstractCache(cache);
+        CacheLoader<K, V> newLoader = CacheUtil.createProxyLoader(cache, loader);
+        CacheGetResult<V> r;
+        if (cache instanceof RefreshCache) { // 该缓存实例需要刷新
+            RefreshCache<K, V> refreshCache = ((RefreshCache<K, V>) cache);
+            r = refreshCache.GET(key);
+            refreshCache.addOrUpdateRefreshTask(key, newLoader);
+        } else {
+            r = cache.GET(key);
         }
+        return r.future().thenCompose(resultData -> {
+            if (resultData.getResultCode() == CacheResultCode.SUCCESS) { // 缓存命中
+                return CompletableFuture.completedFuture((V) resultData.getData());
+            }
+            if (cache.config().isCachePenetrationProtect()) {
+                return CompletableFuture.supplyAsync(() -> loadAndUpdate(key, newLoader, cacheNullWhenLoaderReturnNull,
+                        expireAfterWrite, timeUnit, cache, abstractCache), CacheExecutor.loaderExecutor());
+            }
+            return CompletableFuture.supplyAsync(() -> newLoader.apply(key), CacheExecutor.loaderExecutor())
+                    .thenCompose(loadedValue -> {
+                        if (!needUpdate(loadedValue, cacheNullWhenLoaderReturnNull, newLoader)) {
+                            return CompletableFuture.completedFuture(loadedValue);
+                        }
+                        CacheResult putResult = abstractCache.putLoaded(Collections.singletonMap(key, loadedValue),
+                                m -> timeUnit != null
+                                        ? cache.PUT(key, loadedValue, expireAfterWrite, timeUnit)
+                                        : cache.PUT(key, loadedValue));
+                        return putResult.future().thenApply(putResultData -> loadedValue);
+                    });
+        });
     }
 
     static <K, V> V synchronizedLoad(CacheConfig config, AbstractCache<K,V> abstractCache,
@@ -248,6 +338,115 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
         }
     }
 
+    /**
+     * synchronizedLoad 的批量版本：先为所有 Key 登记 LoaderLock，当前线程登记成功的 Key 调用一次 CacheLoader.loadAll 加载，
+     * 其他线程正在加载的 Key 在加载结束后直接使用其结果，所有 Key 共用一个等待超时时间。
+     * 与 synchronizedLoad 使用同一组 LoaderLock，单个 Key 的加载与批量加载之间同样只加载一次
+     *
+     * @param cacheUpdater 将当前线程加载的数据更新至缓存
+     * @return Key 对应的数据，加载结果中没有的 Key 对应 null
+     */
+    static <K, V> Map<K, V> synchronizedLoadAll(CacheConfig config, AbstractCache<K, V> abstractCache, Set<K> keys,
+                                                CacheLoader<K, V> loader, Consumer<Map<K, V>> cacheUpdater)
+        throws Throwable {
+        ConcurrentHashMap<Object, LoaderLock> loaderMap = abstractCache.initOrGetLoaderMap();
+        Map<K, V> result = new HashMap<>();
+        // 当前线程负责加载的 Key -> 对应的 LockKey，不是当前线程创建的（重入）为 null
+        Map<K, Object> ownLockKeys = new HashMap<>();
+        Map<K, LoaderLock> ownLocks = new HashMap<>();
+        Map<K, LoaderLock> waitLocks = new HashMap<>();
+        for (K key : keys) {
+            Object lockKey = buildLoaderLockKey(abstractCache, key);
+            boolean create[] = new boolean[1];
+            LoaderLock ll = loaderMap.computeIfAbsent(lockKey, (unusedKey) -> {
+                create[0] = true;
+                LoaderLock loaderLock = new LoaderLock();
+                loaderLock.signal = new CountDownLatch(1);
+                loaderLock.loaderThread = Thread.currentThread();
+                return loaderLock;
+            });
+            if (create[0] || ll.loaderThread == Thread.currentThread()) {
+                ownLockKeys.put(key, create[0] ? lockKey : null);
+                ownLocks.put(key, ll);
+            } else {
+                waitLocks.put(key, ll);
+            }
+        }
+
+        if (!ownLocks.isEmpty()) {
+            try {
+                Map<K, V> loaded = loader.loadAll(new HashSet<>(ownLocks.keySet()));
+                if (loaded == null) {
+                    loaded = Collections.emptyMap();
+                }
+                for (Map.Entry<K, LoaderLock> en : ownLocks.entrySet()) {
+                    V v = loaded.get(en.getKey());
+                    en.getValue().success = true;
+                    en.getValue().value = v;
+                    result.put(en.getKey(), v);
+                }
+                // 将加载的数据更新至缓存
+                cacheUpdater.accept(loaded);
+            } finally {
+                // 标记已完成
+                ownLocks.forEach((key, ll) -> {
+                    ll.signal.countDown();
+                    Object lockKey = ownLockKeys.get(key);
+                    if (lockKey != null) {
+                        loaderMap.remove(lockKey);
+                    }
+                });
+            }
+        }
+
+        if (!waitLocks.isEmpty()) {
+            // 等待其他线程加载：其他线程加载失败的 Key 重新登记，超时或者被中断的 Key 自己加载，但是不更新缓存
+            Set<K> retryKeys = new HashSet<>();
+            Set<K> selfLoadKeys = new HashSet<>();
+            Duration timeout = config.getPenetrationProtectTimeout();
+            long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+            boolean interrupted = false;
+            for (Map.Entry<K, LoaderLock> en : waitLocks.entrySet()) {
+                LoaderLock ll = en.getValue();
+                boolean ok = false;
+                if (!interrupted) {
+                    try {
+                        if (timeout == null) {
+                            ll.signal.await();
+                            ok = true;
+                        } else {
+                            ok = ll.signal.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                        }
+                    } catch (InterruptedException e) {
+                        logger.warn("loader wait interrupted");
+                        interrupted = true;
+                    }
+                }
+                if (!ok) {
+                    selfLoadKeys.add(en.getKey());
+                } else if (ll.success) {
+                    result.put(en.getKey(), (V) ll.value);
+                } else {
+                    retryKeys.add(en.getKey());
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (!selfLoadKeys.isEmpty()) {
+                logger.info("loader wait timeout:" + timeout + ", keys(" + selfLoadKeys.size() + ")");
+                Map<K, V> loaded = loader.loadAll(selfLoadKeys);
+                for (K key : selfLoadKeys) {
+                    result.put(key, loaded == null ? null : loaded.get(key));
+                }
+            }
+            if (!retryKeys.isEmpty()) {
+                result.putAll(synchronizedLoadAll(config, abstractCache, retryKeys, loader, cacheUpdater));
+            }
+        }
+        return result;
+    }
+
     private static Object buildLoaderLockKey(Cache c, Object key) {
         if (c instanceof AbstractEmbeddedCache) {
             return ((AbstractEmbeddedCache) c).buildKey(key);
@@ -267,7 +466,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheResult PUT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
-        long t = System.currentTimeMillis();
         CacheResult result;
         if (key == null) {
             result = CacheResult.FAIL_ILLEGAL_ARGUMENT;
@@ -281,7 +479,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheResult PUT_ALL(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
-        long t = System.currentTimeMillis();
         CacheResult result;
         if (map == null) {
             result = CacheResult.FAIL_ILLEGAL_ARGUMENT;
@@ -295,7 +492,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheResult REMOVE(K key) {
-        long t = System.currentTimeMillis();
         CacheResult result;
         if (key == null) {
             result = CacheResult.FAIL_ILLEGAL_ARGUMENT;
@@ -309,7 +505,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheResult REMOVE_ALL(Set<? extends K> keys) {
-        long t = System.currentTimeMillis();
         CacheResult result;
         if (keys == null) {
             result = CacheResult.FAIL_ILLEGAL_ARGUMENT;
@@ -323,7 +518,6 @@ public abstract class AbstractCache<K, V> implements Cache<K, V> {
 
     @Override
     public final CacheResult PUT_IF_ABSENT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
-        long t = System.currentTimeMillis();
         CacheResult result;
         if (key == null) {
             result = CacheResult.FAIL_ILLEGAL_ARGUMENT;
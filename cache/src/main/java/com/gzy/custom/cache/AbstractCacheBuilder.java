@@ -59,6 +59,10 @@ public abstract class AbstractCacheBuilder<T extends AbstractCacheBuilder<T>> im
                 cache = new RefreshCache<>(cache);
             }
         }
+        if (c.getWriter() != null) {
+            // 最外层封装，只有调用方的写入需要写回，加载得到的数据不写回
+            cache = new WriteBehindCache<>(cache);
+        }
         return cache;
     }
 
@@ -119,6 +123,24 @@ public abstract class AbstractCacheBuilder<T extends AbstractCacheBuilder<T>> im
         getConfig().setLoader(loader);
     }
 
+    public <K, V> T writer(CacheWriter<K, V> writer) {
+        getConfig().setWriter(writer);
+        return self();
+    }
+
+    public <K, V> void setWriter(CacheWriter<K, V> writer) {
+        getConfig().setWriter(writer);
+    }
+
+    public T writeBehindPolicy(WriteBehindPolicy writeBehindPolicy) {
+        getConfig().setWriteBehindPolicy(writeBehindPolicy);
+        return self();
+    }
+
+    public void setWriteBehindPolicy(WriteBehindPolicy writeBehindPolicy) {
+        getConfig().setWriteBehindPolicy(writeBehindPolicy);
+    }
+
     public T refreshPolicy(RefreshPolicy refreshPolicy) {
         getConfig().setRefreshPolicy(refreshPolicy);
         return self();
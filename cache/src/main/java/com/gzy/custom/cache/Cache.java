@@ -1,9 +1,11 @@
 package com.gzy.custom.cache;
 
 import java.io.Closeable;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -13,6 +15,7 @@ import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,11 +32,56 @@ public interface Cache<K, V> extends Closeable {
         }
     }
 
+    /**
+     * 只查询缓存，不触发加载，Key 不存在或已过期时返回 null
+     */
+    default V getIfPresent(K key) {
+        return getIfPresent(key, null);
+    }
+
+    /**
+     * 只查询缓存，不触发加载，Key 不存在或已过期时返回 defaultValue
+     * 缓存了 null 值时，可以传入一个哨兵对象区分“不存在”和“值为 null”
+     * 本地缓存会直接查询内部的 Map，命中时不创建 CacheGetResult 等对象
+     */
+    default V getIfPresent(K key, V defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        CacheGetResult<V> result = GET(key);
+        return result.isSuccess() ? result.getValue() : defaultValue;
+    }
+
     default Map<K, V> getAll(Set<? extends K> keys) throws CacheInvokeException {
         MultiGetResult<K, V> cacheGetResults = GET_ALL(keys);
         return cacheGetResults.unwrapValues();
     }
 
+    /**
+     * get 的异步版本，由 GET 结果的 future 组合而成，不阻塞调用线程；失败时结果为 null
+     */
+    default CompletionStage<V> getAsync(K key) {
+        return GET(key).future().thenApply(
+                resultData -> resultData.getResultCode() == CacheResultCode.SUCCESS ? (V) resultData.getData() : null);
+    }
+
+    /**
+     * getAll 的异步版本，由 GET_ALL 结果的 future 组合而成，不阻塞调用线程；失败时结果为空 Map
+     */
+    default CompletionStage<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+        return GET_ALL(keys).future().thenApply(resultData -> {
+            Map<K, V> m = new HashMap<>();
+            if (resultData.getResultCode() == CacheResultCode.SUCCESS && resultData.getOriginData() != null) {
+                ((Map<K, CacheGetResult<V>>) resultData.getOriginData()).forEach((k, r) -> {
+                    if (r.isSuccess()) {
+                        m.put(k, r.getValue());
+                    }
+                });
+            }
+            return m;
+        });
+    }
+
     default void put(K key, V value) {
         PUT(key, value);
     }
@@ -88,13 +136,13 @@ public interface Cache<K, V> extends Closeable {
         // 随机生成一个值
         final String uuid = UUID.randomUUID().toString();
         // 过期时间
-        final long expireTimestamp = System.currentTimeMillis() + timeUnit.toMillis(expire);
+        final long expireTimestamp = CacheClock.now() + timeUnit.toMillis(expire);
         final CacheConfig config = config();
 
         AutoReleaseLock lock = () -> { // 创建一把会自动释放资源的锁，实现其 close() 方法
             int unlockCount = 0;
             while (unlockCount++ < config.getTryLockUnlockCount()) {
-                if (System.currentTimeMillis() < expireTimestamp) { // 这把锁还没有过期，则删除
+                if (CacheClock.now() < expireTimestamp) { // 这把锁还没有过期，则删除
                     // 删除对应的 Key 值
                     // 出现的结果：成功，失败，Key 不存在
                     CacheResult unlockResult = REMOVE(key);
@@ -185,6 +233,18 @@ public interface Cache<K, V> extends Closeable {
 
     V computeIfAbsent(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull, long expireAfterWrite, TimeUnit timeUnit);
 
+    /**
+     * computeIfAbsent 的异步版本：查询缓存不阻塞调用线程，未命中时在 loaderExecutor 中执行 loader，再组合更新缓存的结果
+     */
+    default CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader) {
+        return computeIfAbsentAsync(key, loader, config().isCacheNullValue());
+    }
+
+    CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull);
+
+    CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull,
+                                            long expireAfterWrite, TimeUnit timeUnit);
+
 
     <T> T unwrap(Class<T> clazz);
 
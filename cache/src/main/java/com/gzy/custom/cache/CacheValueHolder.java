@@ -2,6 +2,8 @@ package com.gzy.custom.cache;
 
 import java.io.Serializable;
 
+import com.gzy.custom.cache.support.CacheClock;
+
 /**
  * 缓存值-按时间过期策略 封装类
  * @param <V>
@@ -19,17 +21,22 @@ public final class CacheValueHolder<V> implements Serializable {
      */
     private long expireTime;
     /**
-     * 第一次访问的时间
+     * 最后一次访问的时间，读缓存时不加锁直接更新，volatile 保证 long 的写入是原子的
+     */
+    private volatile long accessTime;
+    /**
+     * 写入时的存活时间，为 0 表示未知（例如由只保存了失效时间的存储结构还原出来的数据）
      */
-    private long accessTime;
+    private long expireAfterWrite;
 
     public CacheValueHolder() {
     }
 
     public CacheValueHolder(V value, long expireAfterWrite) {
         this.value = value;
-        this.accessTime = System.currentTimeMillis();
+        this.accessTime = CacheClock.now();
         this.expireTime = accessTime + expireAfterWrite;
+        this.expireAfterWrite = expireAfterWrite;
     }
 
     public V getValue() {
@@ -48,6 +55,14 @@ public final class CacheValueHolder<V> implements Serializable {
         this.expireTime = expireTime;
     }
 
+    public long getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
     public long getAccessTime() {
         return accessTime;
     }
@@ -0,0 +1,26 @@
+package com.gzy.custom.cache;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 写回数据源（例如 DB）的接口，用于 WriteBehindCache：数据先写入缓存，再由 WriteBehindCache 定时批量调用
+ */
+@FunctionalInterface
+public interface CacheWriter<K, V> {
+
+    /**
+     * 批量写入数据，抛出异常时这一批数据稍后重试
+     *
+     * @param entries 需要写入的数据，同一个 Key 的多次写入已合并为最后一次
+     */
+    void writeAll(Map<K, V> entries) throws Throwable;
+
+    /**
+     * 批量删除数据，抛出异常时这一批数据稍后重试，默认不处理删除
+     *
+     * @param keys 需要删除的 Key
+     */
+    default void deleteAll(Set<K> keys) throws Throwable {
+    }
+}
@@ -2,13 +2,17 @@ package com.gzy.custom.cache;
 
 import com.gzy.custom.cache.config.CacheConfig;
 import com.gzy.custom.cache.exception.CacheInvokeException;
+import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheExecutor;
 
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -43,6 +47,17 @@ public class LoadingCache<K, V> extends SimpleProxyCache<K, V> {
         return true;
     }
 
+    @Override
+    public CompletionStage<V> getAsync(K key) {
+        CacheLoader<K, V> loader = config.getLoader();
+        if (loader != null) {
+            return AbstractCache.computeIfAbsentAsyncImpl(key, loader,
+                    config.isCacheNullValue(), 0, null, this);
+        } else {
+            return cache.getAsync(key);
+        }
+    }
+
     @Override
     public Map<K, V> getAll(Set<? extends K> keys) throws CacheInvokeException {
         CacheLoader<K, V> loader = config.getLoader();
@@ -60,43 +75,119 @@ public class LoadingCache<K, V> extends SimpleProxyCache<K, V> {
                     keysNeedLoad.add(k);
                 }
             });
-            if (!config.isCachePenetrationProtect()) {
-                loader = CacheUtil.createProxyLoader(cache, loader);
-                Map<K, V> loadResult;
-                try {
-                    loadResult = loader.loadAll(keysNeedLoad);
+            kvMap.putAll(loadAll(keysNeedLoad, loader));
+            return kvMap;
+        } else {
+            return cache.getAll(keys);
+        }
 
-                    CacheLoader<K, V> theLoader = loader;
-                    Map<K, V> updateValues = loadResult.entrySet().stream()
-                            .filter(kvEntry -> needUpdate(kvEntry.getValue(), theLoader))
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
 
-                    // batch put
-                    if (!updateValues.isEmpty()) {
-                        PUT_ALL(updateValues);
+    /**
+     * getAll 的异步版本：组合 GET_ALL 结果的 future，全部命中时直接完成，
+     * 否则在 loaderExecutor 中加载未命中的 Key，再组合更新缓存（PUT_ALL）的 future，调用线程和 IO 线程都不会等待
+     */
+    @Override
+    public CompletionStage<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+        CacheLoader<K, V> loader = config.getLoader();
+        if (loader == null) {
+            return cache.getAllAsync(keys);
+        }
+        return GET_ALL(keys).future().thenCompose(resultData -> {
+            Map<K, V> kvMap = new HashMap<>();
+            if ((resultData.getResultCode() == CacheResultCode.SUCCESS
+                    || resultData.getResultCode() == CacheResultCode.PART_SUCCESS)
+                    && resultData.getOriginData() != null) {
+                ((Map<K, CacheGetResult<V>>) resultData.getOriginData()).forEach((k, r) -> {
+                    if (r.isSuccess()) {
+                        kvMap.put(k, r.getValue());
                     }
+                });
+            }
+            Set<K> keysNeedLoad = new HashSet<>();
+            keys.forEach((k) -> {
+                if (!kvMap.containsKey(k)) {
+                    keysNeedLoad.add(k);
+                }
+            });
+            if (keysNeedLoad.isEmpty()) {
+                return CompletableFuture.completedFuture(kvMap);
+            }
+            if (config.isCachePenetrationProtect()) {
+                // 需要等待其他线程的加载结果，整个加载过程在 loaderExecutor 中执行
+                return CompletableFuture.supplyAsync(() -> {
+                    kvMap.putAll(loadAll(keysNeedLoad, loader));
+                    return kvMap;
+                }, CacheExecutor.loaderExecutor());
+            }
+            CacheLoader<K, V> proxyLoader = CacheUtil.createProxyLoader(cache, loader);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return proxyLoader.loadAll(keysNeedLoad);
                 } catch (Throwable e) {
                     throw new CacheInvokeException(e);
                 }
+            }, CacheExecutor.loaderExecutor()).thenCompose(loadResult -> {
                 kvMap.putAll(loadResult);
-            } else {
-                AbstractCache<K, V> abstractCache = CacheUtil.getAbstractCache(cache);
-                loader = CacheUtil.createProxyLoader(cache, loader);
-                for(K key : keysNeedLoad) {
-                    Consumer<V> cacheUpdater = (v) -> {
-                        if(needUpdate(v, config.getLoader())) {
-                            PUT(key, v);
-                        }
-                    };
-                    V v = AbstractCache.synchronizedLoad(config, abstractCache, key, loader, cacheUpdater);
-                    kvMap.put(key, v);
+                Map<K, V> updateValues = new HashMap<>();
+                loadResult.forEach((k, v) -> {
+                    if (needUpdate(v, proxyLoader)) {
+                        updateValues.put(k, v);
+                    }
+                });
+                if (updateValues.isEmpty()) {
+                    return CompletableFuture.completedFuture(kvMap);
+                }
+                return CacheUtil.getAbstractCache(cache).putLoaded(updateValues, this::PUT_ALL).future()
+                        .thenApply(putResultData -> kvMap);
+            });
+        });
+    }
+
+    /**
+     * 加载未命中的 Key 并更新缓存
+     */
+    private Map<K, V> loadAll(Set<K> keysNeedLoad, CacheLoader<K, V> loader) {
+        if (!config.isCachePenetrationProtect()) {
+            loader = CacheUtil.createProxyLoader(cache, loader);
+            Map<K, V> loadResult;
+            try {
+                loadResult = loader.loadAll(keysNeedLoad);
+
+                CacheLoader<K, V> theLoader = loader;
+                Map<K, V> updateValues = loadResult.entrySet().stream()
+                        .filter(kvEntry -> needUpdate(kvEntry.getValue(), theLoader))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+                // batch put
+                if (!updateValues.isEmpty()) {
+                    CacheUtil.getAbstractCache(cache).putLoaded(updateValues, this::PUT_ALL);
                 }
+            } catch (Throwable e) {
+                throw new CacheInvokeException(e);
             }
-            return kvMap;
+            return loadResult;
         } else {
-            return cache.getAll(keys);
+            AbstractCache<K, V> abstractCache = CacheUtil.getAbstractCache(cache);
+            loader = CacheUtil.createProxyLoader(cache, loader);
+            // 同一个 Key 只有一个线程加载，当前线程负责的 Key 调用一次 loadAll 批量加载
+            CacheLoader<K, V> theLoader = loader;
+            Consumer<Map<K, V>> cacheUpdater = (loaded) -> {
+                Map<K, V> updateValues = new HashMap<>();
+                loaded.forEach((k, v) -> {
+                    if (needUpdate(v, theLoader)) {
+                        updateValues.put(k, v);
+                    }
+                });
+                if (!updateValues.isEmpty()) {
+                    CacheUtil.getAbstractCache(cache).putLoaded(updateValues, this::PUT_ALL);
+                }
+            };
+            try {
+                return AbstractCache.synchronizedLoadAll(config, abstractCache, keysNeedLoad, loader, cacheUpdater);
+            } catch (Throwable e) {
+                throw new CacheInvokeException(e);
+            }
         }
-
     }
 }
-
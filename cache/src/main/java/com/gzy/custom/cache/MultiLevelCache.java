@@ -3,22 +3,44 @@ package com.gzy.custom.cache;
 import com.gzy.custom.cache.config.CacheConfig;
 import com.gzy.custom.cache.config.MultiLevelCacheConfig;
 import com.gzy.custom.cache.exception.CacheConfigException;
+import com.gzy.custom.cache.localcache.AbstractEmbeddedCache;
 import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
+import com.gzy.custom.cache.support.CacheInvalidator;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
 
+    /**
+     * getIfPresent 查询第一级缓存时使用的哨兵，用于区分“不存在”和“值为 null”
+     */
+    private static final Object ABSENT = new Object();
+
+    /**
+     * 当前线程正在写入由 CacheLoader 加载（或刷新）得到的数据，这些写入不发布失效消息
+     */
+    private static final ThreadLocal<Boolean> LOADER_WRITE = new ThreadLocal<>();
+
     private Cache[] caches;
 
     private MultiLevelCacheConfig<K, V> config;
 
+    /**
+     * 配置了失效消息通道时不为空
+     */
+    private CacheInvalidator invalidator;
+
     @SuppressWarnings("unchecked")
     @Deprecated
     public MultiLevelCache(Cache... caches) throws CacheConfigException {
@@ -36,6 +58,48 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
         this.config = cacheConfig;
         this.caches = cacheConfig.getCaches().toArray(new Cache[] {});
         checkCaches();
+        if (cacheConfig.getInvalidationChannel() != null) {
+            this.invalidator = new CacheInvalidator(cacheConfig.getInvalidationChannel(),
+                    cacheConfig.getInvalidationBatchWindowMillis(), cacheConfig.getInvalidationMaxBatchKeys(),
+                    this::invalidateLocal);
+        }
+    }
+
+    /**
+     * 收到其他节点的失效消息，删除除最后一级（远程缓存）以外的缓存
+     */
+    private void invalidateLocal(List<Object> keys) {
+        Set<Object> keySet = new HashSet<>(keys);
+        for (int i = 0; i < caches.length - 1; i++) {
+            caches[i].REMOVE_ALL(keySet);
+        }
+    }
+
+    /**
+     * 所有缓存都写入完成后再通知其他节点，避免其他节点在远程缓存更新之前重新加载旧数据
+     */
+    private CacheResult publishInvalidation(CacheResult result, Collection<?> keys) {
+        if (invalidator == null || LOADER_WRITE.get() != null) {
+            return result;
+        }
+        result.future().thenRun(() -> invalidator.invalidate(keys));
+        return result;
+    }
+
+    /**
+     * 执行由 CacheLoader 加载（或刷新）得到的数据的写入：数据来自数据源，其他节点不需要删除本地缓存，
+     * 其中的写入不发布失效消息，否则每次刷新都会删除其他节点刚同步到本地缓存的数据
+     */
+    static <T> T loaderWrite(Supplier<T> write) {
+        if (LOADER_WRITE.get() != null) {
+            return write.get();
+        }
+        LOADER_WRITE.set(Boolean.TRUE);
+        try {
+            return write.get();
+        } finally {
+            LOADER_WRITE.remove();
+        }
     }
 
     private void checkCaches() {
@@ -80,12 +144,18 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
 
     @Override
     protected CacheGetResult<V> do_GET(K key) {
-        // 遍历多级缓存（远程缓存排在后面）
-        for (int i = 0; i < caches.length; i++) {
-            Cache cache = caches[i];
-            CacheGetResult result = cache.GET(key);
-            if (result.isSuccess()) {
-                CacheValueHolder<V> holder = unwrapHolder(result.getHolder());
+        // 遍历多级缓存（远程缓存排在后面），前一级未命中时在其结果完成后再查询下一级，不阻塞调用线程
+        return new CacheGetResult<>(getFrom(key, 0));
+    }
+
+    private CompletionStage<ResultData> getFrom(K key, int i) {
+        if (i >= caches.length) {
+            return CompletableFuture.completedFuture(
+                    new ResultData(CacheResultCode.NOT_EXISTS, null, null));
+        }
+        return boundedFuture(caches[i].GET(key)).thenCompose(resultData -> {
+            if (resultData.getResultCode() == CacheResultCode.SUCCESS) {
+                CacheValueHolder<V> holder = unwrapHolder((CacheValueHolder<V>) resultData.getOriginData());
                 /*
                  * 这个遍历是从低层的缓存开始获取，获取成功则将该值设置到更低层的缓存中
                  * 情景：
@@ -93,10 +163,39 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
                  * 这样下次请求则直接从本次获取，减少了远程获取的时间
                  */
                 checkResultAndFillUpperCache(key, i, holder);
-                return new CacheGetResult(CacheResultCode.SUCCESS, null, holder);
+                return CompletableFuture.completedFuture(new ResultData(CacheResultCode.SUCCESS, null, holder));
             }
+            return getFrom(key, i + 1);
+        });
+    }
+
+    /**
+     * 子缓存结果的 future，未完成时按该结果的超时时间限制等待，超时或异常视为失败，与同步获取结果时一致
+     */
+    private static CompletionStage<ResultData> boundedFuture(CacheResult result) {
+        CompletableFuture<ResultData> future = result.future().toCompletableFuture();
+        if (future.isDone()) {
+            return future.exceptionally(ResultData::new);
         }
-        return CacheGetResult.NOT_EXISTS_WITHOUT_MSG;
+        return future.copy()
+                .completeOnTimeout(new ResultData(new TimeoutException()),
+                        result.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(ResultData::new);
+    }
+
+    @Override
+    public V getIfPresent(K key, V defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        // 先只查询第一级缓存（通常为本地缓存），命中则直接返回
+        Object value = caches[0].getIfPresent(key, ABSENT);
+        if (value != ABSENT) {
+            return (V) value;
+        }
+        // 第一级未命中，从第二级开始查询，不再重复查询第一级
+        CacheGetResult<V> result = new CacheGetResult<>(getFrom(key, 1));
+        return result.isSuccess() ? result.getValue() : defaultValue;
     }
 
     private CacheValueHolder<V> unwrapHolder(CacheValueHolder<V> h) {
@@ -116,7 +215,7 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
     private void checkResultAndFillUpperCache(K key, int i, CacheValueHolder<V> h) {
         Objects.requireNonNull(h);
         long currentExpire = h.getExpireTime();
-        long now = System.currentTimeMillis();
+        long now = CacheClock.now();
         if (now <= currentExpire) {
             if (config.isUseExpireOfSubCache()) { // 如果使用本地自己的缓存过期时间
                 // 使用本地缓存自己的过期时间
@@ -133,15 +232,22 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
     @Override
     protected MultiGetResult<K, V> do_GET_ALL(Set<? extends K> keys) {
         HashMap<K, CacheGetResult<V>> resultMap = new HashMap<>();
-        Set<K> restKeys = new HashSet<>(keys);
-        for (int i = 0; i < caches.length; i++) {
-            if (restKeys.size() == 0) {
-                break;
+        return new MultiGetResult<>(getAllFrom(new HashSet<>(keys), 0, resultMap));
+    }
+
+    private CompletionStage<ResultData> getAllFrom(Set<K> restKeys, int i, Map<K, CacheGetResult<V>> resultMap) {
+        if (i >= caches.length || restKeys.isEmpty()) {
+            for (K k : restKeys) {
+                resultMap.put(k, CacheGetResult.NOT_EXISTS_WITHOUT_MSG);
             }
-            Cache<K, CacheValueHolder<V>> c = caches[i];
-            MultiGetResult<K, CacheValueHolder<V>> allResult = c.GET_ALL(restKeys);
-            if (allResult.isSuccess() && allResult.getValues() != null) {
-                for (Map.Entry<K, CacheGetResult<CacheValueHolder<V>>> en : allResult.getValues().entrySet()) {
+            return CompletableFuture.completedFuture(new ResultData(CacheResultCode.SUCCESS, null, resultMap));
+        }
+        Cache<K, CacheValueHolder<V>> c = caches[i];
+        return boundedFuture(c.GET_ALL(restKeys)).thenCompose(resultData -> {
+            Map<K, CacheGetResult<CacheValueHolder<V>>> values =
+                    (Map<K, CacheGetResult<CacheValueHolder<V>>>) resultData.getOriginData();
+            if (resultData.getResultCode() == CacheResultCode.SUCCESS && values != null) {
+                for (Map.Entry<K, CacheGetResult<CacheValueHolder<V>>> en : values.entrySet()) {
                     K key = en.getKey();
                     CacheGetResult result = en.getValue();
                     if (result.isSuccess()) {
@@ -152,79 +258,92 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
                     }
                 }
             }
-        }
-        for (K k : restKeys) {
-            resultMap.put(k, CacheGetResult.NOT_EXISTS_WITHOUT_MSG);
-        }
-        return new MultiGetResult<>(CacheResultCode.SUCCESS, null, resultMap);
+            return getAllFrom(restKeys, i + 1, resultMap);
+        });
     }
 
     @Override
     protected CacheResult do_PUT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
-        return PUT_caches(caches.length, key, value, expireAfterWrite, timeUnit);
+        return publishInvalidation(PUT_caches(caches.length, key, value, expireAfterWrite, timeUnit),
+                Collections.singletonList(key));
     }
 
     @Override
     protected CacheResult do_PUT_ALL(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
-        CompletableFuture<ResultData> future = CompletableFuture.completedFuture(null);
-        for (Cache c : caches) {
-            CacheResult r;
+        CacheResult result = writeCaches(caches.length, cache -> {
             if (timeUnit == null) {
-                r = c.PUT_ALL(map);
+                return cache.PUT_ALL(map);
             } else {
-                r = c.PUT_ALL(map, expireAfterWrite, timeUnit);
+                return cache.PUT_ALL(map, expireAfterWrite, timeUnit);
             }
-            future = combine(future, r);
-        }
-        return new CacheResult(future);
+        });
+        return publishInvalidation(result, new ArrayList<>(map.keySet()));
     }
 
     private CacheResult PUT_caches(int lastIndex, K key, V value, long expire, TimeUnit timeUnit) {
-        CompletableFuture<ResultData> future = CompletableFuture.completedFuture(null);
-        for (int i = 0; i < lastIndex; i++) {
-            Cache cache = caches[i];
-            CacheResult r;
+        return writeCaches(lastIndex, cache -> {
             if (timeUnit == null) { // 表示本地缓存使用自己过期时间
-                r = cache.PUT(key, value);
+                return cache.PUT(key, value);
             } else {
-                r = cache.PUT(key, value, expire, timeUnit);
+                return cache.PUT(key, value, expire, timeUnit);
             }
-            // 将多个 PUT 操作放在一条链上
-            future = combine(future, r);
-        }
-        return new CacheResult(future);
+        });
     }
 
-    private CompletableFuture<ResultData> combine(CompletableFuture<ResultData> future, CacheResult result) {
-        return future.thenCombine(result.future(), (d1, d2) -> {
-            if (d1 == null) {
-                return d2;
+    /**
+     * 对前 lastIndex 级缓存执行写操作，返回汇总后的结果
+     *
+     * 开启了 parallelWrite 时先分发非本地缓存的写操作，再执行本地缓存，
+     * 异步的远程缓存（Lettuce、AsyncRedisCache）在执行本地缓存期间同时进行；
+     * 写操作都在调用线程中分发、不切换线程，同一个调用方对同一个 Key 的多次写入按顺序到达各级缓存。
+     * 开启了 completeOnLastTier 且写入了所有缓存时，最后一级缓存完成即返回，其他缓存的结果不再等待
+     */
+    private CacheResult writeCaches(int lastIndex, Function<Cache, CacheResult> operation) {
+        if (lastIndex == 0) {
+            return CacheResult.SUCCESS_WITHOUT_MSG;
+        }
+        CompletableFuture<ResultData>[] futures = new CompletableFuture[lastIndex];
+        if (config.isParallelWrite()) {
+            for (int i = 0; i < lastIndex; i++) {
+                if (!(caches[i] instanceof AbstractEmbeddedCache)) {
+                    futures[i] = operation.apply(caches[i]).future().toCompletableFuture();
+                }
             }
-            if (d1.getResultCode() != d2.getResultCode()) {
+        }
+        for (int i = 0; i < lastIndex; i++) {
+            if (futures[i] == null) {
+                futures[i] = operation.apply(caches[i]).future().toCompletableFuture();
+            }
+        }
+        if (lastIndex == 1 || (config.isCompleteOnLastTier() && lastIndex == caches.length)) {
+            return new CacheResult(futures[lastIndex - 1]);
+        }
+        return new CacheResult(CompletableFuture.allOf(futures).thenApply(v -> aggregate(futures)));
+    }
+
+    /**
+     * 所有结果码相同时返回第一个结果，否则返回 PART_SUCCESS
+     */
+    private static ResultData aggregate(CompletableFuture<ResultData>[] futures) {
+        ResultData first = futures[0].join();
+        for (int i = 1; i < futures.length; i++) {
+            if (futures[i].join().getResultCode() != first.getResultCode()) {
                 return new ResultData(CacheResultCode.PART_SUCCESS, null, null);
             }
-            return d1;
-        });
+        }
+        return first;
     }
 
     @Override
     protected CacheResult do_REMOVE(K key) {
-        CompletableFuture<ResultData> future = CompletableFuture.completedFuture(null);
-        for (Cache cache : caches) {
-            CacheResult r = cache.REMOVE(key);
-            future = combine(future, r);
-        }
-        return new CacheResult(future);
+        return publishInvalidation(writeCaches(caches.length, cache -> cache.REMOVE(key)),
+                Collections.singletonList(key));
     }
 
     @Override
     protected CacheResult do_REMOVE_ALL(Set<? extends K> keys) {
-        CompletableFuture<ResultData> future = CompletableFuture.completedFuture(null);
-        for (Cache cache : caches) {
-            CacheResult r = cache.REMOVE_ALL(keys);
-            future = combine(future, r);
-        }
-        return new CacheResult(future);
+        return publishInvalidation(writeCaches(caches.length, cache -> cache.REMOVE_ALL(keys)),
+                new ArrayList<>(keys));
     }
 
     @Override
@@ -263,6 +382,9 @@ public class MultiLevelCache<K, V> extends AbstractCache<K, V> {
 
     @Override
     public void close() {
+        if (invalidator != null) {
+            invalidator.close();
+        }
         for (Cache c : caches) {
             c.close();
         }
@@ -1,6 +1,7 @@
 package com.gzy.custom.cache;
 
 import com.gzy.custom.cache.config.MultiLevelCacheConfig;
+import com.gzy.custom.cache.support.InvalidationChannel;
 
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -45,6 +46,60 @@ public class MultiLevelCacheBuilder<T extends MultiLevelCacheBuilder<T>> extends
         getConfig().setUseExpireOfSubCache(useExpireOfSubCache);
     }
 
+    public T parallelWrite(boolean parallelWrite) {
+        getConfig().setParallelWrite(parallelWrite);
+        return self();
+    }
+
+    public void setParallelWrite(boolean parallelWrite) {
+        getConfig().setParallelWrite(parallelWrite);
+    }
+
+    /**
+     * 写入、删除时最后一级缓存完成后立即返回，其他缓存异步完成
+     */
+    public T completeOnLastTier(boolean completeOnLastTier) {
+        getConfig().setCompleteOnLastTier(completeOnLastTier);
+        return self();
+    }
+
+    public void setCompleteOnLastTier(boolean completeOnLastTier) {
+        getConfig().setCompleteOnLastTier(completeOnLastTier);
+    }
+
+    /**
+     * 写入、删除数据后通过 channel 通知其他节点删除本地缓存
+     */
+    public T invalidationChannel(InvalidationChannel channel) {
+        getConfig().setInvalidationChannel(channel);
+        return self();
+    }
+
+    public void setInvalidationChannel(InvalidationChannel channel) {
+        getConfig().setInvalidationChannel(channel);
+    }
+
+    /**
+     * 合并失效消息
+     *
+     * @param window 时间窗口
+     * @param timeUnit 时间单位
+     * @param maxKeys 一条消息最多包含的 Key 数量
+     */
+    public T invalidationBatch(long window, TimeUnit timeUnit, int maxKeys) {
+        getConfig().setInvalidationBatchWindowMillis(timeUnit.toMillis(window));
+        getConfig().setInvalidationMaxBatchKeys(maxKeys);
+        return self();
+    }
+
+    public void setInvalidationBatchWindowMillis(long invalidationBatchWindowMillis) {
+        getConfig().setInvalidationBatchWindowMillis(invalidationBatchWindowMillis);
+    }
+
+    public void setInvalidationMaxBatchKeys(int invalidationMaxBatchKeys) {
+        getConfig().setInvalidationMaxBatchKeys(invalidationMaxBatchKeys);
+    }
+
     @Override
     public T keyConvertor(Function<Object, Object> keyConvertor) {
         throw new UnsupportedOperationException("MultiLevelCache do not need a key convertor");
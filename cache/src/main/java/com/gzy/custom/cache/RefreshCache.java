@@ -2,17 +2,21 @@ package com.gzy.custom.cache;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import com.gzy.custom.cache.config.ExternalCacheConfig;
 import com.gzy.custom.cache.exception.CacheException;
 import com.gzy.custom.cache.exception.CacheInvokeException;
 import com.gzy.custom.cache.external.AbstractExternalCache;
 import com.gzy.custom.cache.localcache.AbstractEmbeddedCache;
 import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResultCode;
+import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
 import com.gzy.custom.cache.support.CacheExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +29,10 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
      * 用于保存刷新任务
      */
     private ConcurrentHashMap<Object, RefreshTask> taskMap = new ConcurrentHashMap<>();
+    /**
+     * 提前刷新模式下正在重新加载的 Key
+     */
+    private final ConcurrentHashMap<Object, Boolean> refreshingKeys = new ConcurrentHashMap<>();
 
     private boolean multiLevelCache;
 
@@ -33,10 +41,48 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
         multiLevelCache = isMultiLevelCache();
     }
 
+    /**
+     * 所有 Key 的刷新调度器，第一次添加刷新任务时创建
+     */
+    private volatile RefreshScheduler<RefreshTask> scheduler;
+    /**
+     * 远程缓存的刷新归属，没有开启时为 null
+     */
+    private volatile RefreshOwnership ownership;
+
     protected void stopRefresh() {
-        List<RefreshTask> tasks = new ArrayList<>();
-        tasks.addAll(taskMap.values());
-        tasks.forEach(task -> task.cancel());
+        RefreshScheduler<RefreshTask> s = scheduler;
+        if (s != null) {
+            s.stop();
+        }
+        RefreshOwnership o = ownership;
+        if (o != null) {
+            o.stop();
+        }
+        taskMap.clear();
+    }
+
+    private RefreshScheduler<RefreshTask> scheduler() {
+        RefreshScheduler<RefreshTask> s = scheduler;
+        if (s == null) {
+            synchronized (this) {
+                s = scheduler;
+                if (s == null) {
+                    RefreshPolicy policy = config.getRefreshPolicy();
+                    // 刷新间隔的 1/10，在 10 毫秒到 1 秒之间
+                    long tickMillis = Math.max(10, Math.min(1000, policy.getRefreshMillis() / 10));
+                    s = new RefreshScheduler<>(tickMillis, policy.getMaxRefreshPerTick(), this::refreshDue);
+                    Cache c = concreteCache();
+                    if (policy.getOwnershipHeartbeatMillis() > 0 && c instanceof AbstractExternalCache) {
+                        String keyPrefix = ((ExternalCacheConfig)c.config()).getKeyPrefix();
+                        ownership = new RefreshOwnership((AbstractExternalCache)c, keyPrefix,
+                            policy.getOwnershipHeartbeatMillis());
+                    }
+                    scheduler = s;
+                }
+            }
+        }
+        return s;
     }
 
     /**
@@ -70,6 +116,23 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
             this);
     }
 
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader) {
+        return computeIfAbsentAsync(key, loader, config().isCacheNullValue());
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull) {
+        return AbstractCache.computeIfAbsentAsyncImpl(key, loader, cacheNullWhenLoaderReturnNull, 0, null, this);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull,
+        long expireAfterWrite, TimeUnit timeUnit) {
+        return AbstractCache.computeIfAbsentAsyncImpl(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite,
+            timeUnit, this);
+    }
+
     protected Cache concreteCache() {
         Cache c = getTargetCache();
         while (true) {
@@ -117,29 +180,327 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
         if (refreshMillis > 0) {
             // 获取线程任务的ID
             Object taskId = getTaskId(key);
-            // 获取对应的RefreshTask，不存在则创建一个
+            // 获取对应的RefreshTask，不存在则创建一个，并交给调度器在一个刷新间隔后执行
             RefreshTask refreshTask = taskMap.computeIfAbsent(taskId, tid -> {
                 logger.debug("add refresh task. interval={},  key={}", refreshMillis, key);
                 RefreshTask task = new RefreshTask(taskId, key, loader);
-                task.lastAccessTime = System.currentTimeMillis();
-                /*
-                 * 获取 ScheduledExecutorService 周期/延迟线程池，10个核心线程，创建的线程都是守护线程
-                 * scheduleWithFixedDelay(Runnable command, long initialDelay, long period, TimeUnit unit)
-                 * 运行的任务task、多久延迟后开始执行、后续执行的周期间隔多长，时间单位
-                 * 通过其创建一个循环任务，用于刷新缓存数据
-                 */
-                ScheduledFuture<?> future = CacheExecutor.heavyIOExecutor().scheduleWithFixedDelay(task, refreshMillis,
-                    refreshMillis, TimeUnit.MILLISECONDS);
-                task.future = future;
+                task.lastAccessTime = CacheClock.now();
+                scheduler().schedule(task, task.lastAccessTime + refreshMillis);
                 return task;
             });
             // 设置最后一次访问时间
-            refreshTask.lastAccessTime = System.currentTimeMillis();
+            refreshTask.lastAccessTime = CacheClock.now();
+        }
+    }
+
+    /**
+     * 处理调度器取出的到期任务：按 CacheLoader 分组，每 refreshBatchSize 个 Key 一批在 heavyIOExecutor 中执行，
+     * 执行结束后重新安排下一次刷新
+     */
+    private void refreshDue(List<RefreshTask> tasks) {
+        RefreshPolicy policy = config.getRefreshPolicy();
+        long now = CacheClock.now();
+        Map<CacheLoader<K, V>, List<RefreshTask>> groups = new IdentityHashMap<>();
+        for (RefreshTask task : tasks) {
+            if (policy == null || (task.loader == null && !hasLoader())) {
+                // 取消执行
+                task.cancel();
+                continue;
+            }
+            long stopRefreshAfterLastAccessMillis = policy.getStopRefreshAfterLastAccessMillis();
+            // 最后一次访问到现在时间的间隔超过了设置的 stopRefreshAfterLastAccessMillis，则取消当前任务执行
+            if (stopRefreshAfterLastAccessMillis > 0 && task.lastAccessTime + stopRefreshAfterLastAccessMillis < now) {
+                task.cancel();
+                continue;
+            }
+            CacheLoader<K, V> loader = task.loader == null ? config.getLoader() : task.loader;
+            groups.computeIfAbsent(loader, l -> new ArrayList<>()).add(task);
+        }
+        int batchSize = Math.max(1, policy == null ? 1 : policy.getRefreshBatchSize());
+        Cache concreteCache = concreteCache();
+        groups.forEach((loader, group) -> {
+            for (int from = 0; from < group.size(); from += batchSize) {
+                List<RefreshTask> batch = group.subList(from, Math.min(from + batchSize, group.size()));
+                CacheExecutor.heavyIOExecutor().execute(() -> {
+                    try {
+                        if (concreteCache instanceof AbstractExternalCache) {
+                            externalRefresh((AbstractExternalCache<K, V>)concreteCache, loader, batch, now);
+                        } else {
+                            loadAndPut(loader, keys(batch));
+                        }
+                    } catch (Throwable e) {
+                        logger.error("refresh error: keys(" + batch.size() + ")", e);
+                    } finally {
+                        batch.forEach(this::reschedule);
+                    }
+                });
+            }
+        });
+    }
+
+    private Set<K> keys(List<RefreshTask> batch) {
+        Set<K> keys = new HashSet<>();
+        batch.forEach(task -> keys.add(task.key));
+        return keys;
+    }
+
+    /**
+     * 远程缓存的批量刷新：一次命令获取整批 Key 的刷新权，只加载获得刷新权的 Key。
+     * 开启了刷新归属时，不归属当前节点的 Key 由 pullOrTakeOver 处理。
+     * 远程缓存不支持批量获取刷新权时，逐个 Key 按分布式锁刷新
+     */
+    private void externalRefresh(AbstractExternalCache<K, V> concreteCache, CacheLoader<K, V> loader,
+                                 List<RefreshTask> batch, long now) throws Throwable {
+        long refreshMillis = config.getRefreshPolicy().getRefreshMillis();
+        RefreshOwnership o = ownership;
+        List<K> ownKeys = new ArrayList<>(batch.size());
+        List<byte[]> ownTimestampKeys = new ArrayList<>(batch.size());
+        List<K> otherKeys = new ArrayList<>();
+        List<byte[]> otherTimestampKeys = new ArrayList<>();
+        for (RefreshTask task : batch) {
+            byte[] newKey = concreteCache.buildKey(task.key);
+            byte[] timestampKey = combine(newKey, "_#TS#".getBytes());
+            if (o == null || o.isOwner(newKey)) {
+                ownKeys.add(task.key);
+                ownTimestampKeys.add(timestampKey);
+            } else {
+                otherKeys.add(task.key);
+                otherTimestampKeys.add(timestampKey);
+            }
+        }
+        if (!ownKeys.isEmpty()
+            && !leaseAndLoad(concreteCache, loader, ownKeys, ownTimestampKeys, now, refreshMillis,
+                (long)(0.2 * refreshMillis))) {
+            batch.forEach(task -> task.run(now));
+            return;
+        }
+        if (!otherKeys.isEmpty()) {
+            pullOrTakeOver(concreteCache, loader, otherKeys, otherTimestampKeys, now);
+        }
+    }
+
+    /**
+     * 处理不归属当前节点的 Key：一次批量查询远程缓存，写入时间在 1.5 个刷新间隔以内的数据由归属节点负责，
+     * 多级缓存时同步到低层缓存；不存在或超过 1.5 个刷新间隔没有更新的 Key（例如归属节点没有访问过该 Key），
+     * 由当前节点获取刷新权后接管
+     */
+    private void pullOrTakeOver(AbstractExternalCache<K, V> concreteCache, CacheLoader<K, V> loader, List<K> keys,
+                                List<byte[]> timestampKeys, long now) throws Throwable {
+        long dueMillis = config.getRefreshPolicy().getRefreshMillis() * 3 / 2;
+        Map<K, CacheGetResult<V>> results = concreteCache.GET_ALL(new HashSet<>(keys)).getValues();
+        if (results == null) {
+            return;
+        }
+        Map<K, V> freshValues = new HashMap<>();
+        List<K> staleKeys = new ArrayList<>();
+        List<byte[]> staleTimestampKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            K key = keys.get(i);
+            CacheGetResult<V> r = results.get(key);
+            CacheValueHolder<V> holder = r == null || !r.isSuccess() ? null : r.getHolder();
+            if (holder != null && now - holder.getAccessTime() < dueMillis) {
+                freshValues.put(key, holder.getValue());
+            } else {
+                staleKeys.add(key);
+                staleTimestampKeys.add(timestampKeys.get(i));
+            }
+        }
+        if (multiLevelCache && !freshValues.isEmpty()) {
+            putLowerCaches(freshValues);
+        }
+        if (!staleKeys.isEmpty()) {
+            leaseAndLoad(concreteCache, loader, staleKeys, staleTimestampKeys, now, dueMillis, 0);
+        }
+    }
+
+    /**
+     * 获取刷新权并加载获得刷新权的 Key，其他 Key 由别的实例刷新，多级缓存时 pullDelayMillis 后从远程缓存同步到低层缓存
+     *
+     * @param dueMillis 距离上一次刷新超过该时间才获得刷新权
+     * @return 远程缓存不支持批量获取刷新权时返回 false
+     */
+    private boolean leaseAndLoad(AbstractExternalCache<K, V> concreteCache, CacheLoader<K, V> loader, List<K> keys,
+                                 List<byte[]> timestampKeys, long now, long dueMillis, long pullDelayMillis)
+        throws Throwable {
+        long refreshMillis = config.getRefreshPolicy().getRefreshMillis();
+        // 超过刷新间隔的时间戳已经没有作用，过期时间取两倍刷新间隔
+        boolean[] acquired = concreteCache.tryAcquireRefresh(timestampKeys.toArray(new byte[0][]), now, dueMillis,
+            2 * refreshMillis);
+        if (acquired == null) {
+            return false;
+        }
+        Set<K> loadKeys = new HashSet<>();
+        Set<K> pullKeys = new HashSet<>();
+        for (int i = 0; i < acquired.length; i++) {
+            (acquired[i] ? loadKeys : pullKeys).add(keys.get(i));
+        }
+        if (!pullKeys.isEmpty() && multiLevelCache) {
+            if (pullDelayMillis > 0) {
+                // 其他实例正在或已经刷新，稍后将远程的缓存数据更新到低层缓存
+                CacheExecutor.heavyIOExecutor().schedule(() -> refreshUpperCaches(pullKeys), pullDelayMillis,
+                    TimeUnit.MILLISECONDS);
+            } else {
+                refreshUpperCaches(pullKeys);
+            }
+        }
+        if (!loadKeys.isEmpty()) {
+            loadAndPut(loader, loadKeys);
+        }
+        return true;
+    }
+
+    /**
+     * 批量加载 Key 并写入缓存，只有一个 Key 时使用 load
+     */
+    private void loadAndPut(CacheLoader<K, V> loader, Set<K> keys) throws Throwable {
+        if (keys.size() == 1) {
+            reload(keys.iterator().next(), loader);
+            return;
+        }
+        logger.debug("refresh keys: {}", keys.size());
+        CacheLoader<K, V> l = CacheUtil.createProxyLoader(cache, loader);
+        Map<K, V> loaded = l.loadAll(keys);
+        Map<K, V> updateValues = new HashMap<>();
+        if (loaded != null) {
+            loaded.forEach((k, v) -> {
+                if (needUpdate(v, l)) {
+                    updateValues.put(k, v);
+                }
+            });
+        }
+        if (!updateValues.isEmpty()) {
+            CacheUtil.getAbstractCache(cache).putLoaded(updateValues, cache::PUT_ALL);
+        }
+    }
+
+    /**
+     * 将多级缓存顶层的缓存数据批量更新至低层的缓存中
+     */
+    private void refreshUpperCaches(Set<K> keys) {
+        try {
+            Cache[] caches = ((MultiLevelCache<K, V>)getTargetCache()).caches();
+            Map<K, V> values = caches[caches.length - 1].GET_ALL(keys).unwrapValues();
+            if (values != null && !values.isEmpty()) {
+                putLowerCaches(values);
+            }
+        } catch (Throwable e) {
+            logger.error("refresh upper caches error: keys(" + keys.size() + ")", e);
+        }
+    }
+
+    /**
+     * 将顶层的缓存数据放入多级缓存的低层缓存
+     */
+    private void putLowerCaches(Map<K, V> values) {
+        Cache[] caches = ((MultiLevelCache<K, V>)getTargetCache()).caches();
+        for (int i = 0; i < caches.length - 1; i++) {
+            caches[i].PUT_ALL(values);
+        }
+    }
+
+    /**
+     * 任务仍然有效时安排下一次刷新
+     */
+    private void reschedule(RefreshTask task) {
+        RefreshPolicy policy = config.getRefreshPolicy();
+        if (policy != null && taskMap.get(task.taskId) == task) {
+            scheduler().schedule(task, CacheClock.now() + policy.getRefreshMillis());
+        }
+    }
+
+    /**
+     * 重新加载数据并放入缓存
+     *
+     * @param loader 为 null 时使用配置的 CacheLoader
+     */
+    private void reload(K key, CacheLoader<K, V> loader) throws Throwable {
+        CacheLoader<K, V> l = loader == null ? config.getLoader() : loader;
+        if (l != null) {
+            // 封装 CacheLoader 成 ProxyLoader，加载后会发起 Load 事件
+            l = CacheUtil.createProxyLoader(cache, l);
+            // 加载
+            V v = l.load(key);
+            if (needUpdate(v, l)) {
+                // 将重新加载的数据放入缓存
+                CacheUtil.getAbstractCache(cache).putLoaded(Collections.singletonMap(key, v), m -> cache.PUT(key, v));
+            }
+        }
+    }
+
+    private boolean isRefreshAhead() {
+        RefreshPolicy policy = config.getRefreshPolicy();
+        return policy != null && policy.getRefreshAheadFactor() > 0 && hasLoader();
+    }
+
+    /**
+     * 命中的数据剩余存活时间不足 (1 - refreshAheadFactor) 时，异步重新加载一次
+     * 存活时间取数据写入时的值（PUT 时可以单独指定），未知时使用配置的 expireAfterWrite
+     */
+    private void refreshAheadIfNeeded(K key, CacheValueHolder<V> holder) {
+        if (holder == null) {
+            return;
+        }
+        long expireAfterWrite = holder.getExpireAfterWrite() > 0
+                ? holder.getExpireAfterWrite() : config.getExpireAfterWriteInMillis();
+        if (expireAfterWrite <= 0) {
+            return;
+        }
+        double factor = config.getRefreshPolicy().getRefreshAheadFactor();
+        long remaining = holder.getExpireTime() - CacheClock.now();
+        if (remaining >= (1 - factor) * expireAfterWrite) {
+            return;
+        }
+        Object taskId = getTaskId(key);
+        // 同一个 Key 同时只有一个重新加载
+        if (taskId == null || refreshingKeys.putIfAbsent(taskId, Boolean.TRUE) != null) {
+            return;
+        }
+        try {
+            CacheExecutor.heavyIOExecutor().execute(() -> {
+                try {
+                    refreshAhead(key);
+                } catch (Throwable e) {
+                    logger.error("refresh ahead error: key=" + key, e);
+                } finally {
+                    refreshingKeys.remove(taskId);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshingKeys.remove(taskId);
+            throw e;
         }
     }
 
+    private void refreshAhead(K key) throws Throwable {
+        Cache concreteCache = concreteCache();
+        if (!(concreteCache instanceof AbstractExternalCache)) {
+            reload(key, null);
+            return;
+        }
+        // 远程缓存由多个实例共享，获取到分布式锁的实例才重新加载，其他实例继续使用旧数据
+        byte[] newKey = ((AbstractExternalCache)concreteCache).buildKey(key);
+        byte[] lockKey = combine(newKey, "_#RL#".getBytes());
+        long lockTimeout = config.getRefreshPolicy().getRefreshLockTimeoutMillis();
+        concreteCache.tryLockAndRun(lockKey, lockTimeout, TimeUnit.MILLISECONDS, () -> {
+            try {
+                reload(key, null);
+            } catch (Throwable e) {
+                throw new CacheException("refresh error", e);
+            }
+        });
+    }
+
     @Override
     public V get(K key) throws CacheInvokeException {
+        if (isRefreshAhead()) {
+            CacheGetResult<V> result = key == null ? null : GET(key);
+            if (result != null && result.isSuccess()) {
+                refreshAheadIfNeeded(key, result.getHolder());
+                return result.getValue();
+            }
+            // 未命中时同步加载
+            return super.get(key);
+        }
         if (config.getRefreshPolicy() != null && hasLoader()) {
             addOrUpdateRefreshTask(key, null);
         }
@@ -148,6 +509,24 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
 
     @Override
     public Map<K, V> getAll(Set<? extends K> keys) throws CacheInvokeException {
+        if (isRefreshAhead()) {
+            MultiGetResult<K, V> result = GET_ALL(keys);
+            Map<K, V> values = new HashMap<>();
+            Set<K> missingKeys = new HashSet<>();
+            for (K key : keys) {
+                CacheGetResult<V> r = result.getValues() == null ? null : result.getValues().get(key);
+                if (r != null && r.isSuccess()) {
+                    refreshAheadIfNeeded(key, r.getHolder());
+                    values.put(key, r.getValue());
+                } else {
+                    missingKeys.add(key);
+                }
+            }
+            if (!missingKeys.isEmpty()) {
+                values.putAll(super.getAll(missingKeys));
+            }
+            return values;
+        }
         if (config.getRefreshPolicy() != null && hasLoader()) {
             for (K key : keys) {
                 addOrUpdateRefreshTask(key, null);
@@ -156,7 +535,59 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
         return super.getAll(keys);
     }
 
-    class RefreshTask implements Runnable {
+    @Override
+    public CompletionStage<V> getAsync(K key) {
+        if (isRefreshAhead() && key != null) {
+            return GET(key).future().thenCompose(resultData -> {
+                if (resultData.getResultCode() == CacheResultCode.SUCCESS) {
+                    refreshAheadIfNeeded(key, (CacheValueHolder<V>) resultData.getOriginData());
+                    return CompletableFuture.completedFuture((V) resultData.getData());
+                }
+                // 未命中时异步加载
+                return super.getAsync(key);
+            });
+        }
+        if (config.getRefreshPolicy() != null && hasLoader()) {
+            addOrUpdateRefreshTask(key, null);
+        }
+        return super.getAsync(key);
+    }
+
+    @Override
+    public CompletionStage<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+        if (isRefreshAhead()) {
+            return GET_ALL(keys).future().thenCompose(resultData -> {
+                Map<K, CacheGetResult<V>> results = resultData.getResultCode() == CacheResultCode.SUCCESS
+                    ? (Map<K, CacheGetResult<V>>)resultData.getOriginData() : null;
+                Map<K, V> values = new HashMap<>();
+                Set<K> missingKeys = new HashSet<>();
+                for (K key : keys) {
+                    CacheGetResult<V> r = results == null ? null : results.get(key);
+                    if (r != null && r.isSuccess()) {
+                        refreshAheadIfNeeded(key, r.getHolder());
+                        values.put(key, r.getValue());
+                    } else {
+                        missingKeys.add(key);
+                    }
+                }
+                if (missingKeys.isEmpty()) {
+                    return CompletableFuture.completedFuture(values);
+                }
+                return super.getAllAsync(missingKeys).thenApply(loaded -> {
+                    values.putAll(loaded);
+                    return values;
+                });
+            });
+        }
+        if (config.getRefreshPolicy() != null && hasLoader()) {
+            for (K key : keys) {
+                addOrUpdateRefreshTask(key, null);
+            }
+        }
+        return super.getAllAsync(keys);
+    }
+
+    class RefreshTask {
         /**
          * 唯一标志符，也就是Key转换后的值
          */
@@ -171,13 +602,9 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
         private CacheLoader<K, V> loader;
 
         /**
-         * 最后一次访问时间
+         * 最后一次访问时间，由访问缓存的线程写入、调度线程读取
          */
-        private long lastAccessTime;
-        /**
-         * 该 Task 的执行策略
-         */
-        private ScheduledFuture future;
+        private volatile long lastAccessTime;
 
         RefreshTask(Object taskId, K key, CacheLoader<K, V> loader) {
             this.taskId = taskId;
@@ -187,10 +614,8 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
 
         private void cancel() {
             logger.debug("cancel refresh: {}", key);
-            // 尝试中断当前任务
-            future.cancel(false);
-            // 从任务列表中删除
-            taskMap.remove(taskId);
+            // 从任务列表中删除，不再重新安排
+            taskMap.remove(taskId, this);
         }
 
         /**
@@ -200,17 +625,7 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
          *             异常
          */
         private void load() throws Throwable {
-            CacheLoader<K, V> l = loader == null ? config.getLoader() : loader;
-            if (l != null) {
-                // 封装 CacheLoader 成 ProxyLoader，加载后会发起 Load 事件
-                l = CacheUtil.createProxyLoader(cache, l);
-                // 加载
-                V v = l.load(key);
-                if (needUpdate(v, l)) {
-                    // 将重新加载的数据放入缓存
-                    cache.PUT(key, v);
-                }
-            }
+            reload(key, loader);
         }
 
         /**
@@ -261,7 +676,7 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
                     load();
                     // AbstractExternalCache buildKey method will not convert byte[]
                     // 保存一个key-value至redis，其中的信息为该value的生成时间，刷新缓存
-                    concreteCache.put(timestampKey, String.valueOf(System.currentTimeMillis()));
+                    concreteCache.put(timestampKey, String.valueOf(CacheClock.now()));
                 } catch (Throwable e) {
                     throw new CacheException("refresh error", e);
                 }
@@ -296,34 +711,13 @@ public class RefreshCache<K, V> extends LoadingCache<K, V> {
         }
 
         /**
-         * 刷新任务的具体执行
+         * 远程缓存的刷新任务的具体执行
          */
-        @Override
-        public void run() {
+        void run(long now) {
             try {
-                if (config.getRefreshPolicy() == null || (loader == null && !hasLoader())) {
-                    // 取消执行
-                    cancel();
-                    return;
-                }
-                long now = System.currentTimeMillis();
-                long stopRefreshAfterLastAccessMillis = config.getRefreshPolicy().getStopRefreshAfterLastAccessMillis();
-                if (stopRefreshAfterLastAccessMillis > 0) {
-                    // 最后一次访问到现在时间的间隔超过了设置的 stopRefreshAfterLastAccessMillis，则取消当前任务执行
-                    if (lastAccessTime + stopRefreshAfterLastAccessMillis < now) {
-                        logger.debug("cancel refresh: {}", key);
-                        cancel();
-                        return;
-                    }
-                }
                 logger.debug("refresh key: {}", key);
                 // 获取缓存实例对象，如果是多层则返回顶层，也就是远程缓存
-                Cache concreteCache = concreteCache();
-                if (concreteCache instanceof AbstractExternalCache) { // 远程缓存刷新
-                    externalLoad(concreteCache, now);
-                } else { // 本地缓存刷新
-                    load();
-                }
+                externalLoad(concreteCache(), now);
             } catch (Throwable e) {
                 logger.error("refresh error: key=" + key, e);
             }
@@ -0,0 +1,189 @@
+package com.gzy.custom.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.gzy.custom.cache.external.AbstractExternalCache;
+import com.gzy.custom.cache.support.CacheClock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 远程缓存的刷新归属：各个节点定时向远程缓存中的注册表发送心跳，
+ * 所有存活的节点按一致性哈希（每个节点 VIRTUAL_NODES 个虚拟节点）组成哈希环，每个 Key 只归属于环上的一个节点
+ *
+ * 节点超过 3 个心跳间隔没有心跳即视为下线，其负责的 Key 由环上的下一个节点接管；
+ * 当前节点超过 3 个心跳间隔没有成功发送心跳时，认为所有 Key 都归属于自己，退回到所有节点竞争刷新权的方式。
+ * 心跳时间使用各节点的本地时间，节点之间的时钟偏差需要明显小于节点超时时间；
+ * 节点正常停止时主动从注册表中删除，其他节点下一次心跳时即可接管。
+ * 心跳在独立的定时线程中执行，heavyIOExecutor 被刷新任务占满时不会因为心跳延迟而被其他节点判定为下线
+ */
+final class RefreshOwnership {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshOwnership.class);
+
+    /**
+     * 每个节点在哈希环上的虚拟节点数量
+     */
+    private static final int VIRTUAL_NODES = 100;
+
+    /**
+     * 所有 RefreshOwnership 共用的心跳线程
+     */
+    private static volatile ScheduledExecutorService timer;
+
+    private final AbstractExternalCache<?, ?> cache;
+    private final byte[] registryKey;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long heartbeatMillis;
+
+    /**
+     * 当前的存活节点（按节点 ID 排序）和哈希环，只在心跳线程中更新
+     */
+    private volatile List<String> nodes = Collections.emptyList();
+    private volatile TreeMap<Long, String> ring;
+    /**
+     * 最后一次心跳成功的时间
+     */
+    private volatile long lastHeartbeatTime;
+
+    /**
+     * 第一次心跳可能在构造函数赋值之前执行，因此不是 final
+     */
+    private volatile ScheduledFuture<?> future;
+    private volatile boolean stopped;
+
+    RefreshOwnership(AbstractExternalCache<?, ?> cache, String keyPrefix, long heartbeatMillis) {
+        this.cache = cache;
+        this.registryKey = (keyPrefix + "_#RN#").getBytes(StandardCharsets.UTF_8);
+        this.heartbeatMillis = heartbeatMillis;
+        this.future = timer()
+                .scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMillis, TimeUnit.MILLISECONDS);
+        if (stopped) {
+            future.cancel(false);
+        }
+    }
+
+    private static ScheduledExecutorService timer() {
+        ScheduledExecutorService t = timer;
+        if (t == null) {
+            synchronized (RefreshOwnership.class) {
+                t = timer;
+                if (t == null) {
+                    t = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread thread = new Thread(r, "JetCacheRefreshHeartbeat");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    timer = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 与 stop 互斥，避免停止后的心跳把当前节点重新写回注册表
+     */
+    private synchronized void heartbeat() {
+        if (stopped) {
+            return;
+        }
+        try {
+            long now = CacheClock.now();
+            List<String> alive = cache.heartbeat(registryKey, nodeId, now, 3 * heartbeatMillis);
+            if (alive == null) {
+                logger.warn("{} does not support refresh ownership", cache.getClass().getSimpleName());
+                stopped = true;
+                ScheduledFuture<?> f = future;
+                if (f != null) {
+                    f.cancel(false);
+                }
+                return;
+            }
+            // 注册表按心跳时间排序，每次心跳顺序都会变化，按节点 ID 排序后再比较
+            alive = new ArrayList<>(alive);
+            Collections.sort(alive);
+            if (!alive.equals(nodes)) {
+                logger.info("refresh nodes changed: {} -> {}", nodes.size(), alive.size());
+                ring = buildRing(alive);
+                nodes = alive;
+            }
+            lastHeartbeatTime = now;
+        } catch (Throwable e) {
+            // 异常会导致定时任务停止，这里只记录日志
+            logger.warn("refresh heartbeat error: {}", e.toString());
+        }
+    }
+
+    private static TreeMap<Long, String> buildRing(List<String> nodes) {
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : nodes) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash((node + "#" + i).getBytes(StandardCharsets.UTF_8)), node);
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * 当前节点是否负责刷新该 Key
+     *
+     * @param newKey 转换后的 Key
+     */
+    boolean isOwner(byte[] newKey) {
+        TreeMap<Long, String> r = ring;
+        if (r == null || r.isEmpty() || CacheClock.now() - lastHeartbeatTime > 3 * heartbeatMillis) {
+            return true;
+        }
+        Map.Entry<Long, String> en = r.ceilingEntry(hash(newKey));
+        if (en == null) {
+            en = r.firstEntry();
+        }
+        return nodeId.equals(en.getValue());
+    }
+
+    /**
+     * 64 位 FNV-1a 再做一次 murmur3 的 fmix64，各个 JVM 上结果一致且分布均匀
+     */
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    void stop() {
+        ScheduledFuture<?> f = future;
+        if (f != null) {
+            f.cancel(false);
+        }
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            try {
+                cache.leave(registryKey, nodeId);
+            } catch (Throwable e) {
+                logger.warn("refresh leave error: {}", e.toString());
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.gzy.custom.cache;
 
 import java.util.concurrent.TimeUnit;
 
+import com.gzy.custom.cache.exception.CacheConfigException;
+
 public class RefreshPolicy implements Cloneable {
 
     /**
@@ -16,6 +18,25 @@ public class RefreshPolicy implements Cloneable {
      * 刷新锁的超时时间
      */
     private long refreshLockTimeoutMillis = 60 * 1000;
+    /**
+     * 提前刷新因子，取值 (0, 1)，大于 0 时不再为每个 Key 创建定时刷新任务，
+     * 而是在命中的数据已经过了过期时间的该比例（例如 0.8 表示剩余存活时间不足 20%）时异步重新加载一次，
+     * 重新加载完成之前返回旧数据
+     */
+    private double refreshAheadFactor;
+    /**
+     * 本地缓存刷新时每次调用 CacheLoader.loadAll 的最大 Key 数量
+     */
+    private int refreshBatchSize = 100;
+    /**
+     * 调度器每次最多取出的到期 Key 数量，剩余的留到下一次
+     */
+    private int maxRefreshPerTick = 10000;
+    /**
+     * 远程缓存刷新归属的心跳间隔，大于 0 时各个节点按一致性哈希划分 Key，
+     * 只有归属节点重新加载，其他节点只将远程的缓存数据同步到本地
+     */
+    private long ownershipHeartbeatMillis;
 
     public static RefreshPolicy newPolicy(long time, TimeUnit timeUnit) {
         RefreshPolicy p = new RefreshPolicy();
@@ -23,6 +44,20 @@ public class RefreshPolicy implements Cloneable {
         return p;
     }
 
+    /**
+     * 创建提前刷新策略
+     *
+     * @param refreshAheadFactor 数据已经过了过期时间的该比例后，命中时异步重新加载，取值 (0, 1)
+     */
+    public static RefreshPolicy newRefreshAheadPolicy(double refreshAheadFactor) {
+        if (!(refreshAheadFactor > 0 && refreshAheadFactor < 1)) {
+            throw new CacheConfigException("refreshAheadFactor must be in (0, 1): " + refreshAheadFactor);
+        }
+        RefreshPolicy p = new RefreshPolicy();
+        p.refreshAheadFactor = refreshAheadFactor;
+        return p;
+    }
+
     public RefreshPolicy stopRefreshAfterLastAccess(long time, TimeUnit timeUnit) {
         this.stopRefreshAfterLastAccessMillis = timeUnit.toMillis(time);
         return this;
@@ -33,6 +68,22 @@ public class RefreshPolicy implements Cloneable {
         return this;
     }
 
+    public RefreshPolicy refreshBatch(int refreshBatchSize, int maxRefreshPerTick) {
+        this.refreshBatchSize = refreshBatchSize;
+        this.maxRefreshPerTick = maxRefreshPerTick;
+        return this;
+    }
+
+    /**
+     * 开启远程缓存的刷新归属
+     *
+     * @param heartbeat 心跳间隔，超过 3 个心跳间隔没有心跳的节点视为下线
+     */
+    public RefreshPolicy refreshOwnership(long heartbeat, TimeUnit timeUnit) {
+        this.ownershipHeartbeatMillis = timeUnit.toMillis(heartbeat);
+        return this;
+    }
+
     @Override
     public RefreshPolicy clone() {
         try {
@@ -66,4 +117,36 @@ public class RefreshPolicy implements Cloneable {
         this.refreshLockTimeoutMillis = refreshLockTimeoutMillis;
     }
 
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    public int getRefreshBatchSize() {
+        return refreshBatchSize;
+    }
+
+    public void setRefreshBatchSize(int refreshBatchSize) {
+        this.refreshBatchSize = refreshBatchSize;
+    }
+
+    public int getMaxRefreshPerTick() {
+        return maxRefreshPerTick;
+    }
+
+    public void setMaxRefreshPerTick(int maxRefreshPerTick) {
+        this.maxRefreshPerTick = maxRefreshPerTick;
+    }
+
+    public long getOwnershipHeartbeatMillis() {
+        return ownershipHeartbeatMillis;
+    }
+
+    public void setOwnershipHeartbeatMillis(long ownershipHeartbeatMillis) {
+        this.ownershipHeartbeatMillis = ownershipHeartbeatMillis;
+    }
+
 }
@@ -0,0 +1,104 @@
+package com.gzy.custom.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.gzy.custom.cache.support.CacheClock;
+import com.gzy.custom.cache.support.CacheExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * RefreshCache 的刷新调度器：按刷新时间将任务分桶（每 tickMillis 一个桶），
+ * 只用一个定时任务每 tickMillis 取出到期的桶交给 handler，不需要为每个 Key 创建 ScheduledFuture
+ *
+ * 每次最多取出 maxPerTick 个任务，剩余的留到下一次，避免大量 Key 同时到期时一次处理过多
+ */
+final class RefreshScheduler<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshScheduler.class);
+
+    private final long tickMillis;
+    private final int maxPerTick;
+    private final Consumer<List<T>> handler;
+
+    /**
+     * 桶编号 -> 该桶内的任务，桶编号 = 刷新时间 / tickMillis（向上取整），由 this 的锁保护
+     */
+    private final TreeMap<Long, List<T>> buckets = new TreeMap<>();
+
+    private ScheduledFuture<?> future;
+    private boolean stopped;
+
+    RefreshScheduler(long tickMillis, int maxPerTick, Consumer<List<T>> handler) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.handler = handler;
+    }
+
+    /**
+     * 安排任务在 time 时刻之后执行一次
+     */
+    synchronized void schedule(T task, long time) {
+        if (stopped) {
+            return;
+        }
+        long bucket = (time + tickMillis - 1) / tickMillis;
+        buckets.computeIfAbsent(bucket, b -> new ArrayList<>()).add(task);
+        if (future == null) {
+            future = CacheExecutor.heavyIOExecutor()
+                    .scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void tick() {
+        try {
+            List<T> due = pollDue(CacheClock.now());
+            if (!due.isEmpty()) {
+                handler.accept(due);
+            }
+        } catch (Throwable e) {
+            // 异常会导致定时任务停止，这里只记录日志
+            logger.error("refresh scheduler error", e);
+        }
+    }
+
+    private synchronized List<T> pollDue(long now) {
+        List<T> due = new ArrayList<>();
+        while (due.size() < maxPerTick) {
+            Map.Entry<Long, List<T>> first = buckets.firstEntry();
+            if (first == null || first.getKey() * tickMillis > now) {
+                break;
+            }
+            List<T> tasks = first.getValue();
+            int take = Math.min(tasks.size(), maxPerTick - due.size());
+            if (take == tasks.size()) {
+                buckets.pollFirstEntry();
+                due.addAll(tasks);
+            } else {
+                // 从尾部取出，剩余的留在桶里下一次处理
+                List<T> tail = tasks.subList(tasks.size() - take, tasks.size());
+                due.addAll(tail);
+                tail.clear();
+            }
+        }
+        return due;
+    }
+
+    /**
+     * 停止调度，之后 schedule 不再生效
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+        buckets.clear();
+    }
+}
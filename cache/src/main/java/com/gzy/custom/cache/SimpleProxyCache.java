@@ -7,6 +7,7 @@ import com.gzy.custom.cache.result.MultiGetResult;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -33,6 +34,16 @@ public class SimpleProxyCache<K, V> implements ProxyCache<K, V> {
         return cache.get(key);
     }
 
+    @Override
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public V getIfPresent(K key, V defaultValue) {
+        return cache.getIfPresent(key, defaultValue);
+    }
+
     @Override
     public Map<K, V> getAll(Set<? extends K> keys) {
         return cache.getAll(keys);
@@ -103,6 +114,32 @@ public class SimpleProxyCache<K, V> implements ProxyCache<K, V> {
         return cache.computeIfAbsent(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit);
     }
 
+    @Override
+    public CompletionStage<V> getAsync(K key) {
+        return cache.getAsync(key);
+    }
+
+    @Override
+    public CompletionStage<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+        return cache.getAllAsync(keys);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader) {
+        return cache.computeIfAbsentAsync(key, loader);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull) {
+        return cache.computeIfAbsentAsync(key, loader, cacheNullWhenLoaderReturnNull);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull,
+                                                   long expireAfterWrite, TimeUnit timeUnit) {
+        return cache.computeIfAbsentAsync(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit);
+    }
+
     @Override
     public void put(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
         cache.put(key, value, expireAfterWrite, timeUnit);
@@ -0,0 +1,539 @@
+package com.gzy.custom.cache;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.gzy.custom.cache.config.CacheConfig;
+import com.gzy.custom.cache.exception.CacheException;
+import com.gzy.custom.cache.result.CacheGetResult;
+import com.gzy.custom.cache.result.CacheResult;
+import com.gzy.custom.cache.result.CacheResultCode;
+import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
+import com.gzy.custom.cache.support.CacheExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 写回缓存（write-behind）：写入、删除只更新缓存并记录为待写回，由后台线程定时通过 CacheWriter 批量写回数据源
+ *
+ * 同一个 Key 在写回之前的多次写入只保留最后一次；写回失败的数据按 WriteBehindPolicy 重试；
+ * 待写回的 Key 达到 maxDirtyEntries 时，写入缓存的线程先执行写回，以此限制占用的内存。
+ * 查询（get、GET、getAll、computeIfAbsent 等）优先返回待写回的数据，避免缓存淘汰后读到数据源中的旧数据，
+ * 待删除的 Key 视为不存在且不会触发加载；
+ * 由缓存加载（computeIfAbsent、loader、刷新）得到的数据不会写回，也不会覆盖缓存中待写回的 Key。
+ * 同一个 Key 的缓存写入和待写回记录在同一把分段锁内更新，并发写入时两者保持一致
+ */
+public class WriteBehindCache<K, V> extends SimpleProxyCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCache.class);
+
+    /**
+     * 待写回的数据，写回成功后只有在没有被新的写入替换时才删除
+     */
+    private static class DirtyEntry<V> {
+        final V value;
+        final boolean deleted;
+        int attempts;
+        long nextAttemptTime;
+
+        DirtyEntry(V value, boolean deleted) {
+            this.value = value;
+            this.deleted = deleted;
+        }
+    }
+
+    private final CacheWriter<K, V> writer;
+    private final WriteBehindPolicy policy;
+
+    private final ConcurrentHashMap<K, DirtyEntry<V>> dirty = new ConcurrentHashMap<>();
+    /**
+     * 同一时间只有一个线程写回
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    /**
+     * 按 Key 分段的写入锁，批量写入按下标顺序获取所有涉及的锁
+     */
+    private final ReentrantLock[] keyLocks = new ReentrantLock[64];
+
+    private final ScheduledFuture<?> flushFuture;
+
+    public WriteBehindCache(Cache<K, V> cache) {
+        super(cache);
+        CacheConfig<K, V> config = config();
+        this.writer = config.getWriter();
+        this.policy = config.getWriteBehindPolicy() != null ? config.getWriteBehindPolicy() : new WriteBehindPolicy();
+        long interval = policy.getFlushIntervalMillis();
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        this.flushFuture = CacheExecutor.heavyIOExecutor()
+                .scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+        CacheUtil.getAbstractCache(cache).setWriteBehindCache(this);
+    }
+
+    /**
+     * 持有 keys 对应的分段锁执行 action
+     */
+    private <T> T withKeyLocks(Collection<?> keys, Supplier<T> action) {
+        BitSet stripes = new BitSet(keyLocks.length);
+        for (Object key : keys) {
+            if (key != null) {
+                stripes.set(Math.floorMod(key.hashCode(), keyLocks.length));
+            }
+        }
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            keyLocks[i].lock();
+        }
+        try {
+            return action.get();
+        } finally {
+            for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+                keyLocks[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * 写入加载得到的数据，跳过待写回的 Key，由 AbstractCache#putLoaded 调用
+     */
+    CacheResult putLoaded(Map<K, V> values, Function<Map<K, V>, CacheResult> put) {
+        return withKeyLocks(values.keySet(), () -> {
+            Map<K, V> m = values;
+            for (K key : values.keySet()) {
+                if (key != null && dirty.containsKey(key)) {
+                    if (m == values) {
+                        m = new HashMap<>(values);
+                    }
+                    m.remove(key);
+                }
+            }
+            return m.isEmpty() ? CacheResult.SUCCESS_WITHOUT_MSG : put.apply(m);
+        });
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush(false);
+        } catch (Throwable e) {
+            // 异常会导致定时任务停止，这里只记录日志
+            logger.error("write behind flush error", e);
+        }
+    }
+
+    /**
+     * 待写回的 Key 的数量
+     */
+    public int dirtySize() {
+        return dirty.size();
+    }
+
+    /**
+     * 立即写回所有待写回的数据（包括还在重试等待中的数据），返回前不保证全部写回成功
+     */
+    public void flush() {
+        flush(true);
+    }
+
+    /**
+     * 写回到期的数据
+     *
+     * @param force 是否忽略重试等待时间
+     */
+    private void flush(boolean force) {
+        flushLock.lock();
+        try {
+            long now = CacheClock.now();
+            int batchSize = Math.max(1, policy.getBatchSize());
+            Map<K, DirtyEntry<V>> writes = new LinkedHashMap<>();
+            Map<K, DirtyEntry<V>> deletes = new LinkedHashMap<>();
+            for (Map.Entry<K, DirtyEntry<V>> en : dirty.entrySet()) {
+                DirtyEntry<V> e = en.getValue();
+                if (!force && e.nextAttemptTime > now) {
+                    continue;
+                }
+                Map<K, DirtyEntry<V>> batch = e.deleted ? deletes : writes;
+                batch.put(en.getKey(), e);
+                if (batch.size() >= batchSize) {
+                    flushBatch(batch, e.deleted);
+                    batch.clear();
+                }
+            }
+            if (!writes.isEmpty()) {
+                flushBatch(writes, false);
+            }
+            if (!deletes.isEmpty()) {
+                flushBatch(deletes, true);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushBatch(Map<K, DirtyEntry<V>> batch, boolean deleted) {
+        try {
+            if (deleted) {
+                writer.deleteAll(new LinkedHashSet<>(batch.keySet()));
+            } else {
+                Map<K, V> entries = new LinkedHashMap<>();
+                batch.forEach((k, e) -> entries.put(k, e.value));
+                writer.writeAll(entries);
+            }
+            // 写回期间被新的写入替换的数据保留，下次再写回
+            batch.forEach(dirty::remove);
+        } catch (Throwable ex) {
+            long now = CacheClock.now();
+            int dropped = 0;
+            for (Map.Entry<K, DirtyEntry<V>> en : batch.entrySet()) {
+                DirtyEntry<V> e = en.getValue();
+                e.attempts++;
+                if (e.attempts > policy.getMaxRetries()) {
+                    dirty.remove(en.getKey(), e);
+                    dropped++;
+                } else {
+                    e.nextAttemptTime = now + policy.getRetryBackoffMillis() * e.attempts;
+                }
+            }
+            if (dropped > 0) {
+                logger.error("write behind {} error, {} keys dropped after {} retries",
+                        deleted ? "delete" : "write", dropped, policy.getMaxRetries(), ex);
+            } else {
+                logger.warn("write behind {} error, keys({}) will retry: {}",
+                        deleted ? "delete" : "write", batch.size(), ex.toString());
+            }
+        }
+    }
+
+    /**
+     * 待写回的 Key 达到上限时，先由当前线程写回；数据源不可用导致一直无法降到上限以下时，超时抛出异常
+     *
+     * @param newKeys 本次写入的 Key 的数量，已在待写回的 Key 不占用新的空间
+     */
+    private void awaitCapacity(int newKeys) {
+        int max = policy.getMaxDirtyEntries();
+        if (newKeys == 0 || dirty.size() + newKeys <= max) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getBackPressureTimeoutMillis());
+        while (true) {
+            flush(false);
+            if (dirty.size() + newKeys <= max) {
+                return;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                throw new CacheException("write behind dirty entries exceed " + max);
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private int countNewKey(K key) {
+        return key == null || dirty.containsKey(key) ? 0 : 1;
+    }
+
+    private int countNewKeys(Set<? extends K> keys) {
+        int n = 0;
+        for (K key : keys) {
+            n += countNewKey(key);
+        }
+        return n;
+    }
+
+    private void markDirty(K key, V value, boolean deleted) {
+        if (key != null) {
+            dirty.put(key, new DirtyEntry<>(value, deleted));
+        }
+    }
+
+    @Override
+    public CacheGetResult<V> GET(K key) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return toResult(e);
+        }
+        return cache.GET(key);
+    }
+
+    private CacheGetResult<V> toResult(DirtyEntry<V> e) {
+        if (e.deleted) {
+            return CacheGetResult.NOT_EXISTS_WITHOUT_MSG;
+        }
+        return new CacheGetResult<>(CacheResultCode.SUCCESS, null,
+                new CacheValueHolder<>(e.value, config().getExpireAfterWriteInMillis()));
+    }
+
+    @Override
+    public MultiGetResult<K, V> GET_ALL(Set<? extends K> keys) {
+        MultiGetResult<K, V> result = cache.GET_ALL(keys);
+        if (keys == null || dirty.isEmpty()) {
+            return result;
+        }
+        Map<K, DirtyEntry<V>> dirtyEntries = new HashMap<>();
+        for (K key : keys) {
+            DirtyEntry<V> e = key == null ? null : dirty.get(key);
+            if (e != null) {
+                dirtyEntries.put(key, e);
+            }
+        }
+        if (dirtyEntries.isEmpty()) {
+            return result;
+        }
+        return new MultiGetResult<>(result.future().thenApply(resultData -> {
+            Map<K, CacheGetResult<V>> values = new HashMap<>();
+            if (resultData.getOriginData() != null) {
+                values.putAll((Map<K, CacheGetResult<V>>) resultData.getOriginData());
+            }
+            dirtyEntries.forEach((k, e) -> values.put(k, toResult(e)));
+            CacheResultCode code = resultData.getResultCode() == CacheResultCode.SUCCESS
+                    ? CacheResultCode.SUCCESS : CacheResultCode.PART_SUCCESS;
+            return new ResultData(code, resultData.getMessage(), values);
+        }));
+    }
+
+    @Override
+    public V get(K key) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return e.deleted ? null : e.value;
+        }
+        return cache.get(key);
+    }
+
+    @Override
+    public V getIfPresent(K key, V defaultValue) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return e.deleted ? defaultValue : e.value;
+        }
+        return cache.getIfPresent(key, defaultValue);
+    }
+
+    @Override
+    public V getIfPresent(K key) {
+        return getIfPresent(key, null);
+    }
+
+    @Override
+    public Map<K, V> getAll(Set<? extends K> keys) {
+        Map<K, V> result = new HashMap<>(cache.getAll(keys));
+        for (K key : keys) {
+            DirtyEntry<V> e = key == null ? null : dirty.get(key);
+            if (e != null) {
+                if (e.deleted) {
+                    result.remove(key);
+                } else {
+                    result.put(key, e.value);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public CompletionStage<V> getAsync(K key) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return CompletableFuture.completedFuture(e.deleted ? null : e.value);
+        }
+        return cache.getAsync(key);
+    }
+
+    @Override
+    public CompletionStage<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+        return cache.getAllAsync(keys).thenApply(values -> {
+            Map<K, V> result = new HashMap<>(values);
+            for (K key : keys) {
+                DirtyEntry<V> e = key == null ? null : dirty.get(key);
+                if (e != null) {
+                    if (e.deleted) {
+                        result.remove(key);
+                    } else {
+                        result.put(key, e.value);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<K, V> loader) {
+        return computeIfAbsent(key, loader, config().isCacheNullValue());
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return e.deleted ? null : e.value;
+        }
+        return cache.computeIfAbsent(key, loader, cacheNullWhenLoaderReturnNull);
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull,
+                             long expireAfterWrite, TimeUnit timeUnit) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return e.deleted ? null : e.value;
+        }
+        return cache.computeIfAbsent(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader) {
+        return computeIfAbsentAsync(key, loader, config().isCacheNullValue());
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return CompletableFuture.completedFuture(e.deleted ? null : e.value);
+        }
+        return cache.computeIfAbsentAsync(key, loader, cacheNullWhenLoaderReturnNull);
+    }
+
+    @Override
+    public CompletionStage<V> computeIfAbsentAsync(K key, Function<K, V> loader, boolean cacheNullWhenLoaderReturnNull,
+                                                   long expireAfterWrite, TimeUnit timeUnit) {
+        DirtyEntry<V> e = key == null ? null : dirty.get(key);
+        if (e != null) {
+            return CompletableFuture.completedFuture(e.deleted ? null : e.value);
+        }
+        return cache.computeIfAbsentAsync(key, loader, cacheNullWhenLoaderReturnNull, expireAfterWrite, timeUnit);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        PUT(key, value);
+    }
+
+    @Override
+    public void put(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        PUT(key, value, expireAfterWrite, timeUnit);
+    }
+
+    @Override
+    public CacheResult PUT(K key, V value) {
+        awaitCapacity(countNewKey(key));
+        return withKeyLocks(Collections.singleton(key), () -> {
+            CacheResult result = cache.PUT(key, value);
+            markDirty(key, value, false);
+            return result;
+        });
+    }
+
+    @Override
+    public CacheResult PUT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        awaitCapacity(countNewKey(key));
+        return withKeyLocks(Collections.singleton(key), () -> {
+            CacheResult result = cache.PUT(key, value, expireAfterWrite, timeUnit);
+            markDirty(key, value, false);
+            return result;
+        });
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        PUT_ALL(map);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
+        PUT_ALL(map, expireAfterWrite, timeUnit);
+    }
+
+    @Override
+    public CacheResult PUT_ALL(Map<? extends K, ? extends V> map) {
+        awaitCapacity(countNewKeys(map.keySet()));
+        return withKeyLocks(map.keySet(), () -> {
+            CacheResult result = cache.PUT_ALL(map);
+            map.forEach((k, v) -> markDirty(k, v, false));
+            return result;
+        });
+    }
+
+    @Override
+    public CacheResult PUT_ALL(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
+        awaitCapacity(countNewKeys(map.keySet()));
+        return withKeyLocks(map.keySet(), () -> {
+            CacheResult result = cache.PUT_ALL(map, expireAfterWrite, timeUnit);
+            map.forEach((k, v) -> markDirty(k, v, false));
+            return result;
+        });
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        return PUT_IF_ABSENT(key, value, config().getExpireAfterWriteInMillis(), TimeUnit.MILLISECONDS)
+                .isSuccess();
+    }
+
+    @Override
+    public CacheResult PUT_IF_ABSENT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        awaitCapacity(countNewKey(key));
+        return withKeyLocks(Collections.singleton(key), () -> {
+            CacheResult result = cache.PUT_IF_ABSENT(key, value, expireAfterWrite, timeUnit);
+            if (result.isSuccess()) {
+                markDirty(key, value, false);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public boolean remove(K key) {
+        return REMOVE(key).isSuccess();
+    }
+
+    @Override
+    public void removeAll(Set<? extends K> keys) {
+        REMOVE_ALL(keys);
+    }
+
+    @Override
+    public CacheResult REMOVE(K key) {
+        awaitCapacity(countNewKey(key));
+        return withKeyLocks(Collections.singleton(key), () -> {
+            CacheResult result = cache.REMOVE(key);
+            markDirty(key, null, true);
+            return result;
+        });
+    }
+
+    @Override
+    public CacheResult REMOVE_ALL(Set<? extends K> keys) {
+        awaitCapacity(countNewKeys(keys));
+        return withKeyLocks(keys, () -> {
+            CacheResult result = cache.REMOVE_ALL(keys);
+            keys.forEach(k -> markDirty(k, null, true));
+            return result;
+        });
+    }
+
+    @Override
+    public void close() {
+        flushFuture.cancel(false);
+        flush(true);
+        if (!dirty.isEmpty()) {
+            logger.error("write behind cache closed with {} keys not written", dirty.size());
+        }
+        super.close();
+    }
+}
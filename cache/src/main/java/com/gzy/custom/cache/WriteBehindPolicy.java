@@ -0,0 +1,111 @@
+package com.gzy.custom.cache;
+
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindPolicy implements Cloneable {
+
+    /**
+     * 定时写回数据源的间隔
+     */
+    private long flushIntervalMillis = 1000;
+    /**
+     * 每次调用 CacheWriter 写入的最大数量
+     */
+    private int batchSize = 100;
+    /**
+     * 写入失败后的最大重试次数，超过后丢弃并记录错误日志
+     */
+    private int maxRetries = 3;
+    /**
+     * 重试间隔，第 n 次重试等待 n 倍的间隔
+     */
+    private long retryBackoffMillis = 1000;
+    /**
+     * 未写回的 Key 的最大数量，达到后写入缓存的线程先执行一次写回
+     */
+    private int maxDirtyEntries = 10000;
+    /**
+     * 写回后仍达到 maxDirtyEntries（例如数据源不可用）时，写入缓存的线程最多等待的时间，超时抛出 CacheException
+     */
+    private long backPressureTimeoutMillis = 1000;
+
+    public static WriteBehindPolicy newPolicy(long flushInterval, TimeUnit timeUnit) {
+        WriteBehindPolicy p = new WriteBehindPolicy();
+        p.flushIntervalMillis = timeUnit.toMillis(flushInterval);
+        return p;
+    }
+
+    public WriteBehindPolicy batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public WriteBehindPolicy retry(int maxRetries, long backoff, TimeUnit timeUnit) {
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = timeUnit.toMillis(backoff);
+        return this;
+    }
+
+    public WriteBehindPolicy maxDirtyEntries(int maxDirtyEntries, long backPressureTimeout, TimeUnit timeUnit) {
+        this.maxDirtyEntries = maxDirtyEntries;
+        this.backPressureTimeoutMillis = timeUnit.toMillis(backPressureTimeout);
+        return this;
+    }
+
+    @Override
+    public WriteBehindPolicy clone() {
+        try {
+            return (WriteBehindPolicy) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public int getMaxDirtyEntries() {
+        return maxDirtyEntries;
+    }
+
+    public void setMaxDirtyEntries(int maxDirtyEntries) {
+        this.maxDirtyEntries = maxDirtyEntries;
+    }
+
+    public long getBackPressureTimeoutMillis() {
+        return backPressureTimeoutMillis;
+    }
+
+    public void setBackPressureTimeoutMillis(long backPressureTimeoutMillis) {
+        this.backPressureTimeoutMillis = backPressureTimeoutMillis;
+    }
+}
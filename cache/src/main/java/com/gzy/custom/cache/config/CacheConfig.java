@@ -1,7 +1,9 @@
 package com.gzy.custom.cache.config;
 
 import com.gzy.custom.cache.CacheLoader;
+import com.gzy.custom.cache.CacheWriter;
 import com.gzy.custom.cache.RefreshPolicy;
+import com.gzy.custom.cache.WriteBehindPolicy;
 import com.gzy.custom.cache.exception.CacheException;
 
 import java.time.Duration;
@@ -36,6 +38,16 @@ public class CacheConfig<K, V> implements Cloneable {
      */
     private RefreshPolicy refreshPolicy;
 
+    /**
+     * 写回数据源的接口，不为空时缓存封装为 WriteBehindCache
+     */
+    private CacheWriter<K, V> writer;
+
+    /**
+     * 写回策略
+     */
+    private WriteBehindPolicy writeBehindPolicy;
+
     /**
      * 尝试释放分布式锁的次数
      */
@@ -59,6 +71,9 @@ public class CacheConfig<K, V> implements Cloneable {
             if (refreshPolicy != null) {
                 copy.refreshPolicy = this.refreshPolicy.clone();
             }
+            if (writeBehindPolicy != null) {
+                copy.writeBehindPolicy = this.writeBehindPolicy.clone();
+            }
             return copy;
         } catch (CloneNotSupportedException e) {
             throw new CacheException(e);
@@ -131,6 +146,22 @@ public class CacheConfig<K, V> implements Cloneable {
         this.refreshPolicy = refreshPolicy;
     }
 
+    public CacheWriter<K, V> getWriter() {
+        return writer;
+    }
+
+    public void setWriter(CacheWriter<K, V> writer) {
+        this.writer = writer;
+    }
+
+    public WriteBehindPolicy getWriteBehindPolicy() {
+        return writeBehindPolicy;
+    }
+
+    public void setWriteBehindPolicy(WriteBehindPolicy writeBehindPolicy) {
+        this.writeBehindPolicy = writeBehindPolicy;
+    }
+
     public int getTryLockUnlockCount() {
         return tryLockUnlockCount;
     }
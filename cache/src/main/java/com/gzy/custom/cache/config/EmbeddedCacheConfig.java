@@ -2,10 +2,15 @@ package com.gzy.custom.cache.config;
 
 public class EmbeddedCacheConfig<K, V> extends CacheConfig<K, V> {
     int DEFAULT_LOCAL_LIMIT = 100;
+    int DEFAULT_CONCURRENCY_LEVEL = 1;
     /**
      * 本地缓存的缓存实例中的缓存数量
      */
     private int limit = DEFAULT_LOCAL_LIMIT;
+    /**
+     * 本地缓存的分段数，大于 1 时按 Key 的 hash 分段，每段独立加锁、独立做 LRU 淘汰
+     */
+    private int concurrencyLevel = DEFAULT_CONCURRENCY_LEVEL;
 
     public int getLimit() {
         return limit;
@@ -15,4 +20,12 @@ public class EmbeddedCacheConfig<K, V> extends CacheConfig<K, V> {
         this.limit = limit;
     }
 
+    public int getConcurrencyLevel() {
+        return concurrencyLevel;
+    }
+
+    public void setConcurrencyLevel(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+    }
+
 }
@@ -19,6 +19,10 @@ public class ExternalCacheConfig<K, V> extends CacheConfig<K, V> {
      * 缓存数据解码函数
      */
     private Function<byte[], Object> valueDecoder = DecoderMap.defaultJavaValueDecoder();
+    /**
+     * 缓存数据编码后超过该大小（字节）时压缩，0 表示不压缩
+     */
+    private int compressThreshold = 0;
 
     public String getKeyPrefix() {
         return keyPrefix;
@@ -43,5 +47,12 @@ public class ExternalCacheConfig<K, V> extends CacheConfig<K, V> {
     public void setValueDecoder(Function<byte[], Object> valueDecoder) {
         this.valueDecoder = valueDecoder;
     }
-}
 
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+}
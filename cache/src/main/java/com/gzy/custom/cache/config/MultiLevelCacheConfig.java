@@ -1,6 +1,7 @@
 package com.gzy.custom.cache.config;
 
 import com.gzy.custom.cache.Cache;
+import com.gzy.custom.cache.support.InvalidationChannel;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,6 +13,27 @@ public class MultiLevelCacheConfig<K, V> extends CacheConfig<K, V> {
      * 两级缓存时，本地缓存是否单独设置过期时间
      */
     private boolean useExpireOfSubCache;
+    /**
+     * 是否并行写入各级缓存，为 true 时先分发非本地缓存的写操作再写入本地缓存，
+     * 异步的远程缓存与本地缓存同时进行（同步的远程缓存仍在调用线程中执行，以保证同一个 Key 的写入顺序）
+     */
+    private boolean parallelWrite = false;
+    /**
+     * 写入、删除时是否在最后一级缓存完成后立即返回，不等待其他缓存
+     */
+    private boolean completeOnLastTier = false;
+    /**
+     * 失效消息通道，不为空时写入、删除数据后通知其他节点删除本地缓存（除最后一级以外的缓存）
+     */
+    private InvalidationChannel invalidationChannel;
+    /**
+     * 合并失效消息的时间窗口（毫秒），0 表示每次操作立即发布
+     */
+    private long invalidationBatchWindowMillis = 0;
+    /**
+     * 一条失效消息最多包含的 Key 数量
+     */
+    private int invalidationMaxBatchKeys = 256;
 
     @Override
     public MultiLevelCacheConfig clone() {
@@ -37,5 +59,44 @@ public class MultiLevelCacheConfig<K, V> extends CacheConfig<K, V> {
     public void setUseExpireOfSubCache(boolean useExpireOfSubCache) {
         this.useExpireOfSubCache = useExpireOfSubCache;
     }
-}
 
+    public boolean isParallelWrite() {
+        return parallelWrite;
+    }
+
+    public void setParallelWrite(boolean parallelWrite) {
+        this.parallelWrite = parallelWrite;
+    }
+
+    public boolean isCompleteOnLastTier() {
+        return completeOnLastTier;
+    }
+
+    public void setCompleteOnLastTier(boolean completeOnLastTier) {
+        this.completeOnLastTier = completeOnLastTier;
+    }
+
+    public InvalidationChannel getInvalidationChannel() {
+        return invalidationChannel;
+    }
+
+    public void setInvalidationChannel(InvalidationChannel invalidationChannel) {
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    public long getInvalidationBatchWindowMillis() {
+        return invalidationBatchWindowMillis;
+    }
+
+    public void setInvalidationBatchWindowMillis(long invalidationBatchWindowMillis) {
+        this.invalidationBatchWindowMillis = invalidationBatchWindowMillis;
+    }
+
+    public int getInvalidationMaxBatchKeys() {
+        return invalidationMaxBatchKeys;
+    }
+
+    public void setInvalidationMaxBatchKeys(int invalidationMaxBatchKeys) {
+        this.invalidationMaxBatchKeys = invalidationMaxBatchKeys;
+    }
+}
@@ -0,0 +1,64 @@
+package com.gzy.custom.cache.config;
+
+import java.util.function.Function;
+
+import com.gzy.custom.cache.support.DecoderMap;
+import com.gzy.custom.cache.support.JavaValueEncoder;
+
+public class OffHeapCacheConfig<K, V> extends EmbeddedCacheConfig<K, V> {
+    long DEFAULT_CAPACITY_IN_BYTES = 64L * 1024 * 1024;
+    int DEFAULT_SLAB_SIZE_IN_BYTES = 4 * 1024 * 1024;
+    /**
+     * 堆外内存的总容量（字节）
+     */
+    private long capacityInBytes = DEFAULT_CAPACITY_IN_BYTES;
+    /**
+     * 每个内存块的大小（字节），单个缓存数据编码后不能超过该大小
+     */
+    private int slabSizeInBytes = DEFAULT_SLAB_SIZE_IN_BYTES;
+    /**
+     * 缓存数据编码函数
+     */
+    private Function<Object, byte[]> valueEncoder = JavaValueEncoder.INSTANCE;
+    /**
+     * 缓存数据解码函数
+     */
+    private Function<byte[], Object> valueDecoder = DecoderMap.defaultJavaValueDecoder();
+
+    public OffHeapCacheConfig() {
+        // 堆外缓存默认只按内存容量淘汰
+        setLimit(Integer.MAX_VALUE);
+    }
+
+    public long getCapacityInBytes() {
+        return capacityInBytes;
+    }
+
+    public void setCapacityInBytes(long capacityInBytes) {
+        this.capacityInBytes = capacityInBytes;
+    }
+
+    public int getSlabSizeInBytes() {
+        return slabSizeInBytes;
+    }
+
+    public void setSlabSizeInBytes(int slabSizeInBytes) {
+        this.slabSizeInBytes = slabSizeInBytes;
+    }
+
+    public Function<Object, byte[]> getValueEncoder() {
+        return valueEncoder;
+    }
+
+    public void setValueEncoder(Function<Object, byte[]> valueEncoder) {
+        this.valueEncoder = valueEncoder;
+    }
+
+    public Function<byte[], Object> getValueDecoder() {
+        return valueDecoder;
+    }
+
+    public void setValueDecoder(Function<byte[], Object> valueDecoder) {
+        this.valueDecoder = valueDecoder;
+    }
+}
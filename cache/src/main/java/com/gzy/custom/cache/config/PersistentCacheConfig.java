@@ -0,0 +1,16 @@
+package com.gzy.custom.cache.config;
+
+public class PersistentCacheConfig<K, V> extends OffHeapCacheConfig<K, V> {
+    /**
+     * 保存缓存数据文件的目录，每个缓存实例需要使用单独的目录
+     */
+    private String directory;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+}
@@ -1,5 +1,8 @@
 package com.gzy.custom.cache.config;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.util.Pool;
 
@@ -21,6 +24,38 @@ public class RedisCacheConfig<K, V> extends ExternalCacheConfig<K, V> {
      * Redis 从节点的权重
      */
     private int[] slaveReadWeights;
+    /**
+     * 是否根据从节点的响应时间和错误率选择从节点，为 false 时按 slaveReadWeights 随机选择
+     */
+    private boolean adaptiveSlaveRead = false;
+    /**
+     * 慢节点或故障节点被暂时剔除的时间（毫秒）
+     */
+    private long slaveEjectMillis = 10000;
+    /**
+     * 批量操作（GET_ALL、REMOVE_ALL）每个 mget / del 命令包含的 Key 数量，大于 0 时按该数量拆分后以 Pipeline 发送
+     */
+    private int pipelineBatchSize = 0;
+    /**
+     * 是否异步执行，为 true 时使用 AsyncRedisCache，命令在 asyncExecutor 中执行，调用方不阻塞
+     */
+    private boolean async = false;
+    /**
+     * 异步执行命令的线程池，为空时按 asyncThreadCount、asyncQueueSize 创建一个有界线程池
+     */
+    private ExecutorService asyncExecutor;
+    /**
+     * 异步执行命令的线程数量，通常不超过连接池的最大连接数，每个线程是一个单独的执行通道
+     */
+    private int asyncThreadCount = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * 异步执行命令的等待队列总长度，平均分配给每个执行通道，队列满时命令直接返回失败
+     */
+    private int asyncQueueSize = 1024;
+    /**
+     * 异步超时时间
+     */
+    private long asyncResultTimeoutInMillis = Duration.ofMillis(1000).toMillis();
 
     public Pool<Jedis> getJedisPool() {
         return jedisPool;
@@ -53,4 +88,68 @@ public class RedisCacheConfig<K, V> extends ExternalCacheConfig<K, V> {
     public void setSlaveReadWeights(int... slaveReadWeights) {
         this.slaveReadWeights = slaveReadWeights;
     }
+
+    public boolean isAdaptiveSlaveRead() {
+        return adaptiveSlaveRead;
+    }
+
+    public void setAdaptiveSlaveRead(boolean adaptiveSlaveRead) {
+        this.adaptiveSlaveRead = adaptiveSlaveRead;
+    }
+
+    public long getSlaveEjectMillis() {
+        return slaveEjectMillis;
+    }
+
+    public void setSlaveEjectMillis(long slaveEjectMillis) {
+        this.slaveEjectMillis = slaveEjectMillis;
+    }
+
+    public int getPipelineBatchSize() {
+        return pipelineBatchSize;
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    public int getAsyncThreadCount() {
+        return asyncThreadCount;
+    }
+
+    public void setAsyncThreadCount(int asyncThreadCount) {
+        this.asyncThreadCount = asyncThreadCount;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    public long getAsyncResultTimeoutInMillis() {
+        return asyncResultTimeoutInMillis;
+    }
+
+    public void setAsyncResultTimeoutInMillis(long asyncResultTimeoutInMillis) {
+        this.asyncResultTimeoutInMillis = asyncResultTimeoutInMillis;
+    }
 }
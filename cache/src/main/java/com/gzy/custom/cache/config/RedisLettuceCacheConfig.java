@@ -2,6 +2,7 @@ package com.gzy.custom.cache.config;
 
 import java.time.Duration;
 
+import com.gzy.custom.cache.external.ConnectionSelectStrategy;
 import io.lettuce.core.AbstractRedisClient;
 import io.lettuce.core.api.StatefulConnection;
 
@@ -20,6 +21,30 @@ public class RedisLettuceCacheConfig<K, V> extends ExternalCacheConfig<K, V> {
      * 异步超时时间
      */
     private long asyncResultTimeoutInMillis = ASYNC_RESULT_TIMEOUT.toMillis();
+    /**
+     * 批量操作（PUT_ALL、REMOVE_ALL）每写入多少条命令 flush 一次，大于 0 时批量操作使用关闭了自动 flush 的专用连接
+     */
+    private int pipelineBatchSize = 0;
+    /**
+     * 合并单 Key 查询的时间窗口（微秒），大于 0 时窗口内不同调用方的 GET 合并成一次 mget
+     */
+    private long getCoalesceWindowInMicros = 0;
+    /**
+     * 一次合并查询的最大 Key 数量，达到后立即执行
+     */
+    private int getCoalesceMaxKeys = 64;
+    /**
+     * 连接数量，多个连接时命令按 connectionSelectStrategy 分散到各个连接上
+     */
+    private int connectionCount = 1;
+    /**
+     * 选择连接的策略
+     */
+    private ConnectionSelectStrategy connectionSelectStrategy = ConnectionSelectStrategy.KEY_HASH;
+    /**
+     * 批量操作（GET_ALL、PUT_ALL、REMOVE_ALL）是否使用专用的连接，设置了 pipelineBatchSize 时总是使用
+     */
+    private boolean bulkConnection = false;
 
     public AbstractRedisClient getRedisClient() {
         return redisClient;
@@ -44,4 +69,52 @@ public class RedisLettuceCacheConfig<K, V> extends ExternalCacheConfig<K, V> {
     public void setAsyncResultTimeoutInMillis(long asyncResultTimeoutInMillis) {
         this.asyncResultTimeoutInMillis = asyncResultTimeoutInMillis;
     }
+
+    public int getPipelineBatchSize() {
+        return pipelineBatchSize;
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        this.pipelineBatchSize = pipelineBatchSize;
+    }
+
+    public long getGetCoalesceWindowInMicros() {
+        return getCoalesceWindowInMicros;
+    }
+
+    public void setGetCoalesceWindowInMicros(long getCoalesceWindowInMicros) {
+        this.getCoalesceWindowInMicros = getCoalesceWindowInMicros;
+    }
+
+    public int getGetCoalesceMaxKeys() {
+        return getCoalesceMaxKeys;
+    }
+
+    public void setGetCoalesceMaxKeys(int getCoalesceMaxKeys) {
+        this.getCoalesceMaxKeys = getCoalesceMaxKeys;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public void setConnectionCount(int connectionCount) {
+        this.connectionCount = connectionCount;
+    }
+
+    public ConnectionSelectStrategy getConnectionSelectStrategy() {
+        return connectionSelectStrategy;
+    }
+
+    public void setConnectionSelectStrategy(ConnectionSelectStrategy connectionSelectStrategy) {
+        this.connectionSelectStrategy = connectionSelectStrategy;
+    }
+
+    public boolean isBulkConnection() {
+        return bulkConnection;
+    }
+
+    public void setBulkConnection(boolean bulkConnection) {
+        this.bulkConnection = bulkConnection;
+    }
 }
@@ -1,20 +1,29 @@
 package com.gzy.custom.cache.external;
 
+import java.util.List;
+
 import com.gzy.custom.cache.AbstractCache;
 import com.gzy.custom.cache.config.ExternalCacheConfig;
 import com.gzy.custom.cache.exception.CacheConfigException;
-import com.gzy.custom.cache.exception.CacheException;
-
-import java.io.IOException;
+import com.gzy.custom.cache.support.CompressValueEncoder;
 
 
 public abstract class AbstractExternalCache<K, V> extends AbstractCache<K, V> {
 
     private ExternalCacheConfig<K, V> config;
+    /**
+     * Key 编码器，缓存了 keyPrefix 的字节数组
+     */
+    private final ExternalKeyEncoder keyEncoder;
 
     public AbstractExternalCache(ExternalCacheConfig<K, V> config) {
         this.config = config;
         checkConfig();
+        this.keyEncoder = new ExternalKeyEncoder(config.getKeyPrefix());
+        if (config.getCompressThreshold() > 0 && !(config.getValueEncoder() instanceof CompressValueEncoder)) {
+            // config 是构建缓存实例时克隆的，不影响其他缓存实例
+            config.setValueEncoder(new CompressValueEncoder(config.getValueEncoder(), config.getCompressThreshold()));
+        }
     }
 
     protected void checkConfig() {
@@ -30,21 +39,53 @@ public abstract class AbstractExternalCache<K, V> extends AbstractCache<K, V> {
     }
 
     public byte[] buildKey(K key) {
-        try {
-            Object newKey = key;
-            if (key instanceof byte[]) {
-                newKey = key;
-            } else if(key instanceof String){
-                newKey = key;
-            } else {
-                if (config.getKeyConvertor() != null) {
-                    newKey = config.getKeyConvertor().apply(key);
-                }
+        Object newKey = key;
+        if (key instanceof byte[]) {
+            newKey = key;
+        } else if(key instanceof String){
+            newKey = key;
+        } else {
+            if (config.getKeyConvertor() != null) {
+                newKey = config.getKeyConvertor().apply(key);
             }
-            return ExternalKeyUtil.buildKeyAfterConvert(newKey, config.getKeyPrefix());
-        } catch (IOException e) {
-            throw new CacheException(e);
         }
+        return keyEncoder.encode(newKey);
+    }
+
+    /**
+     * 批量获取刷新权：在服务端原子地判断每个 Key 距离上一次刷新是否已经超过刷新间隔，
+     * 是则将刷新时间更新为当前时间，当前节点获得该 Key 的刷新权，其他节点在下一个刷新间隔之前不会再获得
+     *
+     * @param timestampKeys 刷新时间戳的 Key（已转换）
+     * @param now 当前时间
+     * @param refreshMillis 刷新间隔
+     * @param expireMillis 刷新时间戳的过期时间
+     * @return 与 timestampKeys 一一对应，true 表示获得了刷新权；不支持时返回 null，由调用方逐个 Key 刷新
+     */
+    public boolean[] tryAcquireRefresh(byte[][] timestampKeys, long now, long refreshMillis, long expireMillis) {
+        return null;
+    }
+
+    /**
+     * 刷新节点心跳：在注册表中写入当前节点的心跳时间，删除超过 expireMillis 没有心跳的节点
+     *
+     * @param registryKey 注册表的 Key（已转换）
+     * @param nodeId 当前节点的 ID
+     * @param now 当前时间
+     * @param expireMillis 节点超时时间
+     * @return 存活的节点 ID（包括当前节点）；不支持时返回 null
+     */
+    public List<String> heartbeat(byte[] registryKey, String nodeId, long now, long expireMillis) {
+        return null;
+    }
+
+    /**
+     * 将当前节点从注册表中删除，其他节点下一次心跳时立即接管它负责的 Key
+     *
+     * @param registryKey 注册表的 Key（已转换）
+     * @param nodeId 当前节点的 ID
+     */
+    public void leave(byte[] registryKey, String nodeId) {
     }
 
 }
@@ -0,0 +1,15 @@
+package com.gzy.custom.cache.external;
+
+/**
+ * 自己提供二进制形式的缓存 Key，远程缓存直接使用 getKeyBytes() 的结果（加上前缀）作为 Key，
+ * 不需要 Java 序列化
+ */
+public interface BinaryKey {
+
+    /**
+     * 获取 Key 的二进制形式，相等的 Key 必须返回相同的字节
+     *
+     * @return Key 的字节数组（不包含前缀）
+     */
+    byte[] getKeyBytes();
+}
@@ -0,0 +1,20 @@
+package com.gzy.custom.cache.external;
+
+/**
+ * 多个连接时选择连接的策略
+ */
+public enum ConnectionSelectStrategy {
+    /**
+     * 按 Key 的 hash 选择，同一个 Key 的命令总在同一个连接上，保证同一个 Key 的命令按顺序执行
+     */
+    KEY_HASH,
+    /**
+     * 轮询，不保证同一个 Key 的命令按顺序执行（例如没有等待结果的 put 之后立即 get 可能读到旧值）
+     */
+    ROUND_ROBIN,
+    /**
+     * 选择未完成命令最少的连接，大 value 阻塞某个连接时，新的命令会避开该连接，
+     * 与 ROUND_ROBIN 一样不保证同一个 Key 的命令按顺序执行
+     */
+    LEAST_PENDING
+}
@@ -31,6 +31,14 @@ public abstract class ExternalCacheBuilder<T extends ExternalCacheBuilder<T>> ex
         return self();
     }
 
+    /**
+     * 缓存数据编码后超过 threshold 字节时压缩
+     */
+    public T compressThreshold(int threshold) {
+        getConfig().setCompressThreshold(threshold);
+        return self();
+    }
+
     public void setKeyPrefix(String keyPrefix) {
         getConfig().setKeyPrefix(keyPrefix);
     }
@@ -42,4 +50,8 @@ public abstract class ExternalCacheBuilder<T extends ExternalCacheBuilder<T>> ex
     public void setValueDecoder(Function<byte[], Object> valueDecoder) {
         getConfig().setValueDecoder(valueDecoder);
     }
+
+    public void setCompressThreshold(int compressThreshold) {
+        getConfig().setCompressThreshold(compressThreshold);
+    }
 }
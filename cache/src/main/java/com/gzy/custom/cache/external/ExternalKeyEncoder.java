@@ -0,0 +1,179 @@
+package com.gzy.custom.cache.external;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+
+import com.gzy.custom.cache.exception.CacheException;
+
+/**
+ * 远程缓存 Key 的编码器，每个缓存实例一个，缓存前缀的字节数组，
+ * 将 Key 直接写入线程复用的字节数组，生成的 Key 与 ExternalKeyUtil 原有的规则完全一致：
+ * String 为 UTF-8 编码；Number 为 类名 + 数字；Date 为 类名 + yyyyMMddHHmmss,SSS；
+ * Boolean 为 true/false；BinaryKey 为 getKeyBytes()；其他 Serializable 对象使用 Java 序列化
+ */
+public class ExternalKeyEncoder {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss,SSS");
+
+    private static final int INIT_BUF_SIZE = 128;
+    /**
+     * 线程缓存的字节数组的最大大小
+     */
+    private static final int MAX_CACHED_BUF_SIZE = 8 * 1024;
+
+    private static final ClassValue<byte[]> SIMPLE_NAMES = new ClassValue<byte[]>() {
+        @Override
+        protected byte[] computeValue(Class<?> type) {
+            return type.getSimpleName().getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    private static ThreadLocal<WeakReference<Output>> threadLocal =
+        ThreadLocal.withInitial(() -> new WeakReference<>(new Output()));
+
+    private final byte[] prefixBytes;
+
+    public ExternalKeyEncoder(String prefix) {
+        this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 生成 Key
+     *
+     * @param newKey 经过 keyConvertor 转换后的 Key
+     * @return 前缀 + Key 的字节数组
+     */
+    public byte[] encode(Object newKey) {
+        if (newKey == null) {
+            throw new NullPointerException("key can't be null");
+        }
+        WeakReference<Output> ref = threadLocal.get();
+        Output out = ref.get();
+        if (out == null) {
+            out = new Output();
+            threadLocal.set(new WeakReference<>(out));
+        }
+        try {
+            out.write(prefixBytes);
+            writeKey(out, newKey);
+            return out.toByteArray();
+        } finally {
+            out.reset();
+        }
+    }
+
+    private void writeKey(Output out, Object newKey) {
+        if (newKey instanceof String) {
+            out.writeString((String) newKey);
+        } else if (newKey instanceof byte[]) {
+            out.write((byte[]) newKey);
+        } else if (newKey instanceof Number) {
+            out.write(SIMPLE_NAMES.get(newKey.getClass()));
+            if (newKey instanceof Long || newKey instanceof Integer || newKey instanceof Short || newKey instanceof Byte) {
+                out.writeDecimal(((Number) newKey).longValue());
+            } else {
+                out.writeString(newKey.toString());
+            }
+        } else if (newKey instanceof Date) {
+            out.write(SIMPLE_NAMES.get(newKey.getClass()));
+            // 与 SimpleDateFormat 一致，使用当前的默认时区
+            Instant instant = Instant.ofEpochMilli(((Date) newKey).getTime());
+            out.writeString(DATE_FORMATTER.withZone(ZoneId.systemDefault()).format(instant));
+        } else if (newKey instanceof Boolean) {
+            out.writeString(newKey.toString());
+        } else if (newKey instanceof BinaryKey) {
+            out.write(((BinaryKey) newKey).getKeyBytes());
+        } else if (newKey instanceof Serializable) {
+            try {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ObjectOutputStream os = new ObjectOutputStream(bos);
+                os.writeObject(newKey);
+                os.close();
+                out.write(bos.toByteArray());
+            } catch (IOException e) {
+                throw new CacheException(e);
+            }
+        } else {
+            throw new CacheException("can't convert key of class: " + newKey.getClass());
+        }
+    }
+
+    /**
+     * 可扩容的字节数组输出
+     */
+    private static final class Output {
+        private byte[] buf = new byte[INIT_BUF_SIZE];
+        private int count;
+
+        private void ensureCapacity(int n) {
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+            }
+        }
+
+        void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void writeString(String s) {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    write(s.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buf[count++] = (byte) s.charAt(i);
+            }
+        }
+
+        /**
+         * 写入十进制数字，与 Long.toString 的结果一致
+         */
+        void writeDecimal(long v) {
+            if (v == Long.MIN_VALUE) {
+                writeString(Long.toString(v));
+                return;
+            }
+            ensureCapacity(20);
+            if (v < 0) {
+                buf[count++] = '-';
+                v = -v;
+            }
+            int start = count;
+            do {
+                buf[count++] = (byte) ('0' + v % 10);
+                v /= 10;
+            } while (v != 0);
+            for (int i = start, j = count - 1; i < j; i++, j--) {
+                byte t = buf[i];
+                buf[i] = buf[j];
+                buf[j] = t;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void reset() {
+            count = 0;
+            if (buf.length > MAX_CACHED_BUF_SIZE) {
+                buf = new byte[INIT_BUF_SIZE];
+            }
+        }
+    }
+}
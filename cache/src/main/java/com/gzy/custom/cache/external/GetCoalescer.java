@@ -0,0 +1,159 @@
+package com.gzy.custom.cache.external;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.gzy.custom.cache.exception.CacheException;
+
+/**
+ * 合并不同调用方的单 Key 查询：时间窗口内（或达到 maxKeys 个）的查询合并成一次批量查询（如 mget），
+ * 再从批量查询的结果中分别完成每个调用方的 Future
+ * 以每次查询增加最多一个时间窗口的延迟为代价，减少远程缓存的命令数量
+ *
+ * 时间窗口由专用的定时线程触发，不与 CacheExecutor.defaultExecutor 中的清理、失效消息等任务排队；
+ * 新的查询到来时如果当前批次的时间窗口已经结束，由调用线程直接执行
+ */
+public class GetCoalescer {
+
+    /**
+     * 所有 GetCoalescer 共用的定时线程，只执行时间窗口结束时的批量查询（只发送命令，不等待结果）
+     */
+    private static volatile ScheduledExecutorService timer;
+
+    /**
+     * 批量查询函数，返回的结果与 Key 的顺序一一对应，不存在的 Key 对应 null
+     */
+    private final Function<byte[][], CompletionStage<List<byte[]>>> batchLoader;
+
+    private final long windowInMicros;
+
+    private final int maxKeys;
+
+    /**
+     * 当前正在收集的批次
+     */
+    private Batch pending;
+
+    private static final class Batch {
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        private final long deadlineNanos;
+
+        private Batch(long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private static ScheduledExecutorService timer() {
+        ScheduledExecutorService t = timer;
+        if (t == null) {
+            synchronized (GetCoalescer.class) {
+                t = timer;
+                if (t == null) {
+                    t = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread thread = new Thread(r, "JetCacheGetCoalescer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    timer = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    public GetCoalescer(Function<byte[][], CompletionStage<List<byte[]>>> batchLoader, long windowInMicros,
+                        int maxKeys) {
+        this.batchLoader = batchLoader;
+        this.windowInMicros = windowInMicros;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * 查询一个 Key，加入当前批次，批次满了立即执行，否则在时间窗口结束时执行
+     *
+     * @param key 已经编码的 Key
+     * @return 查询结果，不存在时为 null
+     */
+    public CompletableFuture<byte[]> get(byte[] key) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        Batch full = null;
+        Batch created = null;
+        Batch expired = null;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (pending != null && now - pending.deadlineNanos >= 0) {
+                // 时间窗口已经结束但定时线程还没有执行，由当前线程执行
+                expired = pending;
+                pending = null;
+            }
+            if (pending == null) {
+                pending = new Batch(now + TimeUnit.MICROSECONDS.toNanos(windowInMicros));
+                created = pending;
+            }
+            pending.keys.add(key);
+            pending.futures.add(future);
+            if (pending.keys.size() >= maxKeys) {
+                full = pending;
+                pending = null;
+            }
+        }
+        if (expired != null) {
+            flush(expired);
+        }
+        if (full != null) {
+            flush(full);
+        } else if (created != null) {
+            Batch batch = created;
+            try {
+                timer().schedule(() -> flushIfPending(batch), windowInMicros, TimeUnit.MICROSECONDS);
+            } catch (RejectedExecutionException e) {
+                flushIfPending(batch);
+            }
+        }
+        return future;
+    }
+
+    private void flushIfPending(Batch batch) {
+        synchronized (this) {
+            if (pending != batch) {
+                // 已经因为达到 maxKeys 执行过了
+                return;
+            }
+            pending = null;
+        }
+        flush(batch);
+    }
+
+    private void flush(Batch batch) {
+        CompletionStage<List<byte[]>> stage;
+        try {
+            stage = batchLoader.apply(batch.keys.toArray(new byte[batch.keys.size()][]));
+        } catch (Throwable ex) {
+            batch.futures.forEach(f -> f.completeExceptionally(ex));
+            return;
+        }
+        stage.whenComplete((values, ex) -> {
+            int size = batch.futures.size();
+            if (ex == null && (values == null || values.size() != size)) {
+                // 返回的数量与 Key 的数量不一致时无法对应，所有查询都失败，不能让部分调用方一直等待
+                ex = new CacheException("unexpected batch get reply: expect " + size + " values, but got "
+                        + (values == null ? null : values.size()));
+            }
+            for (int i = 0; i < size; i++) {
+                if (ex != null) {
+                    batch.futures.get(i).completeExceptionally(ex);
+                } else {
+                    batch.futures.get(i).complete(values.get(i));
+                }
+            }
+        });
+    }
+}
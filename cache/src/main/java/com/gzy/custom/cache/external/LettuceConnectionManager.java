@@ -1,6 +1,8 @@
 package com.gzy.custom.cache.external;
 
+import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
 
@@ -12,6 +14,7 @@ import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.cluster.RedisClusterClient;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.sentinel.api.StatefulRedisSentinelConnection;
 
 public class LettuceConnectionManager {
@@ -21,6 +24,24 @@ public class LettuceConnectionManager {
         private Object commands;
         private Object asyncCommands;
         private Object reactiveCommands;
+        /**
+         * 批量操作专用的连接，关闭了自动 flush
+         */
+        private StatefulConnection batchConnection;
+        private Object batchAsyncCommands;
+        /**
+         * 连接数量和选择策略 -> 一组连接，第一个连接就是 connection，
+         * 同一个客户端上设置不同的缓存各自使用一组连接
+         */
+        private final Map<String, LettuceConnectionSet> connectionSets = new HashMap<>();
+        /**
+         * 订阅消息的连接
+         */
+        private StatefulRedisPubSubConnection pubSubConnection;
+        /**
+         * 订阅连接上每个频道的订阅者数量，最后一个订阅者取消时才取消订阅
+         */
+        private final Map<ByteBuffer, Integer> subscriptions = new HashMap<>();
     }
 
     private static final LettuceConnectionManager defaultManager = new LettuceConnectionManager();
@@ -63,17 +84,53 @@ public class LettuceConnectionManager {
     public StatefulConnection connection(AbstractRedisClient redisClient) {
         LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
         if (lo.connection == null) {
-            if (redisClient instanceof RedisClient) {
-                lo.connection = ((RedisClient) redisClient).connect(new JetCacheCodec());
-            } else if (redisClient instanceof RedisClusterClient) {
-                lo.connection = ((RedisClusterClient) redisClient).connect(new JetCacheCodec());
-            } else {
-                throw new CacheConfigException("type " + redisClient.getClass() + " is not supported");
-            }
+            lo.connection = connect(redisClient);
         }
         return lo.connection;
     }
 
+    private StatefulConnection connect(AbstractRedisClient redisClient) {
+        if (redisClient instanceof RedisClient) {
+            return ((RedisClient) redisClient).connect(new JetCacheCodec());
+        } else if (redisClient instanceof RedisClusterClient) {
+            return ((RedisClusterClient) redisClient).connect(new JetCacheCodec());
+        } else {
+            throw new CacheConfigException("type " + redisClient.getClass() + " is not supported");
+        }
+    }
+
+    /**
+     * 获取 redisClient 对应的批量操作连接，专门用于批量操作，不与单 Key 命令共用连接，该连接关闭了自动 flush，
+     * 写入的命令先缓存在客户端，调用 flushCommands() 后一次性发送
+     *
+     * @param redisClient Redis客户端
+     * @return 批量操作连接
+     */
+    public StatefulConnection batchConnection(AbstractRedisClient redisClient) {
+        LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
+        if (lo.batchConnection == null) {
+            StatefulConnection connection = connect(redisClient);
+            connection.setAutoFlushCommands(false);
+            lo.batchConnection = connection;
+        }
+        return lo.batchConnection;
+    }
+
+    /**
+     * 尝试获取 redisClient 对应的批量操作连接的异步命令
+     *
+     * @param redisClient Redis客户端
+     * @return 异步命令
+     */
+    public Object batchAsyncCommands(AbstractRedisClient redisClient) {
+        StatefulConnection connection = batchConnection(redisClient);
+        LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
+        if (lo.batchAsyncCommands == null) {
+            lo.batchAsyncCommands = async(connection);
+        }
+        return lo.batchAsyncCommands;
+    }
+
     /**
      * 尝试获取 redisClient 对应的同步命令
      *
@@ -109,17 +166,118 @@ public class LettuceConnectionManager {
         connection(redisClient);
         LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
         if (lo.asyncCommands == null) {
-            if (lo.connection instanceof StatefulRedisConnection) {
-                lo.asyncCommands = ((StatefulRedisConnection) lo.connection).async();
-            } else if (lo.connection instanceof StatefulRedisClusterConnection) {
-                lo.asyncCommands = ((StatefulRedisClusterConnection) lo.connection).async();
-            } else if (lo.connection instanceof StatefulRedisSentinelConnection) {
-                lo.asyncCommands = ((StatefulRedisSentinelConnection) lo.connection).async();
+            lo.asyncCommands = async(lo.connection);
+        }
+        return lo.asyncCommands;
+    }
+
+    private Object async(StatefulConnection connection) {
+        if (connection instanceof StatefulRedisConnection) {
+            return ((StatefulRedisConnection) connection).async();
+        } else if (connection instanceof StatefulRedisClusterConnection) {
+            return ((StatefulRedisClusterConnection) connection).async();
+        } else if (connection instanceof StatefulRedisSentinelConnection) {
+            return ((StatefulRedisSentinelConnection) connection).async();
+        } else {
+            throw new CacheConfigException("type " + connection.getClass() + " is not supported");
+        }
+    }
+
+    /**
+     * 获取 redisClient 对应的一组连接，第一个连接是 connection(redisClient)，其余的连接新建，
+     * 连接数量和选择策略相同的调用共用同一组连接，不同时各自创建
+     *
+     * @param redisClient Redis客户端
+     * @param connectionCount 连接数量
+     * @param strategy 选择连接的策略
+     * @return 一组连接
+     */
+    public LettuceConnectionSet connectionSet(AbstractRedisClient redisClient, int connectionCount,
+                                              ConnectionSelectStrategy strategy) {
+        asyncCommands(redisClient);
+        LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
+        int n = Math.max(1, connectionCount);
+        synchronized (lo) {
+            return lo.connectionSets.computeIfAbsent(n + ":" + strategy, key -> {
+                StatefulConnection[] connections = new StatefulConnection[n];
+                Object[] asyncCommands = new Object[n];
+                connections[0] = lo.connection;
+                asyncCommands[0] = lo.asyncCommands;
+                for (int i = 1; i < n; i++) {
+                    connections[i] = connect(redisClient);
+                    asyncCommands[i] = async(connections[i]);
+                }
+                return new LettuceConnectionSet(connections, asyncCommands, strategy);
+            });
+        }
+    }
+
+    /**
+     * 获取 redisClient 对应的订阅连接，进入订阅状态的连接不能执行其他命令，因此单独创建
+     *
+     * @param redisClient Redis客户端
+     * @return 订阅连接
+     */
+    public StatefulRedisPubSubConnection pubSubConnection(AbstractRedisClient redisClient) {
+        LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
+        synchronized (lo) {
+            if (lo.pubSubConnection == null) {
+                if (redisClient instanceof RedisClient) {
+                    lo.pubSubConnection = ((RedisClient) redisClient).connectPubSub(new JetCacheCodec());
+                } else if (redisClient instanceof RedisClusterClient) {
+                    lo.pubSubConnection = ((RedisClusterClient) redisClient).connectPubSub(new JetCacheCodec());
+                } else {
+                    throw new CacheConfigException("type " + redisClient.getClass() + " is not supported");
+                }
+            }
+        }
+        return lo.pubSubConnection;
+    }
+
+    /**
+     * 在 redisClient 的订阅连接上订阅频道，同一个频道只在第一个订阅者订阅时发送 SUBSCRIBE
+     *
+     * @param redisClient Redis客户端
+     * @param channel 频道名称
+     * @return 订阅连接
+     */
+    public StatefulRedisPubSubConnection subscribe(AbstractRedisClient redisClient, byte[] channel) {
+        StatefulRedisPubSubConnection connection = pubSubConnection(redisClient);
+        LettuceObjects lo = getLettuceObjectsFromMap(redisClient);
+        synchronized (lo) {
+            if (lo.subscriptions.merge(ByteBuffer.wrap(channel), 1, Integer::sum) == 1) {
+                connection.async().subscribe(channel);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * 取消一个订阅者对频道的订阅，没有其他订阅者时发送 UNSUBSCRIBE
+     *
+     * @param redisClient Redis客户端
+     * @param channel 频道名称
+     */
+    public void unsubscribe(AbstractRedisClient redisClient, byte[] channel) {
+        LettuceObjects lo = map.get(redisClient);
+        if (lo == null) {
+            return;
+        }
+        synchronized (lo) {
+            ByteBuffer key = ByteBuffer.wrap(channel);
+            Integer count = lo.subscriptions.get(key);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                lo.subscriptions.put(key, count - 1);
             } else {
-                throw new CacheConfigException("type " + lo.connection.getClass() + " is not supported");
+                lo.subscriptions.remove(key);
+                if (lo.pubSubConnection != null) {
+                    lo.pubSubConnection.async().unsubscribe(channel);
+                }
             }
         }
-        return lo.asyncCommands;
     }
 
     /**
@@ -169,6 +327,19 @@ public class LettuceConnectionManager {
         if (lo.connection != null) {
             lo.connection.close();
         }
+        if (lo.batchConnection != null) {
+            lo.batchConnection.close();
+        }
+        if (lo.pubSubConnection != null) {
+            lo.pubSubConnection.close();
+        }
+        synchronized (lo) {
+            for (LettuceConnectionSet connectionSet : lo.connectionSets.values()) {
+                for (int i = 1; i < connectionSet.size(); i++) {
+                    connectionSet.connection(i).close();
+                }
+            }
+        }
         redisClient.shutdown();
     }
 }
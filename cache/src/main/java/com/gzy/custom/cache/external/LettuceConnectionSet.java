@@ -0,0 +1,97 @@
+package com.gzy.custom.cache.external;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.StatefulConnection;
+
+/**
+ * 同一个 Redis 客户端的一组连接，命令按 ConnectionSelectStrategy 分散到各个连接上，
+ * 避免所有命令都排在一个连接上，大 value 阻塞后面的小命令
+ */
+public class LettuceConnectionSet {
+
+    private final StatefulConnection[] connections;
+
+    private final Object[] asyncCommands;
+    /**
+     * 每个连接上未完成的命令数量
+     */
+    private final AtomicIntegerArray pending;
+
+    private final ConnectionSelectStrategy strategy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    LettuceConnectionSet(StatefulConnection[] connections, Object[] asyncCommands, ConnectionSelectStrategy strategy) {
+        this.connections = connections;
+        this.asyncCommands = asyncCommands;
+        this.pending = new AtomicIntegerArray(connections.length);
+        this.strategy = strategy;
+    }
+
+    public int size() {
+        return connections.length;
+    }
+
+    StatefulConnection connection(int index) {
+        return connections[index];
+    }
+
+    public Object asyncCommands(int index) {
+        return asyncCommands[index];
+    }
+
+    public int pending(int index) {
+        return pending.get(index);
+    }
+
+    /**
+     * 选择一个连接
+     *
+     * @param key 命令的 Key，多 Key 命令为 null
+     * @return 连接的下标
+     */
+    public int select(byte[] key) {
+        int n = connections.length;
+        if (n == 1) {
+            return 0;
+        }
+        if (strategy == ConnectionSelectStrategy.KEY_HASH && key != null) {
+            int h = Arrays.hashCode(key);
+            return Math.floorMod(h ^ (h >>> 16), n);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        if (strategy != ConnectionSelectStrategy.LEAST_PENDING) {
+            return start;
+        }
+        // 从轮询的位置开始找，未完成命令数量相同时分散到不同连接
+        int selected = start;
+        int min = pending.get(start);
+        for (int i = 1; i < n && min > 0; i++) {
+            int index = (start + i) % n;
+            int p = pending.get(index);
+            if (p < min) {
+                min = p;
+                selected = index;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 记录在连接上发出的命令，命令完成后减少该连接的未完成数量
+     *
+     * @param index 连接的下标
+     * @param future 命令的结果
+     */
+    public <T> CompletableFuture<T> track(int index, RedisFuture<T> future) {
+        pending.incrementAndGet(index);
+        CompletableFuture<T> f = future.toCompletableFuture();
+        f.whenComplete((v, ex) -> pending.decrementAndGet(index));
+        return f;
+    }
+}
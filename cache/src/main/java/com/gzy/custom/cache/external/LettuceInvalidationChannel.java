@@ -0,0 +1,67 @@
+package com.gzy.custom.cache.external;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.gzy.custom.cache.support.InvalidationChannel;
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+
+/**
+ * 基于 Redis 发布订阅的失效消息通道，使用 LettuceConnectionManager 管理的连接：
+ * 发布使用 redisClient 的普通连接，订阅使用单独的订阅连接，同一个 redisClient 的多个通道共用这两个连接；
+ * 同一个频道可以有多个通道订阅，由 LettuceConnectionManager 计数，最后一个通道关闭时才取消订阅
+ *
+ * Redis 集群中 PUBLISH 会广播到所有节点，订阅任意一个节点即可
+ */
+public class LettuceInvalidationChannel implements InvalidationChannel {
+
+    private final AbstractRedisClient redisClient;
+    private final byte[] channel;
+    private final LettuceConnectionManager connectionManager = LettuceConnectionManager.defaultManager();
+
+    private StatefulRedisPubSubConnection pubSubConnection;
+    private RedisPubSubAdapter listenerAdapter;
+
+    /**
+     * @param redisClient Redis客户端
+     * @param channel 频道名称，不同的缓存应使用不同的频道
+     */
+    public LettuceInvalidationChannel(AbstractRedisClient redisClient, String channel) {
+        this.redisClient = redisClient;
+        this.channel = channel.getBytes(StandardCharsets.UTF_8);
+        connectionManager.init(redisClient, null);
+    }
+
+    @Override
+    public void publish(byte[] message) {
+        ((RedisClusterAsyncCommands) connectionManager.asyncCommands(redisClient)).publish(channel, message);
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<byte[]> listener) {
+        pubSubConnection = connectionManager.pubSubConnection(redisClient);
+        listenerAdapter = new RedisPubSubAdapter() {
+            @Override
+            public void message(Object channel, Object message) {
+                if (Arrays.equals((byte[]) channel, LettuceInvalidationChannel.this.channel)) {
+                    listener.accept((byte[]) message);
+                }
+            }
+        };
+        pubSubConnection.addListener(listenerAdapter);
+        connectionManager.subscribe(redisClient, channel);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (pubSubConnection != null) {
+            pubSubConnection.removeListener(listenerAdapter);
+            connectionManager.unsubscribe(redisClient, channel);
+            pubSubConnection = null;
+        }
+    }
+}
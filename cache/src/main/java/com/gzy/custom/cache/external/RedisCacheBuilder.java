@@ -0,0 +1,154 @@
+package com.gzy.custom.cache.external;
+
+import java.util.concurrent.ExecutorService;
+
+import com.gzy.custom.cache.config.RedisCacheConfig;
+import com.gzy.custom.cache.external.redis.AsyncRedisCache;
+import com.gzy.custom.cache.external.redis.RedisCache;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.Pool;
+
+public class RedisCacheBuilder<T extends ExternalCacheBuilder<T>> extends ExternalCacheBuilder<T> {
+    public static class RedisCacheBuilderImpl extends RedisCacheBuilder<RedisCacheBuilderImpl> {}
+
+    public static RedisCacheBuilderImpl createRedisCacheBuilder() {
+        return new RedisCacheBuilderImpl();
+    }
+
+    protected RedisCacheBuilder() {
+        /*
+         * 生成一个构建 RedisCache 缓存实例的函数，开启了 async 时构建 AsyncRedisCache
+         */
+        buildFunc(config -> {
+            RedisCacheConfig redisConfig = (RedisCacheConfig) config;
+            return redisConfig.isAsync() ? new AsyncRedisCache(redisConfig) : new RedisCache(redisConfig);
+        });
+    }
+
+    @Override
+    public RedisCacheConfig getConfig() {
+        if (config == null) {
+            config = new RedisCacheConfig();
+        }
+        return (RedisCacheConfig)config;
+    }
+
+    public T jedisPool(Pool<Jedis> jedisPool) {
+        getConfig().setJedisPool(jedisPool);
+        return self();
+    }
+
+    public void setJedisPool(Pool<Jedis> jedisPool) {
+        getConfig().setJedisPool(jedisPool);
+    }
+
+    public T readFromSlave(boolean readFromSlave) {
+        getConfig().setReadFromSlave(readFromSlave);
+        return self();
+    }
+
+    public void setReadFromSlave(boolean readFromSlave) {
+        getConfig().setReadFromSlave(readFromSlave);
+    }
+
+    public T jedisSlavePools(Pool<Jedis>... jedisSlavePools) {
+        getConfig().setJedisSlavePools(jedisSlavePools);
+        return self();
+    }
+
+    public void setJedisSlavePools(Pool<Jedis>... jedisSlavePools) {
+        getConfig().setJedisSlavePools(jedisSlavePools);
+    }
+
+    public T slaveReadWeights(int... slaveReadWeights) {
+        getConfig().setSlaveReadWeights(slaveReadWeights);
+        return self();
+    }
+
+    public void setSlaveReadWeights(int... slaveReadWeights) {
+        getConfig().setSlaveReadWeights(slaveReadWeights);
+    }
+
+    /**
+     * 根据从节点的响应时间和错误率选择从节点，并暂时剔除慢节点
+     *
+     * @param slaveEjectMillis 剔除时间（毫秒）
+     */
+    public T adaptiveSlaveRead(long slaveEjectMillis) {
+        getConfig().setAdaptiveSlaveRead(true);
+        getConfig().setSlaveEjectMillis(slaveEjectMillis);
+        return self();
+    }
+
+    public void setAdaptiveSlaveRead(boolean adaptiveSlaveRead) {
+        getConfig().setAdaptiveSlaveRead(adaptiveSlaveRead);
+    }
+
+    public void setSlaveEjectMillis(long slaveEjectMillis) {
+        getConfig().setSlaveEjectMillis(slaveEjectMillis);
+    }
+
+    public T pipelineBatchSize(int pipelineBatchSize) {
+        getConfig().setPipelineBatchSize(pipelineBatchSize);
+        return self();
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        getConfig().setPipelineBatchSize(pipelineBatchSize);
+    }
+
+    /**
+     * 异步执行命令，使用 asyncThreadCount 个执行通道
+     */
+    public T async(boolean async) {
+        getConfig().setAsync(async);
+        return self();
+    }
+
+    public void setAsync(boolean async) {
+        getConfig().setAsync(async);
+    }
+
+    /**
+     * 异步执行命令，使用指定的线程池
+     */
+    public T asyncExecutor(ExecutorService asyncExecutor) {
+        getConfig().setAsync(true);
+        getConfig().setAsyncExecutor(asyncExecutor);
+        return self();
+    }
+
+    public void setAsyncExecutor(ExecutorService asyncExecutor) {
+        getConfig().setAsyncExecutor(asyncExecutor);
+    }
+
+    /**
+     * 异步执行命令
+     *
+     * @param threadCount 执行通道（线程）数量
+     * @param queueSize 等待队列总长度
+     */
+    public T asyncThreads(int threadCount, int queueSize) {
+        getConfig().setAsync(true);
+        getConfig().setAsyncThreadCount(threadCount);
+        getConfig().setAsyncQueueSize(queueSize);
+        return self();
+    }
+
+    public void setAsyncThreadCount(int asyncThreadCount) {
+        getConfig().setAsyncThreadCount(asyncThreadCount);
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        getConfig().setAsyncQueueSize(asyncQueueSize);
+    }
+
+    public T asyncResultTimeoutInMillis(long asyncResultTimeoutInMillis) {
+        getConfig().setAsyncResultTimeoutInMillis(asyncResultTimeoutInMillis);
+        return self();
+    }
+
+    public void setAsyncResultTimeoutInMillis(long asyncResultTimeoutInMillis) {
+        getConfig().setAsyncResultTimeoutInMillis(asyncResultTimeoutInMillis);
+    }
+}
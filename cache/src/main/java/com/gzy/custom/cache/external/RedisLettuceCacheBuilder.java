@@ -5,6 +5,8 @@ import com.gzy.custom.cache.external.redis.RedisLettuceCache;
 import io.lettuce.core.AbstractRedisClient;
 import io.lettuce.core.api.StatefulConnection;
 
+import java.util.concurrent.TimeUnit;
+
 public class RedisLettuceCacheBuilder<T extends ExternalCacheBuilder<T>> extends ExternalCacheBuilder<T> {
     public static class RedisLettuceCacheBuilderImpl extends RedisLettuceCacheBuilder<RedisLettuceCacheBuilderImpl> {}
 
@@ -53,4 +55,63 @@ public class RedisLettuceCacheBuilder<T extends ExternalCacheBuilder<T>> extends
     public void setAsyncResultTimeoutInMillis(long asyncResultTimeoutInMillis) {
         getConfig().setAsyncResultTimeoutInMillis(asyncResultTimeoutInMillis);
     }
+
+    public T pipelineBatchSize(int pipelineBatchSize) {
+        getConfig().setPipelineBatchSize(pipelineBatchSize);
+        return self();
+    }
+
+    public void setPipelineBatchSize(int pipelineBatchSize) {
+        getConfig().setPipelineBatchSize(pipelineBatchSize);
+    }
+
+    /**
+     * 开启单 Key 查询合并
+     *
+     * @param window 时间窗口
+     * @param timeUnit 时间单位
+     * @param maxKeys 一次合并查询的最大 Key 数量
+     */
+    public T getCoalesce(long window, TimeUnit timeUnit, int maxKeys) {
+        getConfig().setGetCoalesceWindowInMicros(timeUnit.toMicros(window));
+        getConfig().setGetCoalesceMaxKeys(maxKeys);
+        return self();
+    }
+
+    public void setGetCoalesceWindowInMicros(long getCoalesceWindowInMicros) {
+        getConfig().setGetCoalesceWindowInMicros(getCoalesceWindowInMicros);
+    }
+
+    public void setGetCoalesceMaxKeys(int getCoalesceMaxKeys) {
+        getConfig().setGetCoalesceMaxKeys(getCoalesceMaxKeys);
+    }
+
+    /**
+     * 使用多个连接
+     *
+     * @param connectionCount 连接数量
+     * @param strategy 选择连接的策略
+     */
+    public T connections(int connectionCount, ConnectionSelectStrategy strategy) {
+        getConfig().setConnectionCount(connectionCount);
+        getConfig().setConnectionSelectStrategy(strategy);
+        return self();
+    }
+
+    public void setConnectionCount(int connectionCount) {
+        getConfig().setConnectionCount(connectionCount);
+    }
+
+    public void setConnectionSelectStrategy(ConnectionSelectStrategy connectionSelectStrategy) {
+        getConfig().setConnectionSelectStrategy(connectionSelectStrategy);
+    }
+
+    public T bulkConnection(boolean bulkConnection) {
+        getConfig().setBulkConnection(bulkConnection);
+        return self();
+    }
+
+    public void setBulkConnection(boolean bulkConnection) {
+        getConfig().setBulkConnection(bulkConnection);
+    }
 }
@@ -0,0 +1,79 @@
+package com.gzy.custom.cache.external;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import com.gzy.custom.cache.exception.CacheException;
+
+/**
+ * 批量获取刷新权的 Lua 脚本：对每个刷新时间戳 Key，在服务端判断距离上一次刷新是否已经超过刷新间隔，
+ * 是则写入当前时间并返回 1（当前节点获得刷新权），否则返回 0
+ *
+ * 判断是否到期、获取刷新权、更新刷新时间在一次命令中原子完成，时间戳以数字字符串保存。
+ * KEYS：刷新时间戳 Key；ARGV：当前时间、刷新间隔、时间戳的过期时间（毫秒）
+ */
+public final class RefreshLeaseScript {
+
+    public static final String SCRIPT = ""
+            + "local now = tonumber(ARGV[1])\n"
+            + "local refresh = tonumber(ARGV[2])\n"
+            + "local result = {}\n"
+            + "for i, key in ipairs(KEYS) do\n"
+            + "  local ts = tonumber(redis.call('GET', key))\n"
+            + "  if ts == nil or now >= ts + refresh then\n"
+            + "    redis.call('SET', key, ARGV[1], 'PX', ARGV[3])\n"
+            + "    result[i] = 1\n"
+            + "  else\n"
+            + "    result[i] = 0\n"
+            + "  end\n"
+            + "end\n"
+            + "return result\n";
+
+    /**
+     * 脚本的 SHA1，用于 EVALSHA
+     */
+    public static final String SHA = sha1(SCRIPT.getBytes(StandardCharsets.UTF_8));
+
+    private RefreshLeaseScript() {
+    }
+
+    /**
+     * 脚本参数
+     */
+    public static byte[][] args(long now, long refreshMillis, long expireMillis) {
+        return new byte[][]{bytes(now), bytes(refreshMillis), bytes(Math.max(1, expireMillis))};
+    }
+
+    /**
+     * 将脚本的返回值转换成与 Key 一一对应的结果
+     */
+    public static boolean[] toResult(List<?> reply, int keyCount) {
+        if (reply == null || reply.size() != keyCount) {
+            throw new CacheException("unexpected refresh lease reply: " + reply);
+        }
+        boolean[] acquired = new boolean[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            acquired[i] = ((Number) reply.get(i)).longValue() == 1;
+        }
+        return acquired;
+    }
+
+    private static byte[] bytes(long n) {
+        return Long.toString(n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String sha1(byte[] script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new CacheException(e);
+        }
+    }
+}
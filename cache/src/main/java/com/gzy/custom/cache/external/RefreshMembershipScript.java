@@ -0,0 +1,52 @@
+package com.gzy.custom.cache.external;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gzy.custom.cache.exception.CacheException;
+
+/**
+ * 刷新节点心跳的 Lua 脚本：注册表是一个有序集合，成员为节点 ID，分数为最后一次心跳的时间，
+ * 写入当前节点的心跳、删除超时没有心跳的节点并返回存活的节点，一次命令完成
+ *
+ * KEYS：注册表 Key；ARGV：当前时间、节点 ID、节点超时时间（毫秒）
+ */
+public final class RefreshMembershipScript {
+
+    public static final String SCRIPT = ""
+            + "redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])\n"
+            + "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. (tonumber(ARGV[1]) - tonumber(ARGV[3])))\n"
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[3])\n"
+            + "return redis.call('ZRANGE', KEYS[1], 0, -1)\n";
+
+    /**
+     * 脚本的 SHA1，用于 EVALSHA
+     */
+    public static final String SHA = RefreshLeaseScript.sha1(SCRIPT.getBytes(StandardCharsets.UTF_8));
+
+    private RefreshMembershipScript() {
+    }
+
+    /**
+     * 脚本参数
+     */
+    public static byte[][] args(String nodeId, long now, long expireMillis) {
+        return new byte[][]{Long.toString(now).getBytes(StandardCharsets.UTF_8), nodeId.getBytes(StandardCharsets.UTF_8),
+            Long.toString(Math.max(1, expireMillis)).getBytes(StandardCharsets.UTF_8)};
+    }
+
+    /**
+     * 将脚本的返回值转换成节点 ID 列表
+     */
+    public static List<String> toResult(List<?> reply) {
+        if (reply == null) {
+            throw new CacheException("unexpected refresh membership reply: null");
+        }
+        List<String> nodes = new ArrayList<>(reply.size());
+        for (Object o : reply) {
+            nodes.add(o instanceof byte[] ? new String((byte[]) o, StandardCharsets.UTF_8) : String.valueOf(o));
+        }
+        return nodes;
+    }
+}
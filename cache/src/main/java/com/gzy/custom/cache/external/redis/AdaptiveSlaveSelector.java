@@ -0,0 +1,185 @@
+package com.gzy.custom.cache.external.redis;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 根据各个 Redis 从节点的响应时间和错误率选择从节点
+ *
+ * 每个从节点维护响应时间、错误率的指数加权移动平均（EWMA）以及正在执行的命令数量，
+ * 选择时随机取两个可用的从节点，选择得分较低的一个（power of two choices），
+ * 既能避开慢节点，又不会让所有请求都集中到当前最快的节点上。
+ * 响应时间明显高于其他节点或错误率过高的从节点会被暂时剔除，剔除时间结束后重新参与选择
+ */
+class AdaptiveSlaveSelector {
+
+    /**
+     * EWMA 中新样本的权重
+     */
+    private static final double ALPHA = 0.2;
+    /**
+     * 至少收到多少个样本后才判断是否剔除
+     */
+    private static final int MIN_SAMPLES = 20;
+    /**
+     * 响应时间超过其他可用节点最小值的多少倍时剔除
+     */
+    private static final double EJECT_LATENCY_FACTOR = 3.0;
+    /**
+     * 响应时间低于该值时不因为慢而剔除，避免在微秒级的抖动上误判
+     */
+    private static final long EJECT_LATENCY_FLOOR_NANOS = 1_000_000L;
+    /**
+     * 错误率超过该值时剔除
+     */
+    private static final double EJECT_ERROR_RATE = 0.5;
+
+    private final Slave[] slaves;
+    /**
+     * 剔除时间
+     */
+    private final long ejectNanos;
+
+    AdaptiveSlaveSelector(int[] weights, long ejectMillis) {
+        this.slaves = new Slave[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            slaves[i] = new Slave(Math.max(1, weights[i]));
+        }
+        this.ejectNanos = ejectMillis * 1_000_000L;
+    }
+
+    private static class Slave {
+        final int weight;
+        volatile double latency;
+        volatile double errorRate;
+        volatile int samples;
+        /**
+         * 参与响应时间统计的样本数量（只统计单 Key 读取）
+         */
+        volatile int latencySamples;
+        /**
+         * 剔除结束的时间（System.nanoTime），0 表示未被剔除
+         */
+        volatile long ejectedUntil;
+        final AtomicInteger inflight = new AtomicInteger();
+
+        Slave(int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * 得分越低越优先：响应时间按正在执行的命令数量和错误率放大，再按权重缩小
+         */
+        double score() {
+            return (latency + 1) * (1 + inflight.get()) * (1 + errorRate * 10) / weight;
+        }
+
+        boolean available(long now) {
+            long until = ejectedUntil;
+            return until == 0 || now - until >= 0;
+        }
+    }
+
+    /**
+     * 选择一个从节点，并记录为正在执行，调用方必须在命令结束后调用 {@link #record}
+     *
+     * @return 从节点的下标
+     */
+    int select() {
+        int n = slaves.length;
+        int index;
+        if (n == 1) {
+            index = 0;
+        } else {
+            long now = System.nanoTime();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int a = random.nextInt(n);
+            int b = random.nextInt(n - 1);
+            if (b >= a) {
+                b++;
+            }
+            boolean aAvailable = slaves[a].available(now);
+            boolean bAvailable = slaves[b].available(now);
+            if (aAvailable && bAvailable) {
+                index = slaves[a].score() <= slaves[b].score() ? a : b;
+            } else if (aAvailable || bAvailable) {
+                index = aAvailable ? a : b;
+            } else {
+                index = firstAvailable(a, now);
+            }
+        }
+        slaves[index].inflight.incrementAndGet();
+        return index;
+    }
+
+    /**
+     * 从 start 开始查找一个可用的从节点，都已剔除时选择最早恢复的节点
+     */
+    private int firstAvailable(int start, long now) {
+        int n = slaves.length;
+        int earliest = start;
+        for (int k = 0; k < n; k++) {
+            int i = (start + k) % n;
+            if (slaves[i].available(now)) {
+                return i;
+            }
+            if (slaves[i].ejectedUntil - slaves[earliest].ejectedUntil < 0) {
+                earliest = i;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * 记录一次命令的结果
+     *
+     * @param index 从节点的下标
+     * @param latencyNanos 响应时间，小于 0 表示不参与响应时间统计（例如批量读取、获取连接失败）
+     * @param error 是否是连接、超时等节点故障
+     */
+    void record(int index, long latencyNanos, boolean error) {
+        Slave slave = slaves[index];
+        slave.inflight.decrementAndGet();
+        // 并发更新时可能丢失个别样本，对移动平均影响很小，不加锁
+        if (latencyNanos >= 0) {
+            if (slave.latencySamples == 0) {
+                slave.latency = latencyNanos;
+            } else {
+                slave.latency += ALPHA * (latencyNanos - slave.latency);
+            }
+            slave.latencySamples++;
+        }
+        slave.errorRate += ALPHA * ((error ? 1 : 0) - slave.errorRate);
+        slave.samples++;
+        if (slave.samples >= MIN_SAMPLES && shouldEject(index)) {
+            eject(slave);
+        }
+    }
+
+    private boolean shouldEject(int index) {
+        Slave slave = slaves[index];
+        if (slave.errorRate > EJECT_ERROR_RATE) {
+            return true;
+        }
+        if (slave.latencySamples < MIN_SAMPLES || slave.latency < EJECT_LATENCY_FLOOR_NANOS) {
+            return false;
+        }
+        long now = System.nanoTime();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < slaves.length; i++) {
+            if (i != index && slaves[i].available(now) && slaves[i].latencySamples > 0) {
+                best = Math.min(best, slaves[i].latency);
+            }
+        }
+        // 没有其他可用节点时不因为慢而剔除
+        return best != Double.MAX_VALUE && slave.latency > best * EJECT_LATENCY_FACTOR;
+    }
+
+    private void eject(Slave slave) {
+        slave.ejectedUntil = System.nanoTime() + ejectNanos;
+        // 恢复后重新统计，避免旧的样本导致立即再次被剔除
+        slave.samples = 0;
+        slave.latencySamples = 0;
+        slave.errorRate = 0;
+    }
+}
@@ -0,0 +1,251 @@
+package com.gzy.custom.cache.external.redis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.gzy.custom.cache.ResultData;
+import com.gzy.custom.cache.config.RedisCacheConfig;
+import com.gzy.custom.cache.result.CacheGetResult;
+import com.gzy.custom.cache.result.CacheResult;
+import com.gzy.custom.cache.result.CacheResultCode;
+import com.gzy.custom.cache.result.MultiGetResult;
+
+/**
+ * 异步的 RedisCache：Jedis 命令提交到有界线程池中执行，立即返回未完成的 CacheResult，
+ * 与 RedisLettuceCache 一样，调用方只有在读取结果时才会等待
+ *
+ * 默认创建 asyncThreadCount 个单线程的执行通道，单 Key 命令按 Key 的 hash 选择通道，
+ * 因此同一个 Key 的命令按提交顺序执行（例如没有等待结果的 put 之后立即 get 能读到新值）；
+ * 多 Key 命令按 Key 所在的通道拆分，各部分提交到对应的通道后再合并结果，
+ * 因此与同一个 Key 的单 Key 命令之间同样按提交顺序执行（多 Key 命令整体不是原子的）；
+ * 通道的队列满时不阻塞调用方，直接返回失败（FAIL）的结果，以此限制积压的命令数量
+ * （由调用方直接执行会打乱同一个 Key 的命令顺序）；缓存关闭后提交的命令同样返回失败。
+ * 通过 asyncExecutor 指定线程池时不保证同一个 Key 的命令按顺序执行
+ */
+public class AsyncRedisCache<K, V> extends RedisCache<K, V> {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final RedisCacheConfig<K, V> config;
+
+    private final ExecutorService[] executors;
+    /**
+     * executors 是否由当前缓存创建，是则在 close 时关闭
+     */
+    private final boolean ownExecutor;
+
+    public AsyncRedisCache(RedisCacheConfig<K, V> config) {
+        super(config);
+        this.config = config;
+        if (config.getAsyncExecutor() != null) {
+            this.executors = new ExecutorService[]{config.getAsyncExecutor()};
+            this.ownExecutor = false;
+        } else {
+            int count = Math.max(1, config.getAsyncThreadCount());
+            int queueSize = Math.max(1, config.getAsyncQueueSize() / count);
+            this.executors = new ExecutorService[count];
+            for (int i = 0; i < count; i++) {
+                executors[i] = createExecutor(queueSize);
+            }
+            this.ownExecutor = true;
+        }
+    }
+
+    private static ExecutorService createExecutor(int queueSize) {
+        ThreadFactory tf = r -> {
+            Thread t = new Thread(r, "JetCacheJedisAsyncExecutor" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), tf, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 按 Key 的 hash 选择通道
+     */
+    private int lane(Object key) {
+        int n = executors.length;
+        if (n == 1) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), n);
+    }
+
+    /**
+     * 在 Key 所在的通道中执行同步的操作，返回其结果对应的 future
+     */
+    private CompletionStage<ResultData> submit(Object key, Supplier<? extends CacheResult> operation) {
+        return submit(lane(key), operation);
+    }
+
+    private CompletionStage<ResultData> submit(int index, Supplier<? extends CacheResult> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executors[index]).thenCompose(CacheResult::future);
+        } catch (RejectedExecutionException e) {
+            // 队列已满或已关闭
+            return CompletableFuture.completedFuture(new ResultData(e));
+        }
+    }
+
+    /**
+     * 多 Key 命令的各部分分别提交到所在的通道，全部完成后合并结果
+     *
+     * @param parts  通道 -> 该通道上的 Key（或 Key/Value），非空
+     * @param merger 合并各部分的结果
+     */
+    private <P> CompletionStage<ResultData> submitAll(Map<Integer, P> parts, Function<P, ? extends CacheResult> operation,
+                                                      Function<List<ResultData>, ResultData> merger) {
+        if (parts.size() == 1) {
+            Map.Entry<Integer, P> en = parts.entrySet().iterator().next();
+            return submit(en.getKey().intValue(), () -> operation.apply(en.getValue()));
+        }
+        List<CompletableFuture<ResultData>> futures = new ArrayList<>(parts.size());
+        for (Map.Entry<Integer, P> en : parts.entrySet()) {
+            futures.add(submit(en.getKey().intValue(), () -> operation.apply(en.getValue()))
+                    .exceptionally(ResultData::new).toCompletableFuture());
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<ResultData> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<ResultData> f : futures) {
+                results.add(f.join());
+            }
+            return merger.apply(results);
+        });
+    }
+
+    /**
+     * 按通道拆分 Key，命令异步执行，同时复制一份避免调用方返回后修改集合
+     */
+    private Map<Integer, Set<K>> splitKeys(Set<? extends K> keys) {
+        Map<Integer, Set<K>> parts = new LinkedHashMap<>();
+        for (K key : keys) {
+            parts.computeIfAbsent(lane(key), i -> new LinkedHashSet<>()).add(key);
+        }
+        if (parts.isEmpty()) {
+            parts.put(0, new LinkedHashSet<>());
+        }
+        return parts;
+    }
+
+    /**
+     * 合并写操作的结果：全部成功为 SUCCESS，全部失败返回第一个失败的结果，否则为 PART_SUCCESS
+     */
+    private static ResultData mergeResults(List<ResultData> results) {
+        int success = 0;
+        ResultData firstFail = null;
+        int fail = 0;
+        for (ResultData r : results) {
+            if (r.getResultCode() == CacheResultCode.SUCCESS) {
+                success++;
+            } else if (r.getResultCode() == CacheResultCode.FAIL) {
+                fail++;
+                if (firstFail == null) {
+                    firstFail = r;
+                }
+            }
+        }
+        if (success == results.size()) {
+            return new ResultData(CacheResultCode.SUCCESS, null, null);
+        }
+        if (fail == results.size()) {
+            return firstFail;
+        }
+        return new ResultData(CacheResultCode.PART_SUCCESS, null, null);
+    }
+
+    /**
+     * 合并 GET_ALL 的结果：任意一部分失败则整体失败，与同步执行时一致
+     */
+    @SuppressWarnings("unchecked")
+    private static ResultData mergeGetResults(List<ResultData> results) {
+        Map<Object, Object> values = new HashMap<>();
+        for (ResultData r : results) {
+            if (r.getResultCode() != CacheResultCode.SUCCESS) {
+                return r;
+            }
+            values.putAll((Map<Object, Object>) r.getOriginData());
+        }
+        return new ResultData(CacheResultCode.SUCCESS, null, values);
+    }
+
+    private <T extends CacheResult> T setTimeout(T result) {
+        result.setTimeout(Duration.ofMillis(config.getAsyncResultTimeoutInMillis()));
+        return result;
+    }
+
+    @Override
+    protected CacheGetResult<V> do_GET(K key) {
+        return setTimeout(new CacheGetResult<>(submit(key, () -> super.do_GET(key))));
+    }
+
+    @Override
+    protected MultiGetResult<K, V> do_GET_ALL(Set<? extends K> keys) {
+        return setTimeout(new MultiGetResult<>(submitAll(splitKeys(keys), super::do_GET_ALL,
+                AsyncRedisCache::mergeGetResults)));
+    }
+
+    @Override
+    protected CacheResult do_PUT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        return setTimeout(new CacheResult(submit(key, () -> super.do_PUT(key, value, expireAfterWrite, timeUnit))));
+    }
+
+    @Override
+    protected CacheResult do_PUT_ALL(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
+        Map<Integer, Map<K, V>> parts = new LinkedHashMap<>();
+        for (Map.Entry<? extends K, ? extends V> en : map.entrySet()) {
+            parts.computeIfAbsent(lane(en.getKey()), i -> new HashMap<>()).put(en.getKey(), en.getValue());
+        }
+        if (parts.isEmpty()) {
+            parts.put(0, new HashMap<>());
+        }
+        return setTimeout(new CacheResult(submitAll(parts, part -> super.do_PUT_ALL(part, expireAfterWrite, timeUnit),
+                AsyncRedisCache::mergeResults)));
+    }
+
+    @Override
+    protected CacheResult do_REMOVE(K key) {
+        return setTimeout(new CacheResult(submit(key, () -> super.do_REMOVE(key))));
+    }
+
+    @Override
+    protected CacheResult do_REMOVE_ALL(Set<? extends K> keys) {
+        return setTimeout(new CacheResult(submitAll(splitKeys(keys), super::do_REMOVE_ALL,
+                AsyncRedisCache::mergeResults)));
+    }
+
+    @Override
+    protected CacheResult do_PUT_IF_ABSENT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        return setTimeout(new CacheResult(submit(key, () -> super.do_PUT_IF_ABSENT(key, value, expireAfterWrite, timeUnit))));
+    }
+
+    @Override
+    public void close() {
+        if (ownExecutor) {
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+        }
+        super.close();
+    }
+}
@@ -1,5 +1,6 @@
 package com.gzy.custom.cache.external.redis;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -11,10 +12,13 @@ import com.gzy.custom.cache.config.RedisCacheConfig;
 import com.gzy.custom.cache.exception.CacheConfigException;
 import com.gzy.custom.cache.exception.CacheException;
 import com.gzy.custom.cache.external.AbstractExternalCache;
+import com.gzy.custom.cache.external.RefreshLeaseScript;
+import com.gzy.custom.cache.external.RefreshMembershipScript;
 import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +26,7 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 import redis.clients.jedis.params.SetParams;
 import redis.clients.jedis.util.Pool;
 
@@ -34,7 +39,10 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
     Function<Object, byte[]> valueEncoder;
     Function<byte[], Object> valueDecoder;
 
-    private static ThreadLocalRandom random = ThreadLocalRandom.current();
+    /**
+     * 开启了 adaptiveSlaveRead 时选择从节点，否则为 null
+     */
+    private AdaptiveSlaveSelector slaveSelector;
 
     public RedisCache(RedisCacheConfig<K, V> config) {
         super(config);
@@ -57,6 +65,9 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
                 // 初始化选择 redis slave 的默认权重
                 initDefaultWeights(config);
             }
+            if (config.isAdaptiveSlaveRead()) {
+                slaveSelector = new AdaptiveSlaveSelector(config.getSlaveReadWeights(), config.getSlaveEjectMillis());
+            }
         }
         if (config.isExpireAfterAccess()) {
             throw new CacheConfigException("expireAfterAccess is not supported");
@@ -85,17 +96,59 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
     }
 
     /**
-     * 获取一个连接池
+     * 选择读取数据的节点
      *
-     * @return 连接池
+     * @return 从节点的下标，不从从节点读取时返回 -1
      */
-    Pool<Jedis> getReadPool() {
+    int selectReadNode() {
         if (!config.isReadFromSlave()) {
-            return config.getJedisPool();
+            return -1;
+        }
+        if (slaveSelector != null) {
+            return slaveSelector.select();
+        }
+        return randomIndex(config.getSlaveReadWeights());
+    }
+
+    /**
+     * 获取节点的连接池
+     *
+     * @param node selectReadNode 的返回值
+     * @return 连接池
+     */
+    Pool<Jedis> getReadPool(int node) {
+        return node < 0 ? config.getJedisPool() : config.getJedisSlavePools()[node];
+    }
+
+    /**
+     * 从选出的节点读取数据，开启了 adaptiveSlaveRead 时记录响应时间和是否发生节点故障
+     * 响应时间只统计单 Key 读取，从获取到连接后开始计时，不包含连接池的等待时间；
+     * 批量读取的耗时与 Key 的数量有关，只记录是否发生节点故障
+     *
+     * @param singleKey 是否是单 Key 读取
+     * @param command 读取命令
+     * @return 命令的结果
+     */
+    private <T> T read(boolean singleKey, Function<Jedis, T> command) {
+        int node = selectReadNode();
+        long latency = -1;
+        boolean error = false;
+        try (Jedis jedis = getReadPool(node).getResource()) { // 先从连接池中获取一个连接
+            long start = System.nanoTime();
+            T result = command.apply(jedis);
+            if (singleKey) {
+                latency = System.nanoTime() - start;
+            }
+            return result;
+        } catch (JedisConnectionException ex) {
+            // 只有连接、超时异常算作节点故障
+            error = true;
+            throw ex;
+        } finally {
+            if (node >= 0 && slaveSelector != null) {
+                slaveSelector.record(node, latency, error);
+            }
         }
-        int[] weights = config.getSlaveReadWeights();
-        int index = randomIndex(weights);
-        return config.getJedisSlavePools()[index];
     }
 
     static int randomIndex(int[] weights) {
@@ -103,7 +156,7 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
         for (int w : weights) {
             sumOfWeights += w;
         }
-        int r = random.nextInt(sumOfWeights);
+        int r = ThreadLocalRandom.current().nextInt(sumOfWeights);
         int x = 0;
         for (int i = 0; i < weights.length; i++) {
             x += weights[i];
@@ -116,14 +169,14 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
 
     @Override
     protected CacheGetResult<V> do_GET(K key) {
-        try (Jedis jedis = getReadPool().getResource()) { // 先从连接池中获取一个连接
+        try {
             // 转换 Key
             byte[] newKey = buildKey(key);
             // 执行 get 命令
-            byte[] bytes = jedis.get(newKey);
+            byte[] bytes = read(true, jedis -> jedis.get(newKey));
             if (bytes != null) {
                 CacheValueHolder<V> holder = (CacheValueHolder<V>) valueDecoder.apply(bytes);
-                if (System.currentTimeMillis() >= holder.getExpireTime()) {
+                if (CacheClock.now() >= holder.getExpireTime()) {
                     // 缓存数据已过期
                     return CacheGetResult.EXPIRED_WITHOUT_MSG;
                 }
@@ -139,20 +192,21 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
 
     @Override
     protected MultiGetResult<K, V> do_GET_ALL(Set<? extends K> keys) {
-        try (Jedis jedis = getReadPool().getResource()) { // 先从连接池中获取一个连接
+        try {
             ArrayList<K> keyList = new ArrayList<K>(keys);
             // 依次转换 Key
             byte[][] newKeys = keyList.stream().map((k) -> buildKey(k)).toArray(byte[][]::new);
             Map<K, CacheGetResult<V>> resultMap = new HashMap<>();
             if (newKeys.length > 0) {
-                // 执行 mget 命令
-                List mgetResults = jedis.mget(newKeys);
+                // 执行 mget 命令，Key 较多时拆分后以 Pipeline 发送
+                List<byte[]> mgetResults = read(newKeys.length == 1, jedis -> mget(jedis, newKeys));
+                long now = CacheClock.now();
                 for (int i = 0; i < mgetResults.size(); i++) {
-                    Object value = mgetResults.get(i);
+                    byte[] value = mgetResults.get(i);
                     K key = keyList.get(i);
                     if (value != null) {
-                        CacheValueHolder<V> holder = (CacheValueHolder<V>) valueDecoder.apply((byte[]) value);
-                        if (System.currentTimeMillis() >= holder.getExpireTime()) {
+                        CacheValueHolder<V> holder = (CacheValueHolder<V>) valueDecoder.apply(value);
+                        if (now >= holder.getExpireTime()) {
                             resultMap.put(key, CacheGetResult.EXPIRED_WITHOUT_MSG);
                         } else {
                             CacheGetResult<V> r = new CacheGetResult<V>(CacheResultCode.SUCCESS, null, holder);
@@ -170,6 +224,28 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
         }
     }
 
+    /**
+     * 查询多个 Key，设置了 pipelineBatchSize 且 Key 数量超过该值时拆分成多个 mget 命令，以 Pipeline 一次发送
+     *
+     * @return 与 newKeys 顺序一致的查询结果
+     */
+    private List<byte[]> mget(Jedis jedis, byte[][] newKeys) {
+        int batchSize = config.getPipelineBatchSize();
+        if (batchSize <= 0 || newKeys.length <= batchSize) {
+            return jedis.mget(newKeys);
+        }
+        Pipeline p = jedis.pipelined();
+        List<Response<List<byte[]>>> responses = new ArrayList<>();
+        for (int from = 0; from < newKeys.length; from += batchSize) {
+            responses.add(p.mget(Arrays.copyOfRange(newKeys, from, Math.min(from + batchSize, newKeys.length))));
+        }
+        p.sync();
+        List<byte[]> results = new ArrayList<>(newKeys.length);
+        for (Response<List<byte[]>> resp : responses) {
+            results.addAll(resp.get());
+        }
+        return results;
+    }
 
     @Override
     protected CacheResult do_PUT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
@@ -243,8 +319,18 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
     protected CacheResult do_REMOVE_ALL(Set<? extends K> keys) {
         try (Jedis jedis = config.getJedisPool().getResource()) {  // 先从连接池中获取一个连接
             byte[][] newKeys = keys.stream().map((k) -> buildKey(k)).toArray((len) -> new byte[keys.size()][]);
-            // 执行 del 命令
-            jedis.del(newKeys);
+            int batchSize = config.getPipelineBatchSize();
+            if (batchSize <= 0 || newKeys.length <= batchSize) {
+                // 执行 del 命令
+                jedis.del(newKeys);
+            } else {
+                // 拆分成多个 del 命令以 Pipeline 发送，避免单个命令过大阻塞 Redis
+                Pipeline p = jedis.pipelined();
+                for (int from = 0; from < newKeys.length; from += batchSize) {
+                    p.del(Arrays.copyOfRange(newKeys, from, Math.min(from + batchSize, newKeys.length)));
+                }
+                p.sync();
+            }
             return CacheResult.SUCCESS_WITHOUT_MSG;
         } catch (Exception ex) {
             logError("REMOVE_ALL", "keys(" + keys.size() + ")", ex);
@@ -273,6 +359,48 @@ public class RedisCache<K, V> extends AbstractExternalCache<K, V> {
         }
     }
 
+    /**
+     * 一次 EVALSHA 获取所有 Key 的刷新权，Redis 中没有该脚本时改用 EVAL（同时会缓存脚本）
+     */
+    @Override
+    public boolean[] tryAcquireRefresh(byte[][] timestampKeys, long now, long refreshMillis, long expireMillis) {
+        if (timestampKeys.length == 0) {
+            return new boolean[0];
+        }
+        Object reply = evalScript(RefreshLeaseScript.SHA, RefreshLeaseScript.SCRIPT, timestampKeys,
+            RefreshLeaseScript.args(now, refreshMillis, expireMillis));
+        return RefreshLeaseScript.toResult((List<?>) reply, timestampKeys.length);
+    }
+
+    @Override
+    public List<String> heartbeat(byte[] registryKey, String nodeId, long now, long expireMillis) {
+        Object reply = evalScript(RefreshMembershipScript.SHA, RefreshMembershipScript.SCRIPT,
+            new byte[][]{registryKey}, RefreshMembershipScript.args(nodeId, now, expireMillis));
+        return RefreshMembershipScript.toResult((List<?>) reply);
+    }
+
+    @Override
+    public void leave(byte[] registryKey, String nodeId) {
+        try (Jedis jedis = config.getJedisPool().getResource()) {
+            jedis.zrem(registryKey, nodeId.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * 通过 EVALSHA 执行脚本，Redis 中没有该脚本时改用 EVAL（同时会缓存脚本）
+     */
+    private Object evalScript(String sha, String script, byte[][] keys, byte[][] args) {
+        List<byte[]> keyList = Arrays.asList(keys);
+        List<byte[]> argList = Arrays.asList(args);
+        try (Jedis jedis = config.getJedisPool().getResource()) {
+            try {
+                return jedis.evalsha(sha.getBytes(StandardCharsets.UTF_8), keyList, argList);
+            } catch (JedisNoScriptException e) {
+                return jedis.eval(script.getBytes(StandardCharsets.UTF_8), keyList, argList);
+            }
+        }
+    }
+
     @Override
     protected boolean needLogStackTrace(Throwable e) {
         if (e instanceof JedisConnectionException) {
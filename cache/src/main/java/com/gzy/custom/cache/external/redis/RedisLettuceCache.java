@@ -1,8 +1,10 @@
 package com.gzy.custom.cache.external.redis;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -13,22 +15,33 @@ import com.gzy.custom.cache.config.CacheConfig;
 import com.gzy.custom.cache.config.RedisLettuceCacheConfig;
 import com.gzy.custom.cache.exception.CacheConfigException;
 import com.gzy.custom.cache.external.AbstractExternalCache;
+import com.gzy.custom.cache.external.GetCoalescer;
+import com.gzy.custom.cache.external.LettuceConnectionSet;
 import com.gzy.custom.cache.external.LettuceConnectionManager;
+import com.gzy.custom.cache.external.RefreshLeaseScript;
+import com.gzy.custom.cache.external.RefreshMembershipScript;
 import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
 import com.gzy.custom.cache.support.CacheExecutor;
 import io.lettuce.core.AbstractRedisClient;
 import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisFuture;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.SetArgs;
-import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import io.lettuce.core.api.StatefulConnection;
 import io.lettuce.core.api.async.RedisStringAsyncCommands;
 import io.lettuce.core.api.sync.RedisStringCommands;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
 import io.lettuce.core.cluster.api.reactive.RedisClusterReactiveCommands;
 import io.lettuce.core.cluster.api.sync.RedisClusterCommands;
+import io.lettuce.core.cluster.models.partitions.Partitions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 
 public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
 
@@ -61,9 +74,25 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
      */
     private RedisStringAsyncCommands<byte[], byte[]> stringAsyncCommands;
     /**
-     * 反应式命令
+     * 一组连接，单 Key 命令分散到各个连接上
      */
-    private RedisKeyAsyncCommands<byte[], byte[]> keyAsyncCommands;
+    private LettuceConnectionSet connectionSet;
+    /**
+     * 批量操作专用的连接，关闭了自动 flush，没有开启时为 null
+     */
+    private StatefulConnection batchConnection;
+    /**
+     * 批量操作专用连接的异步命令
+     */
+    private RedisClusterAsyncCommands<byte[], byte[]> batchAsyncCommands;
+    /**
+     * 单 Key 查询合并器，没有开启时为 null
+     */
+    private GetCoalescer getCoalescer;
+    /**
+     * 是否是集群客户端，集群模式下多 Key 命令按 slot 拆分
+     */
+    private final boolean cluster;
 
     public RedisLettuceCache(RedisLettuceCacheConfig<K, V> config) {
         super(config);
@@ -78,12 +107,129 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
         }
 
         client = config.getRedisClient();
+        cluster = client instanceof RedisClusterClient;
 
         lettuceConnectionManager = LettuceConnectionManager.defaultManager();
         lettuceConnectionManager.init(client, config.getConnection());
         stringCommands = (RedisStringCommands<byte[], byte[]>)lettuceConnectionManager.commands(client);
         stringAsyncCommands = (RedisStringAsyncCommands<byte[], byte[]>)lettuceConnectionManager.asyncCommands(client);
-        keyAsyncCommands = (RedisKeyAsyncCommands<byte[], byte[]>)stringAsyncCommands;
+        connectionSet = lettuceConnectionManager.connectionSet(client, config.getConnectionCount(),
+            config.getConnectionSelectStrategy());
+        if (config.getPipelineBatchSize() > 0 || config.isBulkConnection()) {
+            batchConnection = lettuceConnectionManager.batchConnection(client);
+            batchAsyncCommands =
+                (RedisClusterAsyncCommands<byte[], byte[]>)lettuceConnectionManager.batchAsyncCommands(client);
+        }
+        if (config.getGetCoalesceWindowInMicros() > 0) {
+            getCoalescer = new GetCoalescer(this::mget, config.getGetCoalesceWindowInMicros(),
+                config.getGetCoalesceMaxKeys());
+        }
+    }
+
+    private CompletionStage<List<byte[]>> mget(byte[][] newKeys) {
+        return multiGet(newKeys).thenApply(list -> {
+            List<byte[]> values = new ArrayList<>(list.size());
+            for (KeyValue<byte[], byte[]> kv : list) {
+                values.add(kv != null && kv.hasValue() ? kv.getValue() : null);
+            }
+            return values;
+        });
+    }
+
+    /**
+     * 在选出的连接上执行单个命令
+     *
+     * @param newKey 命令的 Key，多 Key 命令为 null
+     */
+    private <T> CompletableFuture<T> execute(byte[] newKey,
+                                             Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        int index = connectionSet.select(newKey);
+        RedisClusterAsyncCommands<byte[], byte[]> commands =
+            (RedisClusterAsyncCommands<byte[], byte[]>)connectionSet.asyncCommands(index);
+        return connectionSet.track(index, command.apply(commands));
+    }
+
+    /**
+     * 执行批量操作中的命令，有专用连接时在专用连接上执行（需要调用方 flush），否则与单个命令相同
+     */
+    private <T> CompletableFuture<T> executeBulk(byte[] newKey,
+                                                 Function<RedisClusterAsyncCommands<byte[], byte[]>, RedisFuture<T>> command) {
+        if (batchConnection != null) {
+            return command.apply(batchAsyncCommands).toCompletableFuture();
+        }
+        return execute(newKey, command);
+    }
+
+    private void flushBulk() {
+        if (batchConnection != null) {
+            batchConnection.flushCommands();
+        }
+    }
+
+    /**
+     * 批量查询，集群模式下按 slot 拆分
+     */
+    private CompletionStage<List<KeyValue<byte[], byte[]>>> multiGet(byte[][] newKeys) {
+        if (!cluster) {
+            try {
+                return executeBulk(null, c -> c.mget(newKeys));
+            } finally {
+                flushBulk();
+            }
+        }
+        List<int[]> groups = groupBySlot(newKeys);
+        CompletableFuture<List<KeyValue<byte[], byte[]>>>[] futures = new CompletableFuture[groups.size()];
+        try {
+            for (int i = 0; i < futures.length; i++) {
+                byte[][] keys = select(newKeys, groups.get(i));
+                futures[i] = executeBulk(null, c -> c.mget(keys));
+            }
+        } finally {
+            flushBulk();
+        }
+        // 按原来的 Key 顺序组装结果
+        return CompletableFuture.allOf(futures).thenApply(v -> {
+            KeyValue<byte[], byte[]>[] values = new KeyValue[newKeys.length];
+            for (int i = 0; i < futures.length; i++) {
+                int[] group = groups.get(i);
+                List<KeyValue<byte[], byte[]>> list = futures[i].join();
+                for (int j = 0; j < group.length; j++) {
+                    values[group[j]] = list.get(j);
+                }
+            }
+            return Arrays.asList(values);
+        });
+    }
+
+    /**
+     * 按 slot 对 Key 分组，同一个节点的 slot 排在一起
+     *
+     * @return 每个 slot 的 Key 在 newKeys 中的下标
+     */
+    private List<int[]> groupBySlot(byte[][] newKeys) {
+        Map<Integer, List<Integer>> slots = new HashMap<>();
+        for (int i = 0; i < newKeys.length; i++) {
+            slots.computeIfAbsent(SlotHash.getSlot(newKeys[i]), slot -> new ArrayList<>()).add(i);
+        }
+        Partitions partitions = ((RedisClusterClient) client).getPartitions();
+        List<Map.Entry<Integer, List<Integer>>> entries = new ArrayList<>(slots.entrySet());
+        entries.sort(Comparator.comparing((Map.Entry<Integer, List<Integer>> en) -> {
+            RedisClusterNode node = partitions.getPartitionBySlot(en.getKey());
+            return node == null ? "" : node.getNodeId();
+        }).thenComparing(Map.Entry::getKey));
+        List<int[]> groups = new ArrayList<>(entries.size());
+        for (Map.Entry<Integer, List<Integer>> en : entries) {
+            groups.add(en.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return groups;
+    }
+
+    private static byte[][] select(byte[][] newKeys, int[] indexes) {
+        byte[][] selected = new byte[indexes.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            selected[i] = newKeys[indexes[i]];
+        }
+        return selected;
     }
 
     @Override
@@ -122,8 +268,9 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
             // 转换 key
             byte[] newKey = buildKey(key);
             // 异步执行 psetex 命令
-            RedisFuture<String> future =
-                stringAsyncCommands.psetex(newKey, timeUnit.toMillis(expireAfterWrite), valueEncoder.apply(holder));
+            byte[] newValue = valueEncoder.apply(holder);
+            CompletableFuture<String> future =
+                execute(newKey, c -> c.psetex(newKey, timeUnit.toMillis(expireAfterWrite), newValue));
             // 处理异步执行结果
             CacheResult result = new CacheResult(future.handle((rt, ex) -> {
                 if (ex != null) { // 过程抛出异常
@@ -149,23 +296,36 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
     @Override
     protected CacheResult do_PUT_ALL(Map<? extends K, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
         try {
-            CompletionStage<Integer> future = CompletableFuture.completedFuture(0);
-            for (Map.Entry<? extends K, ? extends V> en : map.entrySet()) {
-                // 封装缓存数据
-                CacheValueHolder<V> holder = new CacheValueHolder(en.getValue(), timeUnit.toMillis(expireAfterWrite));
-                // 异步执行 psetex 命令
-                RedisFuture<String> resp = stringAsyncCommands.psetex(buildKey(en.getKey()),
-                    timeUnit.toMillis(expireAfterWrite), valueEncoder.apply(holder));
-                // 所有异步执行绑在一条链上
-                future =
-                    future.thenCombine(resp, (failCount, respStr) -> "OK".equals(respStr) ? failCount : failCount + 1);
+            int batchSize = config.getPipelineBatchSize();
+            CompletableFuture<String>[] futures = new CompletableFuture[map.size()];
+            int count = 0;
+            try {
+                for (Map.Entry<? extends K, ? extends V> en : map.entrySet()) {
+                    // 封装缓存数据
+                    CacheValueHolder<V> holder = new CacheValueHolder(en.getValue(), timeUnit.toMillis(expireAfterWrite));
+                    byte[] newKey = buildKey(en.getKey());
+                    byte[] newValue = valueEncoder.apply(holder);
+                    // 异步执行 psetex 命令
+                    futures[count++] = executeBulk(newKey, c -> c.psetex(newKey, timeUnit.toMillis(expireAfterWrite), newValue));
+                    if (batchSize > 0 && count % batchSize == 0) {
+                        flushBulk();
+                    }
+                }
+            } finally {
+                flushBulk();
             }
-            // 处理异步执行结果
-            CacheResult result = new CacheResult(future.handle((failCount, ex) -> {
+            // 所有命令的结果汇总到一个 Future 上
+            CacheResult result = new CacheResult(CompletableFuture.allOf(futures).handle((v, ex) -> {
                 if (ex != null) {
                     CacheExecutor.defaultExecutor().execute(() -> logError("PUT_ALL", "map(" + map.size() + ")", ex));
                     return new ResultData(ex);
                 } else {
+                    int failCount = 0;
+                    for (CompletableFuture<String> f : futures) {
+                        if (!"OK".equals(f.getNow(null))) {
+                            failCount++;
+                        }
+                    }
                     if (failCount == 0) {
                         return new ResultData(CacheResultCode.SUCCESS, null, null);
                     } else if (failCount == map.size()) {
@@ -191,8 +351,9 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
         try {
             // 转换 Key
             byte[] newKey = buildKey(key);
-            // 异步执行 get 命令
-            RedisFuture<byte[]> future = stringAsyncCommands.get(newKey);
+            // 异步执行 get 命令，开启了查询合并时与其他调用方的查询合并成一次 mget
+            CompletionStage<byte[]> future =
+                getCoalescer != null ? getCoalescer.get(newKey) : execute(newKey, c -> c.get(newKey));
             // 处理异步执行结果
             CacheGetResult result = new CacheGetResult(future.handle((valueBytes, ex) -> {
                 if (ex != null) { // 出现异常
@@ -202,7 +363,7 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
                     if (valueBytes != null) {
                         // 转换成对应结果
                         CacheValueHolder<V> holder = (CacheValueHolder<V>)valueDecoder.apply(valueBytes);
-                        if (System.currentTimeMillis() >= holder.getExpireTime()) { // 缓存数据已经过期
+                        if (CacheClock.now() >= holder.getExpireTime()) { // 缓存数据已经过期
                             return new ResultData(CacheResultCode.EXPIRED, null, null);
                         } else {
                             return new ResultData(CacheResultCode.SUCCESS, null, holder);
@@ -231,20 +392,21 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
                 return new MultiGetResult<K, V>(CacheResultCode.SUCCESS, null, resultMap);
             }
             // 异步执行 mget 命令
-            RedisFuture<List<KeyValue<byte[], byte[]>>> mgetResults = stringAsyncCommands.mget(newKeys);
+            CompletionStage<List<KeyValue<byte[], byte[]>>> mgetResults = multiGet(newKeys);
             // 处理异步执行结果
             MultiGetResult result = new MultiGetResult<K, V>(mgetResults.handle((list, ex) -> {
                 if (ex != null) { // 出现异常
                     CacheExecutor.defaultExecutor().execute(() -> logError("GET_ALL", "keys(" + keys.size() + ")", ex));
                     return new ResultData(ex);
                 } else {
+                    long now = CacheClock.now();
                     for (int i = 0; i < list.size(); i++) { // 遍历获取到的 key value
                         KeyValue kv = list.get(i);
                         K key = keyList.get(i);
                         if (kv != null && kv.hasValue()) { // 该 Key 有缓存数据
                             CacheValueHolder<V> holder = (CacheValueHolder<V>)valueDecoder.apply((byte[])kv.getValue());
                             // 该 key 的缓存数据已过期
-                            if (System.currentTimeMillis() >= holder.getExpireTime()) {
+                            if (now >= holder.getExpireTime()) {
                                 resultMap.put(key, CacheGetResult.EXPIRED_WITHOUT_MSG);
                             } else {
                                 CacheGetResult<V> r = new CacheGetResult<V>(CacheResultCode.SUCCESS, null, holder);
@@ -269,7 +431,8 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
     protected CacheResult do_REMOVE(K key) {
         try {
             // 异步执行 del 命令
-            RedisFuture<Long> future = keyAsyncCommands.del(buildKey(key));
+            byte[] newKey = buildKey(key);
+            CompletableFuture<Long> future = execute(newKey, c -> c.del(newKey));
             // 处理异步执行结果
             CacheResult result = new CacheResult(future.handle((rt, ex) -> {
                 if (ex != null) { // 出现异常
@@ -300,8 +463,23 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
         try {
             // 依次转换 Key
             byte[][] newKeys = keys.stream().map((k) -> buildKey(k)).toArray((len) -> new byte[keys.size()][]);
-            // 异步执行 del 命令
-            RedisFuture<Long> future = keyAsyncCommands.del(newKeys);
+            CompletableFuture<?> future;
+            if (cluster) {
+                // 按 slot 拆分成多条 del 命令
+                future = pipelineDel(groupBySlot(newKeys).stream().map(g -> select(newKeys, g)).toArray(byte[][][]::new));
+            } else if (batchConnection != null && config.getPipelineBatchSize() > 0
+                && newKeys.length > config.getPipelineBatchSize()) {
+                // 按 pipelineBatchSize 拆分成多条 del 命令，一次 flush
+                int batchSize = config.getPipelineBatchSize();
+                byte[][][] chunks = new byte[(newKeys.length + batchSize - 1) / batchSize][][];
+                for (int i = 0; i < chunks.length; i++) {
+                    chunks[i] = Arrays.copyOfRange(newKeys, i * batchSize, Math.min(newKeys.length, (i + 1) * batchSize));
+                }
+                future = pipelineDel(chunks);
+            } else {
+                // 异步执行 del 命令
+                future = pipelineDel(new byte[][][] {newKeys});
+            }
             // 处理异步执行结果
             CacheResult result = new CacheResult(future.handle((v, ex) -> {
                 if (ex != null) { // 删除失败
@@ -320,6 +498,22 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
         }
     }
 
+    /**
+     * 每组 Key 执行一条 del 命令，开启了批量模式时一次 flush
+     */
+    private CompletableFuture<Void> pipelineDel(byte[][][] chunks) {
+        CompletableFuture<Long>[] futures = new CompletableFuture[chunks.length];
+        try {
+            for (int i = 0; i < futures.length; i++) {
+                byte[][] chunk = chunks[i];
+                futures[i] = executeBulk(null, c -> c.del(chunk));
+            }
+        } finally {
+            flushBulk();
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
     @Override
     protected CacheResult do_PUT_IF_ABSENT(K key, V value, long expireAfterWrite, TimeUnit timeUnit) {
         try {
@@ -327,8 +521,9 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
             // 转换 Key
             byte[] newKey = buildKey(key);
             // 异步执行 set 命令
-            RedisFuture<String> future = stringAsyncCommands.set(newKey, valueEncoder.apply(holder),
-                SetArgs.Builder.nx().px(timeUnit.toMillis(expireAfterWrite)));
+            byte[] newValue = valueEncoder.apply(holder);
+            CompletableFuture<String> future = execute(newKey, c -> c.set(newKey, newValue,
+                SetArgs.Builder.nx().px(timeUnit.toMillis(expireAfterWrite))));
             // 处理异步执行结果
             CacheResult result = new CacheResult(future.handle((rt, ex) -> {
                 if (ex != null) { // 出现异常
@@ -351,4 +546,87 @@ public class RedisLettuceCache<K, V> extends AbstractExternalCache<K, V> {
             return new CacheResult(ex);
         }
     }
+
+    /**
+     * 一次 EVALSHA 获取所有 Key 的刷新权，集群模式下按 slot 拆分成多条命令一起发送；
+     * Redis 中没有该脚本时改用 EVAL（同时会缓存脚本）
+     */
+    @Override
+    public boolean[] tryAcquireRefresh(byte[][] timestampKeys, long now, long refreshMillis, long expireMillis) {
+        if (timestampKeys.length == 0) {
+            return new boolean[0];
+        }
+        byte[][] args = RefreshLeaseScript.args(now, refreshMillis, expireMillis);
+        List<int[]> groups = cluster ? groupBySlot(timestampKeys) : null;
+        int count = groups == null ? 1 : groups.size();
+        CompletableFuture<List<Object>>[] futures = new CompletableFuture[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                byte[][] keys = groups == null ? timestampKeys : select(timestampKeys, groups.get(i));
+                futures[i] = evalScript(RefreshLeaseScript.SHA, RefreshLeaseScript.SCRIPT, keys, args);
+            }
+        } finally {
+            flushBulk();
+        }
+        boolean[] acquired = new boolean[timestampKeys.length];
+        for (int i = 0; i < count; i++) {
+            List<Object> reply = futures[i].orTimeout(config.getAsyncResultTimeoutInMillis(), TimeUnit.MILLISECONDS)
+                .join();
+            if (groups == null) {
+                return RefreshLeaseScript.toResult(reply, timestampKeys.length);
+            }
+            int[] group = groups.get(i);
+            boolean[] r = RefreshLeaseScript.toResult(reply, group.length);
+            for (int j = 0; j < group.length; j++) {
+                acquired[group[j]] = r[j];
+            }
+        }
+        return acquired;
+    }
+
+    @Override
+    public List<String> heartbeat(byte[] registryKey, String nodeId, long now, long expireMillis) {
+        CompletableFuture<List<Object>> future;
+        try {
+            future = evalScript(RefreshMembershipScript.SHA, RefreshMembershipScript.SCRIPT, new byte[][]{registryKey},
+                RefreshMembershipScript.args(nodeId, now, expireMillis));
+        } finally {
+            flushBulk();
+        }
+        return RefreshMembershipScript.toResult(
+            future.orTimeout(config.getAsyncResultTimeoutInMillis(), TimeUnit.MILLISECONDS).join());
+    }
+
+    @Override
+    public void leave(byte[] registryKey, String nodeId) {
+        CompletableFuture<Long> future;
+        try {
+            future = executeBulk(registryKey, c -> c.zrem(registryKey, nodeId.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            flushBulk();
+        }
+        future.orTimeout(config.getAsyncResultTimeoutInMillis(), TimeUnit.MILLISECONDS).join();
+    }
+
+    /**
+     * 通过 EVALSHA 执行返回列表的脚本（需要调用方 flush），Redis 中没有该脚本时改用 EVAL（同时会缓存脚本）
+     */
+    private CompletableFuture<List<Object>> evalScript(String sha, String script, byte[][] keys, byte[][] args) {
+        CompletableFuture<List<Object>> evalsha =
+            executeBulk(keys[0], c -> c.evalsha(sha, ScriptOutputType.MULTI, keys, args));
+        return evalsha.handle((reply, ex) -> {
+            if (ex != null && unwrapCompletionException(ex) instanceof RedisNoScriptException) {
+                try {
+                    return executeBulk(keys[0], c -> c.<List<Object>>eval(script, ScriptOutputType.MULTI, keys, args));
+                } finally {
+                    flushBulk();
+                }
+            }
+            return ex != null ? evalsha : CompletableFuture.completedFuture(reply);
+        }).thenCompose(f -> f);
+    }
+
+    private static Throwable unwrapCompletionException(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
 }
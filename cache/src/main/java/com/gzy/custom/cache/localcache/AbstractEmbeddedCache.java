@@ -8,6 +8,7 @@ import com.gzy.custom.cache.result.CacheGetResult;
 import com.gzy.custom.cache.result.CacheResult;
 import com.gzy.custom.cache.result.CacheResultCode;
 import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -38,6 +39,13 @@ public abstract class AbstractEmbeddedCache<K, V> extends AbstractCache<K, V> {
         return config;
     }
 
+    /**
+     * 清理已过期的缓存数据，注册到 Cleaner 的缓存实例会被定时调用
+     * 默认不做处理（例如 Caffeine 自己负责过期数据的清理）
+     */
+    public void cleanExpiredEntry() {
+    }
+
     public Object buildKey(K key) {
         Object newKey = key;
         Function<K, Object> keyConvertor = config.getKeyConvertor();
@@ -55,28 +63,47 @@ public abstract class AbstractEmbeddedCache<K, V> extends AbstractCache<K, V> {
     }
 
     protected CacheGetResult<V> parseHolderResult(CacheValueHolder<V> holder) {
-        long now = System.currentTimeMillis();
         if (holder == null) {
             return CacheGetResult.NOT_EXISTS_WITHOUT_MSG;
-        } else if (now >= holder.getExpireTime()) {
+        } else if (!touch(holder, CacheClock.now())) {
             return CacheGetResult.EXPIRED_WITHOUT_MSG;
         } else {
-            synchronized (holder) {
-                long accessTime = holder.getAccessTime();
-                if (config.isExpireAfterAccess()) {
-                    long expireAfterAccess = config.getExpireAfterAccessInMillis();
-                    if (now >= accessTime + expireAfterAccess) {
-                        return CacheGetResult.EXPIRED_WITHOUT_MSG;
-                    }
-                }
-                // 设置该缓存数据的最后一次访问时间
-                holder.setAccessTime(now);
-            }
-
             return new CacheGetResult(CacheResultCode.SUCCESS, null, holder);
         }
     }
 
+    /**
+     * 判断缓存数据是否有效，有效则更新最后一次访问时间
+     * 访问时间的更新不加锁，并发访问时以任意一次写入为准即可
+     *
+     * @param holder 缓存数据
+     * @param now 当前时间
+     * @return 是否有效
+     */
+    protected boolean touch(CacheValueHolder<V> holder, long now) {
+        if (now >= holder.getExpireTime()) {
+            return false;
+        }
+        if (config.isExpireAfterAccess() && now >= holder.getAccessTime() + config.getExpireAfterAccessInMillis()) {
+            return false;
+        }
+        // 设置该缓存数据的最后一次访问时间
+        holder.setAccessTime(now);
+        return true;
+    }
+
+    @Override
+    public V getIfPresent(K key, V defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        CacheValueHolder<V> holder = (CacheValueHolder<V>) innerMap.getValue(buildKey(key));
+        if (holder == null || !touch(holder, CacheClock.now())) {
+            return defaultValue;
+        }
+        return (V) CacheGetResult.unwrapValue(holder);
+    }
+
     @Override
     protected MultiGetResult<K, V> do_GET_ALL(Set<? extends K> keys) {
         ArrayList<K> keyList = new ArrayList<K>(keys.size());
@@ -8,6 +8,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.Expiry;
 import com.gzy.custom.cache.CacheValueHolder;
 import com.gzy.custom.cache.config.EmbeddedCacheConfig;
+import com.gzy.custom.cache.support.CacheClock;
 
 public class CaffeineCache<K, V> extends AbstractEmbeddedCache<K, V> {
 
@@ -50,7 +51,7 @@ public class CaffeineCache<K, V> extends AbstractEmbeddedCache<K, V> {
              * @return 有效时间
              */
             private long getRestTimeInNanos(CacheValueHolder value) {
-                long now = System.currentTimeMillis();
+                long now = CacheClock.now();
                 long ttl = value.getExpireTime() - now;
                 /*
                  * 如果本地缓存设置了多长时间没访问缓存则失效
@@ -10,7 +10,8 @@ import java.util.concurrent.TimeUnit;
 
 
 /**
- * 执行任务：定时清理（每分钟） LinkedHashMapCache 缓存实例中过期的缓存数据
+ * 执行任务：定时清理（每秒）本地缓存实例（LinkedHashMapCache、LongKeyEmbeddedCache）中过期的缓存数据
+ * 每次只清理过期索引中已到期的数据，并且分批加锁，避免一次性全量扫描导致的耗时抖动
  */
 class Cleaner {
 
@@ -18,36 +19,36 @@ class Cleaner {
      * 存放弱引用对象，以防内存溢出
      * 如果被弱引用的对象只被当前弱引用对象关联时，gc 时被弱引用的对象则会被回收（取决于被弱引用的对象是否还与其他强引用对象关联）
      *
-     * 个人理解：当某个 LinkedHashMapCache 强引用对象没有被其他对象（除了这里）引用时，我们应该让这个对象被回收，
+     * 个人理解：当某个本地缓存强引用对象没有被其他对象（除了这里）引用时，我们应该让这个对象被回收，
      * 但是由于这里使用的也是强引用，这个对象被其他强引用对象关联了，不可能被回收，存在内存溢出的危险，
      * 所以这里使用了弱引用对象，如果被弱引用的对象没有被其他对象（除了这里）引用时，这个对象会被回收
      *
      * 举个例子：如果我们往一个 Map<Object, Object> 中存放一个key-value键值对
      * 假设对应的键已经不再使用被回收了，那我们无法再获取到对应的值，也无法被回收，占有一定的内存，存在风险
      */
-    static LinkedList<WeakReference<LinkedHashMapCache>> linkedHashMapCaches = new LinkedList<>();
+    static LinkedList<WeakReference<AbstractEmbeddedCache>> embeddedCaches = new LinkedList<>();
 
     static {
         // 创建一个线程池，1个核心线程
         ScheduledExecutorService executorService = CacheExecutor.defaultExecutor();
-        // 起一个循环任务一直清理 linkedHashMapCaches 过期的数据（每隔60秒）
-        executorService.scheduleWithFixedDelay(() -> run(), 60, 60, TimeUnit.SECONDS);
+        // 起一个循环任务一直清理 embeddedCaches 过期的数据（每隔1秒）
+        executorService.scheduleWithFixedDelay(() -> run(), 1, 1, TimeUnit.SECONDS);
     }
 
-    static void add(LinkedHashMapCache cache) {
-        synchronized (linkedHashMapCaches) {
+    static void add(AbstractEmbeddedCache cache) {
+        synchronized (embeddedCaches) {
             // 创建一个弱引用对象，并添加到清理对象中
-            linkedHashMapCaches.add(new WeakReference<>(cache));
+            embeddedCaches.add(new WeakReference<>(cache));
         }
     }
 
     static void run() {
-        synchronized (linkedHashMapCaches) {
-            Iterator<WeakReference<LinkedHashMapCache>> it = linkedHashMapCaches.iterator();
+        synchronized (embeddedCaches) {
+            Iterator<WeakReference<AbstractEmbeddedCache>> it = embeddedCaches.iterator();
             while (it.hasNext()) {
-                WeakReference<LinkedHashMapCache> ref = it.next();
+                WeakReference<AbstractEmbeddedCache> ref = it.next();
                 // 获取被弱引用的对象（强引用）
-                LinkedHashMapCache c = ref.get();
+                AbstractEmbeddedCache c = ref.get();
                 if (c == null) { // 表示被弱引用的对象被标记成了垃圾，则移除
                     it.remove();
                 } else {
@@ -30,4 +30,13 @@ public class EmbeddedCacheBuilder<T extends EmbeddedCacheBuilder<T>> extends Abs
         getConfig().setLimit(limit);
     }
 
+    public T concurrencyLevel(int concurrencyLevel) {
+        getConfig().setConcurrencyLevel(concurrencyLevel);
+        return self();
+    }
+
+    public void setConcurrencyLevel(int concurrencyLevel) {
+        getConfig().setConcurrencyLevel(concurrencyLevel);
+    }
+
 }
@@ -0,0 +1,87 @@
+package com.gzy.custom.cache.localcache;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.gzy.custom.cache.CacheValueHolder;
+
+/**
+ * 过期时间索引：按 CacheValueHolder 的过期时间将 Key 分桶（默认每秒一个桶），
+ * 清理时只取出已经到期的桶中的 Key，不需要遍历整个缓存
+ *
+ * 非线程安全，由持有它的 LRUMap 的锁保护
+ */
+final class ExpiryIndex {
+
+    static final long DEFAULT_BUCKET_MILLIS = 1000;
+
+    /**
+     * 每个桶覆盖的时间跨度
+     */
+    private final long bucketMillis;
+    /**
+     * 桶编号 -> 该桶内的 Key，桶编号 = 过期时间 / bucketMillis（向上取整），
+     * 因此当 桶编号 * bucketMillis <= now 时，桶内所有 Key 都已过期
+     */
+    private final TreeMap<Long, Set<Object>> buckets = new TreeMap<>();
+    /**
+     * 已从 buckets 中摘下、还未处理完的到期 Key
+     * 整桶摘下是为了避免大桶分批处理时反复从 HashSet 头部开始遍历
+     */
+    private final ArrayDeque<Object> draining = new ArrayDeque<>();
+
+    ExpiryIndex() {
+        this(DEFAULT_BUCKET_MILLIS);
+    }
+
+    ExpiryIndex(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    private long bucketOf(long expireTime) {
+        return (expireTime + bucketMillis - 1) / bucketMillis;
+    }
+
+    void add(Object key, Object value) {
+        if (value instanceof CacheValueHolder) {
+            long bucket = bucketOf(((CacheValueHolder) value).getExpireTime());
+            buckets.computeIfAbsent(bucket, b -> new HashSet<>()).add(key);
+        }
+    }
+
+    void remove(Object key, Object value) {
+        if (value instanceof CacheValueHolder) {
+            long bucket = bucketOf(((CacheValueHolder) value).getExpireTime());
+            Set<Object> keys = buckets.get(bucket);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+
+    /**
+     * 取出已经到期的 Key
+     *
+     * @param now 当前时间
+     * @param maxCount 最多取出的数量
+     * @param out 存放取出的 Key
+     */
+    void pollExpired(long now, int maxCount, List<Object> out) {
+        while (out.size() < maxCount) {
+            if (draining.isEmpty()) {
+                Map.Entry<Long, Set<Object>> first = buckets.firstEntry();
+                if (first == null || first.getKey() * bucketMillis > now) {
+                    return;
+                }
+                buckets.pollFirstEntry();
+                draining.addAll(first.getValue());
+            }
+            out.add(draining.poll());
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import java.util.*;
 import com.gzy.custom.cache.CacheValueHolder;
 import com.gzy.custom.cache.config.EmbeddedCacheConfig;
 import com.gzy.custom.cache.result.CacheResultCode;
+import com.gzy.custom.cache.support.CacheClock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,6 +13,15 @@ public class LinkedHashMapCache<K, V> extends AbstractEmbeddedCache<K, V> {
 
     private static Logger logger = LoggerFactory.getLogger(LinkedHashMapCache.class);
 
+    /**
+     * 每次加锁清理的过期元素数量
+     */
+    static final int CLEAN_BATCH_SIZE = 256;
+    /**
+     * 每个分段单次清理的最大过期元素数量
+     */
+    static final int MAX_CLEAN_PER_RUN = 16 * 1024;
+
     public LinkedHashMapCache(EmbeddedCacheConfig<K, V> config) {
         super(config);
         // 将缓存实例添加至 Cleaner
@@ -24,19 +34,28 @@ public class LinkedHashMapCache<K, V> extends AbstractEmbeddedCache<K, V> {
 
     @Override
     protected InnerMap createAreaCache() {
+        if (config.getConcurrencyLevel() > 1) {
+            // 分段，每段各自持有一把锁
+            return new SegmentedLRUMap(config.getConcurrencyLevel(), config.getLimit());
+        }
         return new LRUMap(config.getLimit(), this);
     }
 
     @Override
     public <T> T unwrap(Class<T> clazz) {
-        if (clazz.equals(LinkedHashMap.class)) {
+        if (clazz.equals(LinkedHashMap.class) && innerMap instanceof LinkedHashMap) {
             return (T) innerMap;
         }
         throw new IllegalArgumentException(clazz.getName());
     }
 
+    @Override
     public void cleanExpiredEntry() {
-        ((LRUMap) innerMap).cleanExpiredEntry();
+        if (innerMap instanceof LinkedHashMapCache.SegmentedLRUMap) {
+            ((LinkedHashMapCache.SegmentedLRUMap) innerMap).cleanExpiredEntry();
+        } else {
+            ((LRUMap) innerMap).cleanExpiredEntry();
+        }
     }
 
     /**
@@ -52,6 +71,10 @@ public class LinkedHashMapCache<K, V> extends AbstractEmbeddedCache<K, V> {
          * 缓存实例锁
          */
         private Object lock;
+        /**
+         * 过期时间索引，与 map 本身一起由 lock 保护
+         */
+        private final ExpiryIndex expiryIndex = new ExpiryIndex();
 
         public LRUMap(int max, Object lock) {
             super((int) (max * 1.4f), 0.75f, true);
@@ -67,35 +90,53 @@ public class LinkedHashMapCache<K, V> extends AbstractEmbeddedCache<K, V> {
          */
         @Override
         protected boolean removeEldestEntry(Map.Entry eldest) {
-            return size() > max;
+            if (size() > max) {
+                expiryIndex.remove(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            Object old = super.put(key, value);
+            expiryIndex.remove(key, old);
+            expiryIndex.add(key, value);
+            return old;
+        }
+
+        @Override
+        public Object remove(Object key) {
+            Object old = super.remove(key);
+            expiryIndex.remove(key, old);
+            return old;
         }
 
         /**
          * 清理过期的元素
+         * 只处理过期索引中已经到期的 Key，每批最多 CLEAN_BATCH_SIZE 个，批与批之间释放锁，
+         * 单次最多清理 MAX_CLEAN_PER_RUN 个，剩余的留到下一次执行
          */
         void cleanExpiredEntry() {
-            synchronized (lock) { // 占有当前缓存实例这把锁
-                for (Iterator it = entrySet().iterator(); it.hasNext();) {
-                    Map.Entry en = (Map.Entry) it.next();
-                    Object value = en.getValue();
-                    if (value != null && value instanceof CacheValueHolder) {
-                        CacheValueHolder h = (CacheValueHolder) value;
-                        /*
-                         * 缓存的数据已经失效了则删除
-                         * 为什么不对 expireAfterAccess 进行判断，取最小值，疑问？？？？
-                         */
-                        if (System.currentTimeMillis() >= h.getExpireTime()) {
-                            it.remove();
-                        }
-                    } else {
-                        // assert false
-                        if (value == null) {
-                            logger.error("key " + en.getKey() + " is null");
-                        } else {
-                            logger.error("value of key " + en.getKey() + " is not a CacheValueHolder. type=" + value.getClass());
+            List<Object> expiredKeys = new ArrayList<>(CLEAN_BATCH_SIZE);
+            int cleaned = 0;
+            while (cleaned < MAX_CLEAN_PER_RUN) {
+                synchronized (lock) { // 占有当前缓存实例（分段）这把锁
+                    long now = CacheClock.now();
+                    expiryIndex.pollExpired(now, CLEAN_BATCH_SIZE, expiredKeys);
+                    for (Object key : expiredKeys) {
+                        Object value = remove(key);
+                        // 到期后又被重新写入的 Key，放回去
+                        if (value instanceof CacheValueHolder && ((CacheValueHolder) value).getExpireTime() > now) {
+                            put(key, value);
                         }
                     }
                 }
+                cleaned += expiredKeys.size();
+                if (expiredKeys.size() < CLEAN_BATCH_SIZE) {
+                    return;
+                }
+                expiredKeys.clear();
             }
         }
 
@@ -171,5 +212,93 @@ public class LinkedHashMapCache<K, V> extends AbstractEmbeddedCache<K, V> {
         }
     }
 
+    /**
+     * 分段的 LRU 容器：按 Key 的 hash 将缓存分散到多个 LRUMap 中，每个 LRUMap 使用自己的锁，
+     * 读写只锁住 Key 所在的分段，避免整个缓存实例共用一把锁
+     * 每段允许的最大缓存数量为 limit / 分段数（向上取整），淘汰在段内按 LRU 进行
+     */
+    final class SegmentedLRUMap implements InnerMap {
+
+        private final LRUMap[] segments;
+
+        private final int mask;
+
+        SegmentedLRUMap(int concurrencyLevel, int limit) {
+            // 分段数取 2 的幂，且不超过 limit，保证每段至少能存放一个元素
+            int segmentCount = 1;
+            while (segmentCount < concurrencyLevel) {
+                segmentCount <<= 1;
+            }
+            while (segmentCount > 1 && segmentCount > limit) {
+                segmentCount >>= 1;
+            }
+            int segmentLimit = (limit + segmentCount - 1) / segmentCount;
+            this.segments = new LinkedHashMapCache.LRUMap[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = new LRUMap(segmentLimit, new Object());
+            }
+            this.mask = segmentCount - 1;
+        }
+
+        private LRUMap segmentFor(Object key) {
+            int h = key.hashCode();
+            // 高位参与运算，减少 hash 冲突
+            h ^= (h >>> 16);
+            return segments[h & mask];
+        }
+
+        void cleanExpiredEntry() {
+            for (LRUMap segment : segments) {
+                segment.cleanExpiredEntry();
+            }
+        }
+
+        @Override
+        public Object getValue(Object key) {
+            return segmentFor(key).getValue(key);
+        }
+
+        @Override
+        public Map getAllValues(Collection keys) {
+            Map values = new HashMap();
+            for (Object key : keys) {
+                Object v = segmentFor(key).getValue(key);
+                if (v != null) {
+                    values.put(key, v);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void putValue(Object key, Object value) {
+            segmentFor(key).putValue(key, value);
+        }
+
+        @Override
+        public void putAllValues(Map map) {
+            Set<Map.Entry> set = map.entrySet();
+            for (Map.Entry en : set) {
+                segmentFor(en.getKey()).putValue(en.getKey(), en.getValue());
+            }
+        }
+
+        @Override
+        public boolean removeValue(Object key) {
+            return segmentFor(key).removeValue(key);
+        }
+
+        @Override
+        public boolean putIfAbsentValue(Object key, Object value) {
+            return segmentFor(key).putIfAbsentValue(key, value);
+        }
+
+        @Override
+        public void removeAllValues(Collection keys) {
+            for (Object k : keys) {
+                segmentFor(k).removeValue(k);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,274 @@
+package com.gzy.custom.cache.localcache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import com.gzy.custom.cache.config.EmbeddedCacheConfig;
+import com.gzy.custom.cache.exception.CacheException;
+import com.gzy.custom.cache.result.CacheGetResult;
+import com.gzy.custom.cache.result.CacheResult;
+import com.gzy.custom.cache.result.CacheResultCode;
+import com.gzy.custom.cache.result.MultiGetResult;
+import com.gzy.custom.cache.support.CacheClock;
+
+/**
+ * Key 为 long（数字 ID）的本地缓存
+ * 数据存放在基本类型数组实现的开放寻址哈希表（LongKeyMap）中，过期时间、访问时间内联保存，
+ * 不需要为每个缓存数据创建 Long、CacheValueHolder 和 LinkedHashMap.Entry 对象，内存占用更小
+ * 容量达到 limit 时按 CLOCK 算法淘汰（近似 LRU），分段数由 concurrencyLevel 决定
+ */
+public class LongKeyEmbeddedCache<V> extends AbstractEmbeddedCache<Long, V> {
+
+    /**
+     * 每次加锁清理时检查的槽位数量
+     */
+    static final int CLEAN_BATCH_SIZE = 1024;
+    /**
+     * 每个分段单次清理最多检查的槽位数量
+     */
+    static final int MAX_CLEAN_PER_RUN = 16 * 1024;
+
+    public LongKeyEmbeddedCache(EmbeddedCacheConfig<Long, V> config) {
+        super(config);
+        Cleaner.add(this);
+    }
+
+    @Override
+    protected InnerMap createAreaCache() {
+        return new LongKeyInnerMap(config.getConcurrencyLevel(), config.getLimit(), config.isExpireAfterAccess());
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> clazz) {
+        throw new IllegalArgumentException(clazz.getName());
+    }
+
+    private LongKeyInnerMap map() {
+        return (LongKeyInnerMap) innerMap;
+    }
+
+    private long expireAfterAccess() {
+        return config.isExpireAfterAccess() ? config.getExpireAfterAccessInMillis() : 0;
+    }
+
+    /**
+     * 将 Key（经过 keyConvertor 转换后）转换成 long
+     */
+    protected long toLongKey(Long key) {
+        return LongKeyInnerMap.toLong(buildKey(key));
+    }
+
+    @Override
+    public V getIfPresent(Long key, V defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        long k = toLongKey(key);
+        LongKeyMap segment = map().segmentFor(k);
+        Object value;
+        synchronized (segment) {
+            value = segment.get(k, CacheClock.now(), expireAfterAccess(), defaultValue);
+        }
+        return (V) CacheGetResult.unwrapValue(value);
+    }
+
+    @Override
+    protected CacheGetResult<V> do_GET(Long key) {
+        long k = toLongKey(key);
+        LongKeyMap segment = map().segmentFor(k);
+        Object holder;
+        synchronized (segment) {
+            holder = segment.getHolder(k, CacheClock.now(), expireAfterAccess());
+        }
+        if (holder == null) {
+            return CacheGetResult.NOT_EXISTS_WITHOUT_MSG;
+        } else if (holder == LongKeyMap.EXPIRED) {
+            return CacheGetResult.EXPIRED_WITHOUT_MSG;
+        } else {
+            return new CacheGetResult(CacheResultCode.SUCCESS, null, (CacheValueHolder<V>) holder);
+        }
+    }
+
+    @Override
+    protected MultiGetResult<Long, V> do_GET_ALL(Set<? extends Long> keys) {
+        Map<Long, CacheGetResult<V>> resultMap = new HashMap<>();
+        for (Long key : keys) {
+            resultMap.put(key, do_GET(key));
+        }
+        return new MultiGetResult<>(CacheResultCode.SUCCESS, null, resultMap);
+    }
+
+    @Override
+    protected CacheResult do_PUT(Long key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        long k = toLongKey(key);
+        long now = CacheClock.now();
+        LongKeyMap segment = map().segmentFor(k);
+        synchronized (segment) {
+            segment.put(k, value, now + timeUnit.toMillis(expireAfterWrite), now);
+        }
+        return CacheResult.SUCCESS_WITHOUT_MSG;
+    }
+
+    @Override
+    protected CacheResult do_PUT_ALL(Map<? extends Long, ? extends V> map, long expireAfterWrite, TimeUnit timeUnit) {
+        for (Map.Entry<? extends Long, ? extends V> en : map.entrySet()) {
+            do_PUT(en.getKey(), en.getValue(), expireAfterWrite, timeUnit);
+        }
+        return CacheResult.SUCCESS_WITHOUT_MSG;
+    }
+
+    @Override
+    protected CacheResult do_REMOVE(Long key) {
+        long k = toLongKey(key);
+        LongKeyMap segment = map().segmentFor(k);
+        synchronized (segment) {
+            segment.remove(k);
+        }
+        return CacheResult.SUCCESS_WITHOUT_MSG;
+    }
+
+    @Override
+    protected CacheResult do_REMOVE_ALL(Set<? extends Long> keys) {
+        for (Long key : keys) {
+            do_REMOVE(key);
+        }
+        return CacheResult.SUCCESS_WITHOUT_MSG;
+    }
+
+    @Override
+    protected CacheResult do_PUT_IF_ABSENT(Long key, V value, long expireAfterWrite, TimeUnit timeUnit) {
+        long k = toLongKey(key);
+        long now = CacheClock.now();
+        LongKeyMap segment = map().segmentFor(k);
+        boolean success;
+        synchronized (segment) {
+            success = segment.putIfAbsent(k, value, now + timeUnit.toMillis(expireAfterWrite), now, expireAfterAccess());
+        }
+        return success ? CacheResult.SUCCESS_WITHOUT_MSG : CacheResult.EXISTS_WITHOUT_MSG;
+    }
+
+    /**
+     * 增量清理：每个分段从上次的位置继续检查一部分槽位，分批加锁
+     */
+    @Override
+    public void cleanExpiredEntry() {
+        long expireAfterAccess = expireAfterAccess();
+        for (LongKeyMap segment : map().segments) {
+            for (int scanned = 0; scanned < MAX_CLEAN_PER_RUN; scanned += CLEAN_BATCH_SIZE) {
+                synchronized (segment) {
+                    if (segment.size() == 0) {
+                        break;
+                    }
+                    segment.cleanExpired(CacheClock.now(), expireAfterAccess, CLEAN_BATCH_SIZE);
+                }
+            }
+        }
+    }
+
+    /**
+     * 分段的 long Key 哈希表，同时实现 InnerMap 以兼容按 Object Key 访问的通用逻辑（会有装箱）
+     */
+    static final class LongKeyInnerMap implements InnerMap {
+
+        private final LongKeyMap[] segments;
+
+        private final int segmentMask;
+
+        LongKeyInnerMap(int concurrencyLevel, int limit, boolean recordAccessTime) {
+            int segmentCount = 1;
+            while (segmentCount < concurrencyLevel) {
+                segmentCount <<= 1;
+            }
+            while (segmentCount > 1 && segmentCount > limit) {
+                segmentCount >>= 1;
+            }
+            int segmentLimit = (limit + segmentCount - 1) / segmentCount;
+            segments = new LongKeyMap[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = new LongKeyMap(segmentLimit, recordAccessTime);
+            }
+            segmentMask = segmentCount - 1;
+        }
+
+        static long toLong(Object key) {
+            if (key instanceof Number) {
+                return ((Number) key).longValue();
+            }
+            throw new CacheException("key of LongKeyEmbeddedCache must be a number, but was " + key.getClass());
+        }
+
+        LongKeyMap segmentFor(long key) {
+            // 使用高位选择分段，低位用于段内的哈希表
+            return segments[(int) (LongKeyMap.mix(key) >>> 48) & segmentMask];
+        }
+
+        @Override
+        public Object getValue(Object key) {
+            long k = toLong(key);
+            LongKeyMap segment = segmentFor(k);
+            synchronized (segment) {
+                return segment.peekHolder(k);
+            }
+        }
+
+        @Override
+        public Map getAllValues(Collection keys) {
+            Map values = new HashMap();
+            for (Object key : keys) {
+                Object v = getValue(key);
+                if (v != null) {
+                    values.put(key, v);
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public void putValue(Object key, Object value) {
+            long k = toLong(key);
+            CacheValueHolder holder = (CacheValueHolder) value;
+            LongKeyMap segment = segmentFor(k);
+            synchronized (segment) {
+                segment.put(k, holder.getValue(), holder.getExpireTime(), holder.getAccessTime());
+            }
+        }
+
+        @Override
+        public void putAllValues(Map map) {
+            Set<Map.Entry> set = map.entrySet();
+            for (Map.Entry en : set) {
+                putValue(en.getKey(), en.getValue());
+            }
+        }
+
+        @Override
+        public boolean removeValue(Object key) {
+            long k = toLong(key);
+            LongKeyMap segment = segmentFor(k);
+            synchronized (segment) {
+                return segment.remove(k);
+            }
+        }
+
+        @Override
+        public boolean putIfAbsentValue(Object key, Object value) {
+            long k = toLong(key);
+            CacheValueHolder holder = (CacheValueHolder) value;
+            LongKeyMap segment = segmentFor(k);
+            synchronized (segment) {
+                return segment.putIfAbsent(k, holder.getValue(), holder.getExpireTime(), holder.getAccessTime(), 0);
+            }
+        }
+
+        @Override
+        public void removeAllValues(Collection keys) {
+            for (Object k : keys) {
+                removeValue(k);
+            }
+        }
+    }
+}
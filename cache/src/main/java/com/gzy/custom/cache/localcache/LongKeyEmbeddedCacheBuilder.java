@@ -0,0 +1,17 @@
+package com.gzy.custom.cache.localcache;
+
+import com.gzy.custom.cache.config.EmbeddedCacheConfig;
+
+public class LongKeyEmbeddedCacheBuilder<T extends EmbeddedCacheBuilder<T>> extends EmbeddedCacheBuilder<T> {
+    public static class LongKeyEmbeddedCacheBuilderImpl
+        extends LongKeyEmbeddedCacheBuilder<LongKeyEmbeddedCacheBuilderImpl> {}
+
+    public static LongKeyEmbeddedCacheBuilderImpl createLongKeyEmbeddedCacheBuilder() {
+        return new LongKeyEmbeddedCacheBuilderImpl();
+    }
+
+    protected LongKeyEmbeddedCacheBuilder() {
+        // 设置构建 LongKeyEmbeddedCache 缓存实例的函数
+        buildFunc((c) -> new LongKeyEmbeddedCache((EmbeddedCacheConfig)c));
+    }
+}
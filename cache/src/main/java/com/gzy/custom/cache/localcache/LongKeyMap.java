@@ -0,0 +1,315 @@
+package com.gzy.custom.cache.localcache;
+
+import com.gzy.custom.cache.CacheValueHolder;
+
+/**
+ * long 类型 Key 的开放寻址（线性探测）哈希表，用于 LongKeyEmbeddedCache 的一个分段
+ * Key、过期时间、访问时间都以基本类型数组保存，不需要 Long、CacheValueHolder 以及 Map.Entry 对象
+ * 容量达到 max 时按 CLOCK（二次机会）算法淘汰，近似 LRU
+ *
+ * 所有方法都需要在持有该对象的锁（synchronized (this)）时调用
+ */
+final class LongKeyMap {
+
+    /**
+     * get 时 Key 存在但已过期的返回值
+     */
+    static final Object EXPIRED = new Object();
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    /**
+     * 最近被访问过，CLOCK 淘汰时跳过一次
+     */
+    private static final byte REFERENCED = 2;
+
+    /**
+     * 允许的最大缓存数量
+     */
+    private final int max;
+    /**
+     * 是否需要记录访问时间（设置了 expireAfterAccess 才需要）
+     */
+    private final boolean recordAccessTime;
+    /**
+     * 表的最大容量，达到该容量后不再扩容
+     */
+    private final int maxCapacity;
+
+    private long[] keys;
+    private Object[] values;
+    private long[] expireTimes;
+    private long[] accessTimes;
+    /**
+     * 每个槽位的状态：EMPTY、USED、USED | REFERENCED
+     */
+    private byte[] states;
+
+    private int mask;
+    private int size;
+    /**
+     * CLOCK 淘汰的指针
+     */
+    private int hand;
+    /**
+     * 增量清理过期数据的游标
+     */
+    private int cleanCursor;
+
+    LongKeyMap(int max, boolean recordAccessTime) {
+        this.max = max;
+        this.recordAccessTime = recordAccessTime;
+        this.maxCapacity = tableSizeFor((int) Math.min(Integer.MAX_VALUE >> 1, (long) (max / LOAD_FACTOR) + 1));
+        allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    private static int tableSizeFor(int n) {
+        int c = 1;
+        while (c < n) {
+            c <<= 1;
+        }
+        return c;
+    }
+
+    static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        expireTimes = new long[capacity];
+        accessTimes = recordAccessTime ? new long[capacity] : null;
+        states = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    private int indexOf(long key) {
+        int i = (int) mix(key) & mask;
+        while (states[i] != EMPTY) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean isExpired(int i, long now, long expireAfterAccess) {
+        if (now >= expireTimes[i]) {
+            return true;
+        }
+        return expireAfterAccess > 0 && now >= accessTimes[i] + expireAfterAccess;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 查询缓存值，命中时更新访问时间，不创建任何对象
+     *
+     * @return 缓存值；不存在时返回 absent；已过期时删除并返回 absent
+     */
+    Object get(long key, long now, long expireAfterAccess, Object absent) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return absent;
+        }
+        if (isExpired(i, now, expireAfterAccess)) {
+            removeAt(i);
+            return absent;
+        }
+        touch(i, now);
+        return values[i];
+    }
+
+    /**
+     * 查询缓存数据并封装成 CacheValueHolder，命中时更新访问时间
+     *
+     * @return 缓存数据；不存在时返回 null；已过期时删除并返回 EXPIRED
+     */
+    Object getHolder(long key, long now, long expireAfterAccess) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        if (isExpired(i, now, expireAfterAccess)) {
+            removeAt(i);
+            return EXPIRED;
+        }
+        touch(i, now);
+        return holderAt(i);
+    }
+
+    /**
+     * 查询缓存数据并封装成 CacheValueHolder，不检查是否过期，也不更新访问时间
+     */
+    CacheValueHolder<Object> peekHolder(long key) {
+        int i = indexOf(key);
+        return i < 0 ? null : holderAt(i);
+    }
+
+    private CacheValueHolder<Object> holderAt(int i) {
+        CacheValueHolder<Object> holder = new CacheValueHolder<>();
+        holder.setValue(values[i]);
+        holder.setExpireTime(expireTimes[i]);
+        holder.setAccessTime(recordAccessTime ? accessTimes[i] : 0);
+        return holder;
+    }
+
+    private void touch(int i, long now) {
+        if (recordAccessTime) {
+            accessTimes[i] = now;
+        }
+        states[i] = USED | REFERENCED;
+    }
+
+    void put(long key, Object value, long expireTime, long now) {
+        int i = indexOf(key);
+        if (i < 0) {
+            if (size >= max) {
+                evict(now);
+            }
+            if (size + 1 > (int) (keys.length * LOAD_FACTOR) && keys.length < maxCapacity) {
+                resize(keys.length << 1);
+            }
+            i = (int) mix(key) & mask;
+            while (states[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+        expireTimes[i] = expireTime;
+        if (recordAccessTime) {
+            accessTimes[i] = now;
+        }
+        states[i] = USED;
+    }
+
+    /**
+     * Key 不存在或已过期时放入
+     *
+     * @return 是否放入
+     */
+    boolean putIfAbsent(long key, Object value, long expireTime, long now, long expireAfterAccess) {
+        int i = indexOf(key);
+        if (i >= 0 && !isExpired(i, now, expireAfterAccess)) {
+            return false;
+        }
+        put(key, value, expireTime, now);
+        return true;
+    }
+
+    boolean remove(long key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * 从 cleanCursor 开始最多检查 maxScan 个槽位，删除其中过期的数据
+     *
+     * @return 删除的数量
+     */
+    int cleanExpired(long now, long expireAfterAccess, int maxScan) {
+        int removed = 0;
+        int scan = Math.min(maxScan, keys.length);
+        for (int n = 0; n < scan; n++) {
+            int i = cleanCursor & mask;
+            if (states[i] != EMPTY && isExpired(i, now, expireAfterAccess)) {
+                // 删除后后面的数据可能前移到当前槽位，游标不前进
+                removeAt(i);
+                removed++;
+            } else {
+                cleanCursor = i + 1;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * CLOCK 淘汰：优先淘汰过期数据，其次淘汰最近未被访问的数据
+     */
+    private void evict(long now) {
+        int capacity = keys.length;
+        // 最多转两圈：第一圈清除访问标记，第二圈一定能找到可淘汰的数据
+        for (int n = 0; n < capacity * 2; n++) {
+            int i = hand & mask;
+            byte state = states[i];
+            if (state == EMPTY) {
+                hand = i + 1;
+            } else if ((state & REFERENCED) != 0 && now < expireTimes[i]) {
+                states[i] = USED;
+                hand = i + 1;
+            } else {
+                removeAt(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 删除槽位 i 的数据，并将其后探测链上的数据前移（backward shift），不需要墓碑标记
+     */
+    private void removeAt(int i) {
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (states[j] == EMPTY) {
+                break;
+            }
+            int home = (int) mix(keys[j]) & mask;
+            // 槽位 i 在 j 的探测路径上（home 到 j 之间），可以前移
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                expireTimes[i] = expireTimes[j];
+                if (recordAccessTime) {
+                    accessTimes[i] = accessTimes[j];
+                }
+                states[i] = states[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        states[i] = EMPTY;
+        size--;
+    }
+
+    private void resize(int newCapacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] oldExpireTimes = expireTimes;
+        long[] oldAccessTimes = accessTimes;
+        byte[] oldStates = states;
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldStates[j] == EMPTY) {
+                continue;
+            }
+            int i = (int) mix(oldKeys[j]) & mask;
+            while (states[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+            expireTimes[i] = oldExpireTimes[j];
+            if (recordAccessTime) {
+                accessTimes[i] = oldAccessTimes[j];
+            }
+            states[i] = oldStates[j];
+        }
+        hand = 0;
+        cleanCursor = 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.gzy.custom.cache.localcache;
+
+import com.gzy.custom.cache.config.OffHeapCacheConfig;
+import com.gzy.custom.cache.exception.CacheConfigException;
+
+/**
+ * 堆外内存的本地缓存，缓存数据编码后存放在堆外内存中，不占用堆内存、不增加 GC 压力
+ * 读取时需要解码，比堆内缓存慢，适合作为 MultiLevelCache 中 堆内缓存 和 Redis 之间的一级
+ */
+public class OffHeapCache<K, V> extends AbstractEmbeddedCache<K, V> {
+
+    public OffHeapCache(OffHeapCacheConfig<K, V> config) {
+        // 在创建内存块（或打开持久化文件）之前检查配置
+        super(checkConfig(config));
+    }
+
+    private static <K, V> OffHeapCacheConfig<K, V> checkConfig(OffHeapCacheConfig<K, V> config) {
+        if (config.isExpireAfterAccess()) {
+            throw new CacheConfigException("expireAfterAccess is not supported");
+        }
+        return config;
+    }
+
+    @Override
+    protected InnerMap createAreaCache() {
+        OffHeapCacheConfig<K, V> c = (OffHeapCacheConfig<K, V>) config;
+        return new OffHeapMap(c.getLimit(), c.getCapacityInBytes(), c.getSlabSizeInBytes(),
+            c.getValueEncoder(), c.getValueDecoder());
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> clazz) {
+        throw new IllegalArgumentException(clazz.getName());
+    }
+}
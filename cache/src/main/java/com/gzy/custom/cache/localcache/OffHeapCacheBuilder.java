@@ -0,0 +1,62 @@
+package com.gzy.custom.cache.localcache;
+
+import java.util.function.Function;
+
+import com.gzy.custom.cache.config.OffHeapCacheConfig;
+
+public class OffHeapCacheBuilder<T extends OffHeapCacheBuilder<T>> extends EmbeddedCacheBuilder<T> {
+    public static class OffHeapCacheBuilderImpl extends OffHeapCacheBuilder<OffHeapCacheBuilderImpl> {}
+
+    public static OffHeapCacheBuilderImpl createOffHeapCacheBuilder() {
+        return new OffHeapCacheBuilderImpl();
+    }
+
+    protected OffHeapCacheBuilder() {
+        // 设置构建 OffHeapCache 缓存实例的函数
+        buildFunc((c) -> new OffHeapCache((OffHeapCacheConfig)c));
+    }
+
+    @Override
+    public OffHeapCacheConfig getConfig() {
+        if (config == null) {
+            config = new OffHeapCacheConfig();
+        }
+        return (OffHeapCacheConfig)config;
+    }
+
+    public T capacityInBytes(long capacityInBytes) {
+        getConfig().setCapacityInBytes(capacityInBytes);
+        return self();
+    }
+
+    public void setCapacityInBytes(long capacityInBytes) {
+        getConfig().setCapacityInBytes(capacityInBytes);
+    }
+
+    public T slabSizeInBytes(int slabSizeInBytes) {
+        getConfig().setSlabSizeInBytes(slabSizeInBytes);
+        return self();
+    }
+
+    public void setSlabSizeInBytes(int slabSizeInBytes) {
+        getConfig().setSlabSizeInBytes(slabSizeInBytes);
+    }
+
+    public T valueEncoder(Function<Object, byte[]> valueEncoder) {
+        getConfig().setValueEncoder(valueEncoder);
+        return self();
+    }
+
+    public void setValueEncoder(Function<Object, byte[]> valueEncoder) {
+        getConfig().setValueEncoder(valueEncoder);
+    }
+
+    public T valueDecoder(Function<byte[], Object> valueDecoder) {
+        getConfig().setValueDecoder(valueDecoder);
+        return self();
+    }
+
+    public void setValueDecoder(Function<byte[], Object> valueDecoder) {
+        getConfig().setValueDecoder(valueDecoder);
+    }
+}
@@ -0,0 +1,368 @@
+package com.gzy.custom.cache.localcache;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import com.gzy.custom.cache.support.CacheClock;
+
+/**
+ * 堆外内存的 InnerMap：缓存数据经过 valueEncoder 编码后追加写入堆外内存块（slab），
+ * 堆内只保存 Key 到 数据位置 的索引
+ *
+ * 内存块按顺序写满后循环复用，复用最早写入的内存块时，其中的数据全部淘汰（FIFO）；
+ * 覆盖和删除只修改索引，旧数据占用的空间在内存块被复用时回收
+ * 编码、解码都在锁外进行，锁内只做索引修改和内存拷贝
+ */
+class OffHeapMap implements InnerMap {
+
+    /**
+     * 缓存数据在内存块中的位置
+     */
+    static final class Location {
+        /**
+         * 内存块的序号（单调递增，slabs 下标为 slabId % slabs.length）
+         */
+        final int slabId;
+        final int offset;
+        final int length;
+        final long expireTime;
+
+        Location(int slabId, int offset, int length, long expireTime) {
+            this.slabId = slabId;
+            this.offset = offset;
+            this.length = length;
+            this.expireTime = expireTime;
+        }
+    }
+
+    private final Function<Object, byte[]> valueEncoder;
+    private final Function<byte[], Object> valueDecoder;
+
+    protected final int slabSize;
+    /**
+     * 内存块，首次使用时才分配
+     */
+    protected final ByteBuffer[] slabs;
+    /**
+     * 每个内存块中的 Key，用于复用内存块时清理索引，覆盖到其他内存块或删除时移除，同一个 Key 只记录一次
+     */
+    private final Set<Object>[] slabKeys;
+    /**
+     * Key -> 数据位置，按访问顺序排列，超过 limit 时淘汰最久未访问的 Key
+     */
+    private final LinkedHashMap<Object, Location> index;
+
+    /**
+     * 当前写入的内存块序号，-1 表示还未写入过
+     */
+    private int writeSlabId = -1;
+    /**
+     * 当前内存块的写入位置
+     */
+    private int writePosition;
+
+    OffHeapMap(int limit, long capacityInBytes, int slabSize,
+               Function<Object, byte[]> valueEncoder, Function<byte[], Object> valueDecoder) {
+        this.slabSize = slabSize;
+        this.writePosition = slabSize;
+        this.valueEncoder = valueEncoder;
+        this.valueDecoder = valueDecoder;
+        int slabCount = (int) Math.max(1, capacityInBytes / slabSize);
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabKeys = new Set[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabKeys[i] = new HashSet<>();
+        }
+        this.index = new LinkedHashMap<Object, Location>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Location> eldest) {
+                if (size() > limit) {
+                    untrack(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 分配一个内存块
+     *
+     * @param i 内存块下标
+     */
+    protected ByteBuffer allocateSlab(int i) {
+        return ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * 内存块头部的大小，数据从该位置之后开始写入
+     */
+    protected int slabHeaderSize() {
+        return 0;
+    }
+
+    /**
+     * 开始写入一个内存块（首次使用或被复用）时调用
+     */
+    protected void startSlab(ByteBuffer slab, int slabId) {
+    }
+
+    /**
+     * 一条记录占用的空间
+     *
+     * @param value 编码后的缓存数据，null 表示删除记录
+     */
+    protected int recordLength(Object key, byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    /**
+     * 在内存块的 position 位置写入一条记录
+     *
+     * @param value 编码后的缓存数据，null 表示删除记录
+     * @return 缓存数据在内存块中的偏移量
+     */
+    protected int writeRecord(ByteBuffer slab, int position, Object key, byte[] value, long expireTime) {
+        slab.put(position, value);
+        return position;
+    }
+
+    /**
+     * 是否需要为删除的 Key 写入删除记录
+     */
+    protected boolean writeTombstone() {
+        return false;
+    }
+
+    protected ByteBuffer slab(int slabId) {
+        int i = slabId % slabs.length;
+        ByteBuffer slab = slabs[i];
+        if (slab == null) {
+            slab = allocateSlab(i);
+            slabs[i] = slab;
+        }
+        return slab;
+    }
+
+    /**
+     * 确保当前内存块有 length 字节的剩余空间，不足时切换到下一个内存块，
+     * 下一个内存块已被使用过时，淘汰其中的全部数据
+     */
+    private void ensureSpace(int length) {
+        if (writePosition + length <= slabSize) {
+            return;
+        }
+        writeSlabId++;
+        writePosition = slabHeaderSize();
+        if (writeSlabId >= slabs.length) {
+            int staleSlabId = writeSlabId - slabs.length;
+            Set<Object> keys = slabKeys[writeSlabId % slabs.length];
+            for (Object key : keys) {
+                Location location = index.get(key);
+                if (location != null && location.slabId == staleSlabId) {
+                    index.remove(key);
+                }
+            }
+            keys.clear();
+        }
+        startSlab(slab(writeSlabId), writeSlabId);
+    }
+
+    /**
+     * 恢复一条记录到索引中，用于从已有的内存块重建索引，需要持有锁
+     *
+     * @param length 缓存数据的长度，小于 0 表示删除记录
+     */
+    protected void restore(int slabId, Object key, int offset, int length, long expireTime) {
+        if (length < 0 || CacheClock.now() >= expireTime) {
+            untrack(key, index.remove(key));
+        } else {
+            track(key, slabId, index.put(key, new Location(slabId, offset, length, expireTime)));
+        }
+    }
+
+    /**
+     * 设置继续写入的位置，用于从已有的内存块重建索引之后，需要持有锁
+     */
+    protected void resume(int slabId, int position) {
+        writeSlabId = slabId;
+        writePosition = position;
+    }
+
+    private byte[] read(Location location) {
+        byte[] bytes = new byte[location.length];
+        slab(location.slabId).get(location.offset, bytes);
+        return bytes;
+    }
+
+    private CacheValueHolder<Object> toHolder(byte[] bytes, long expireTime) {
+        CacheValueHolder<Object> holder = new CacheValueHolder<>();
+        // 已过期的数据不需要解码
+        if (bytes != null) {
+            holder.setValue(valueDecoder.apply(bytes));
+        }
+        holder.setExpireTime(expireTime);
+        return holder;
+    }
+
+    @Override
+    public Object getValue(Object key) {
+        byte[] bytes;
+        long expireTime;
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            expireTime = location.expireTime;
+            if (CacheClock.now() >= expireTime) {
+                untrack(key, index.remove(key));
+                bytes = null;
+            } else {
+                bytes = read(location);
+            }
+        }
+        return toHolder(bytes, expireTime);
+    }
+
+    @Override
+    public Map getAllValues(Collection keys) {
+        Map<Object, byte[]> bytesMap = new HashMap<>();
+        Map<Object, Long> expireMap = new HashMap<>();
+        synchronized (this) {
+            long now = CacheClock.now();
+            for (Object key : keys) {
+                Location location = index.get(key);
+                if (location == null) {
+                    continue;
+                }
+                if (now >= location.expireTime) {
+                    untrack(key, index.remove(key));
+                    bytesMap.put(key, null);
+                } else {
+                    bytesMap.put(key, read(location));
+                }
+                expireMap.put(key, location.expireTime);
+            }
+        }
+        Map<Object, Object> values = new HashMap<>();
+        for (Map.Entry<Object, byte[]> en : bytesMap.entrySet()) {
+            values.put(en.getKey(), toHolder(en.getValue(), expireMap.get(en.getKey())));
+        }
+        return values;
+    }
+
+    @Override
+    public void putValue(Object key, Object value) {
+        CacheValueHolder holder = (CacheValueHolder) value;
+        byte[] bytes = valueEncoder.apply(holder.getValue());
+        synchronized (this) {
+            write(key, bytes, holder.getExpireTime());
+        }
+    }
+
+    /**
+     * 写入数据并更新索引，需要持有锁
+     */
+    private void write(Object key, byte[] bytes, long expireTime) {
+        int length = recordLength(key, bytes);
+        if (length > slabSize - slabHeaderSize()) {
+            // 超过内存块大小的数据不缓存
+            remove(key);
+            return;
+        }
+        ensureSpace(length);
+        int offset = writeRecord(slab(writeSlabId), writePosition, key, bytes, expireTime);
+        track(key, writeSlabId, index.put(key, new Location(writeSlabId, offset, bytes.length, expireTime)));
+        writePosition += length;
+    }
+
+    /**
+     * 记录 Key 所在的内存块，原来在其他内存块中时从其中移除，需要持有锁；
+     * 从 index 中删除 Key 的地方（淘汰、过期、删除、回收内存块）都需要调用 untrack，保证每个 Key 只在一个内存块的集合中
+     */
+    private void track(Object key, int slabId, Location old) {
+        if (old != null && old.slabId != slabId) {
+            untrack(key, old);
+        }
+        slabKeys[slabId % slabs.length].add(key);
+    }
+
+    private void untrack(Object key, Location old) {
+        if (old != null) {
+            slabKeys[old.slabId % slabs.length].remove(key);
+        }
+    }
+
+    /**
+     * 从索引中删除 Key，需要时写入删除记录，需要持有锁
+     */
+    private boolean remove(Object key) {
+        Location old = index.remove(key);
+        if (old == null) {
+            return false;
+        }
+        untrack(key, old);
+        if (writeTombstone()) {
+            int length = recordLength(key, null);
+            if (length <= slabSize - slabHeaderSize()) {
+                ensureSpace(length);
+                writeRecord(slab(writeSlabId), writePosition, key, null, 0);
+                writePosition += length;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void putAllValues(Map map) {
+        Set<Map.Entry> set = map.entrySet();
+        for (Map.Entry en : set) {
+            putValue(en.getKey(), en.getValue());
+        }
+    }
+
+    @Override
+    public synchronized boolean removeValue(Object key) {
+        return remove(key);
+    }
+
+    @Override
+    public boolean putIfAbsentValue(Object key, Object value) {
+        CacheValueHolder holder = (CacheValueHolder) value;
+        synchronized (this) {
+            Location location = index.get(key);
+            if (location != null && CacheClock.now() < location.expireTime) {
+                return false;
+            }
+        }
+        byte[] bytes = valueEncoder.apply(holder.getValue());
+        synchronized (this) {
+            // 编码期间可能已被其他线程放入
+            Location location = index.get(key);
+            if (location != null && CacheClock.now() < location.expireTime) {
+                return false;
+            }
+            write(key, bytes, holder.getExpireTime());
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized void removeAllValues(Collection keys) {
+        for (Object k : keys) {
+            remove(k);
+        }
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,36 @@
+package com.gzy.custom.cache.localcache;
+
+import java.io.File;
+
+import com.gzy.custom.cache.config.PersistentCacheConfig;
+import com.gzy.custom.cache.exception.CacheConfigException;
+
+/**
+ * 持久化的本地缓存，缓存数据保存在内存映射文件中，应用重启后可以直接读取仍然有效的缓存数据，
+ * 避免重启后本地缓存为空导致大量请求打到 Redis 和数据库
+ */
+public class PersistentCache<K, V> extends OffHeapCache<K, V> {
+
+    public PersistentCache(PersistentCacheConfig<K, V> config) {
+        super(config);
+    }
+
+    @Override
+    protected InnerMap createAreaCache() {
+        PersistentCacheConfig<K, V> c = (PersistentCacheConfig<K, V>) config;
+        if (c.getDirectory() == null) {
+            throw new CacheConfigException("directory is required");
+        }
+        File directory = new File(c.getDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new CacheConfigException("can't create directory: " + directory);
+        }
+        return new PersistentMap(c.getLimit(), c.getCapacityInBytes(), c.getSlabSizeInBytes(),
+            c.getValueEncoder(), c.getValueDecoder(), directory);
+    }
+
+    @Override
+    public void close() {
+        ((PersistentMap) innerMap).force();
+    }
+}
@@ -0,0 +1,33 @@
+package com.gzy.custom.cache.localcache;
+
+import com.gzy.custom.cache.config.PersistentCacheConfig;
+
+public class PersistentCacheBuilder<T extends PersistentCacheBuilder<T>> extends OffHeapCacheBuilder<T> {
+    public static class PersistentCacheBuilderImpl extends PersistentCacheBuilder<PersistentCacheBuilderImpl> {}
+
+    public static PersistentCacheBuilderImpl createPersistentCacheBuilder() {
+        return new PersistentCacheBuilderImpl();
+    }
+
+    protected PersistentCacheBuilder() {
+        // 设置构建 PersistentCache 缓存实例的函数
+        buildFunc((c) -> new PersistentCache((PersistentCacheConfig)c));
+    }
+
+    @Override
+    public PersistentCacheConfig getConfig() {
+        if (config == null) {
+            config = new PersistentCacheConfig();
+        }
+        return (PersistentCacheConfig)config;
+    }
+
+    public T directory(String directory) {
+        getConfig().setDirectory(directory);
+        return self();
+    }
+
+    public void setDirectory(String directory) {
+        getConfig().setDirectory(directory);
+    }
+}
@@ -0,0 +1,210 @@
+package com.gzy.custom.cache.localcache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import com.gzy.custom.cache.exception.CacheException;
+import com.gzy.custom.cache.external.ExternalKeyEncoder;
+
+/**
+ * 持久化的 OffHeapMap：内存块是映射到目录下文件（slab-N.dat）的 MappedByteBuffer，
+ * 每条记录同时保存 Key、过期时间和缓存数据，重启后按内存块的序号顺序重放记录重建索引
+ *
+ * 内存块格式：[int MAGIC][int slabId][记录]...[int 0]
+ * 记录格式：[int keyLength][int valueLength][long expireTime][key][value]，valueLength 为 -1 表示删除记录
+ * Key 使用 ExternalKeyEncoder 转换成字节数组，与远程缓存的 Key 规则一致
+ */
+class PersistentMap extends OffHeapMap {
+
+    private static final int MAGIC = 0x4A43504D;
+
+    private static final int SLAB_HEADER_SIZE = 8;
+
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final ExternalKeyEncoder KEY_ENCODER = new ExternalKeyEncoder("");
+
+    private final File directory;
+
+    PersistentMap(int limit, long capacityInBytes, int slabSize,
+                  Function<Object, byte[]> valueEncoder, Function<byte[], Object> valueDecoder, File directory) {
+        super(limit, capacityInBytes, slabSize, valueEncoder, valueDecoder);
+        this.directory = directory;
+        load();
+    }
+
+    private File slabFile(int i) {
+        return new File(directory, "slab-" + i + ".dat");
+    }
+
+    @Override
+    protected ByteBuffer allocateSlab(int i) {
+        try (RandomAccessFile file = new RandomAccessFile(slabFile(i), "rw");
+             FileChannel channel = file.getChannel()) {
+            // 映射建立后关闭文件不影响 MappedByteBuffer 的使用
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, slabSize);
+        } catch (IOException e) {
+            throw new CacheException(e);
+        }
+    }
+
+    @Override
+    protected int slabHeaderSize() {
+        return SLAB_HEADER_SIZE;
+    }
+
+    @Override
+    protected void startSlab(ByteBuffer slab, int slabId) {
+        slab.putInt(SLAB_HEADER_SIZE, 0);
+        slab.putInt(4, slabId);
+        slab.putInt(0, MAGIC);
+    }
+
+    @Override
+    protected int recordLength(Object key, byte[] value) {
+        int keyLength = ((ByteBuffer) key).remaining();
+        return RECORD_HEADER_SIZE + keyLength + (value == null ? 0 : value.length);
+    }
+
+    @Override
+    protected int writeRecord(ByteBuffer slab, int position, Object key, byte[] value, long expireTime) {
+        byte[] keyBytes = ((ByteBuffer) key).array();
+        int valueOffset = position + RECORD_HEADER_SIZE + keyBytes.length;
+        int end = valueOffset;
+        slab.putInt(position + 4, value == null ? -1 : value.length);
+        slab.putLong(position + 8, expireTime);
+        slab.put(position + RECORD_HEADER_SIZE, keyBytes);
+        if (value != null) {
+            slab.put(valueOffset, value);
+            end += value.length;
+        }
+        if (end + 4 <= slabSize) {
+            slab.putInt(end, 0);
+        }
+        // 最后写入 keyLength，进程崩溃时不会读到不完整的记录
+        slab.putInt(position, keyBytes.length);
+        return valueOffset;
+    }
+
+    @Override
+    protected boolean writeTombstone() {
+        return true;
+    }
+
+    /**
+     * 读取目录下已有的内存块，按序号顺序重放其中的记录
+     */
+    private synchronized void load() {
+        TreeMap<Integer, ByteBuffer> existing = new TreeMap<>();
+        for (int i = 0; i < slabs.length; i++) {
+            if (!slabFile(i).exists()) {
+                continue;
+            }
+            ByteBuffer slab = allocateSlab(i);
+            slabs[i] = slab;
+            int slabId = slab.getInt(4);
+            if (slab.getInt(0) == MAGIC && slabId >= 0 && slabId % slabs.length == i) {
+                existing.put(slabId, slab);
+            }
+        }
+        for (Map.Entry<Integer, ByteBuffer> en : existing.entrySet()) {
+            int position = replay(en.getKey(), en.getValue());
+            resume(en.getKey(), position);
+        }
+    }
+
+    /**
+     * 重放一个内存块中的记录
+     *
+     * @return 最后一条有效记录之后的位置
+     */
+    private int replay(int slabId, ByteBuffer slab) {
+        int position = SLAB_HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= slabSize) {
+            int keyLength = slab.getInt(position);
+            int valueLength = slab.getInt(position + 4);
+            long expireTime = slab.getLong(position + 8);
+            if (keyLength <= 0 || valueLength < -1) {
+                break;
+            }
+            int length = RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+            if (length > slabSize - position) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            slab.get(position + RECORD_HEADER_SIZE, keyBytes);
+            restore(slabId, ByteBuffer.wrap(keyBytes), position + RECORD_HEADER_SIZE + keyLength, valueLength, expireTime);
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * 将内存块的修改刷到文件
+     */
+    synchronized void force() {
+        for (ByteBuffer slab : slabs) {
+            if (slab instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) slab).force();
+            }
+        }
+    }
+
+    private static ByteBuffer toKey(Object key) {
+        return ByteBuffer.wrap(KEY_ENCODER.encode(key));
+    }
+
+    @Override
+    public Object getValue(Object key) {
+        return super.getValue(toKey(key));
+    }
+
+    @Override
+    public Map getAllValues(Collection keys) {
+        Map<ByteBuffer, Object> keyMap = new HashMap<>();
+        for (Object key : keys) {
+            keyMap.put(toKey(key), key);
+        }
+        Map<Object, Object> values = new HashMap<>();
+        Map<ByteBuffer, Object> innerValues = super.getAllValues(keyMap.keySet());
+        for (Map.Entry<ByteBuffer, Object> en : innerValues.entrySet()) {
+            values.put(keyMap.get(en.getKey()), en.getValue());
+        }
+        return values;
+    }
+
+    @Override
+    public void putValue(Object key, Object value) {
+        super.putValue(toKey(key), value);
+    }
+
+    @Override
+    public boolean removeValue(Object key) {
+        return super.removeValue(toKey(key));
+    }
+
+    @Override
+    public boolean putIfAbsentValue(Object key, Object value) {
+        return super.putIfAbsentValue(toKey(key), value);
+    }
+
+    @Override
+    public void removeAllValues(Collection keys) {
+        List<ByteBuffer> newKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            newKeys.add(toKey(key));
+        }
+        super.removeAllValues(newKeys);
+    }
+}
@@ -8,6 +8,11 @@ import java.util.concurrent.*;
 public class CacheResult {
 
     public static final String MSG_ILLEGAL_ARGUMENT = "illegal argument";
+
+    // 需在下面的常量之前初始化，否则常量中的 timeout 为 null
+    static Duration ASYNC_RESULT_TIMEOUT = Duration.ofMillis(1000);
+    private static Duration DEFAULT_TIMEOUT = ASYNC_RESULT_TIMEOUT;
+
     public static final CacheResult FAIL_ILLEGAL_ARGUMENT = new CacheResult(CacheResultCode.FAIL, MSG_ILLEGAL_ARGUMENT);
 
     public static final CacheResult SUCCESS_WITHOUT_MSG = new CacheResult(CacheResultCode.SUCCESS, null);
@@ -16,8 +21,6 @@ public class CacheResult {
 
     public static final CacheResult EXISTS_WITHOUT_MSG = new CacheResult(CacheResultCode.EXISTS, null);
 
-    static Duration ASYNC_RESULT_TIMEOUT = Duration.ofMillis(1000);
-    private static Duration DEFAULT_TIMEOUT = ASYNC_RESULT_TIMEOUT;
     private CacheResultCode resultCode;
     private String message;
     private CompletionStage<ResultData> future;
@@ -88,4 +91,8 @@ public class CacheResult {
         this.timeout = timeout;
     }
 
+    public Duration getTimeout() {
+        return timeout;
+    }
+
 }
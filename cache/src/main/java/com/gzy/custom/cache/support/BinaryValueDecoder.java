@@ -0,0 +1,191 @@
+package com.gzy.custom.cache.support;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import com.gzy.custom.cache.exception.CacheEncodeException;
+
+import static com.gzy.custom.cache.support.BinaryValueEncoder.*;
+
+/**
+ * BinaryValueEncoder 对应的解码器
+ */
+public class BinaryValueDecoder extends AbstractValueDecoder {
+
+    public static final BinaryValueDecoder INSTANCE = new BinaryValueDecoder(true);
+
+    private static final JavaValueDecoder JAVA_DECODER =
+        DecoderMap.defaultJavaValueDecoder() instanceof SpringJavaValueDecoder
+            ? new SpringJavaValueDecoder(false) : new JavaValueDecoder(false);
+
+    public BinaryValueDecoder(boolean useIdentityNumber) {
+        super(useIdentityNumber);
+    }
+
+    @Override
+    public Object doApply(byte[] buffer) throws Exception {
+        Input in = new Input(buffer, useIdentityNumber ? 4 : 0);
+        return readObject(in);
+    }
+
+    private Object readObject(Input in) throws Exception {
+        byte type = in.read();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_TRUE:
+                return Boolean.TRUE;
+            case TYPE_FALSE:
+                return Boolean.FALSE;
+            case TYPE_BYTE:
+                return in.read();
+            case TYPE_SHORT:
+                return (short) in.readVarLong();
+            case TYPE_CHAR:
+                return (char) in.readVarLong();
+            case TYPE_INT:
+                return (int) in.readVarLong();
+            case TYPE_LONG:
+                return in.readVarLong();
+            case TYPE_FLOAT:
+                return Float.intBitsToFloat(in.readInt());
+            case TYPE_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case TYPE_STRING:
+                return in.readString();
+            case TYPE_BYTES:
+                return in.readBytes();
+            case TYPE_DATE:
+                return new Date(in.readVarLong());
+            case TYPE_BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(in.readBytes());
+            case TYPE_ARRAY_LIST: {
+                int size = in.readSize();
+                return readCollection(in, size, new ArrayList<>(size));
+            }
+            case TYPE_LINKED_LIST:
+                return readCollection(in, in.readSize(), new LinkedList<>());
+            case TYPE_HASH_SET: {
+                int size = in.readSize();
+                return readCollection(in, size, new HashSet<>(capacity(size)));
+            }
+            case TYPE_LINKED_HASH_SET: {
+                int size = in.readSize();
+                return readCollection(in, size, new LinkedHashSet<>(capacity(size)));
+            }
+            case TYPE_HASH_MAP: {
+                int size = in.readSize();
+                return readMap(in, size, new HashMap<>(capacity(size)));
+            }
+            case TYPE_LINKED_HASH_MAP: {
+                int size = in.readSize();
+                return readMap(in, size, new LinkedHashMap<>(capacity(size)));
+            }
+            case TYPE_HOLDER:
+            case TYPE_HOLDER_TTL: {
+                CacheValueHolder<Object> holder = new CacheValueHolder<>();
+                holder.setExpireTime(in.readVarLong());
+                holder.setAccessTime(in.readVarLong());
+                if (type == TYPE_HOLDER_TTL) {
+                    holder.setExpireAfterWrite(in.readVarLong());
+                }
+                holder.setValue(readObject(in));
+                return holder;
+            }
+            case TYPE_JAVA:
+                return JAVA_DECODER.doApply(in.readBytes());
+            default:
+                throw new CacheEncodeException("unknown type: " + type, null);
+        }
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    private Collection<Object> readCollection(Input in, int size, Collection<Object> collection) throws Exception {
+        for (int i = 0; i < size; i++) {
+            collection.add(readObject(in));
+        }
+        return collection;
+    }
+
+    private Map<Object, Object> readMap(Input in, int size, Map<Object, Object> map) throws Exception {
+        for (int i = 0; i < size; i++) {
+            Object key = readObject(in);
+            map.put(key, readObject(in));
+        }
+        return map;
+    }
+
+    private static final class Input {
+        private final byte[] buf;
+        private int position;
+
+        Input(byte[] buf, int position) {
+            this.buf = buf;
+            this.position = position;
+        }
+
+        byte read() {
+            return buf[position++];
+        }
+
+        int readInt() {
+            return ((buf[position++] & 0xFF) << 24) | ((buf[position++] & 0xFF) << 16)
+                | ((buf[position++] & 0xFF) << 8) | (buf[position++] & 0xFF);
+        }
+
+        long readLong() {
+            return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        int readSize() {
+            long size = readVarLong();
+            if (size < 0 || size > buf.length - position) {
+                throw new CacheEncodeException("illegal size: " + size, null);
+            }
+            return (int) size;
+        }
+
+        byte[] readBytes() {
+            int length = readSize();
+            byte[] bytes = new byte[length];
+            System.arraycopy(buf, position, bytes, 0, length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readSize();
+            String s = new String(buf, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.gzy.custom.cache.support;
+
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.gzy.custom.cache.CacheValueHolder;
+
+/**
+ * 紧凑的二进制编码：每个值以 1 个字节的类型标记开头，整数使用变长编码，
+ * 常用类型（基本类型包装类、String、byte[]、Date、BigDecimal、常用集合、CacheValueHolder）直接编码，
+ * 其他类型使用 Java 序列化
+ *
+ * 集合只编码 ArrayList、LinkedList、HashSet、LinkedHashSet、HashMap、LinkedHashMap 这几种具体类型，
+ * 保证解码后类型不变（LinkedHashMap 解码后按插入顺序排列）；对象之间的引用关系不保留，有循环引用的集合不能编码
+ */
+public class BinaryValueEncoder extends AbstractValueEncoder {
+
+    public static final BinaryValueEncoder INSTANCE = new BinaryValueEncoder(true);
+
+    /**
+     * 十六进制：0x4A953A81 十进制：1251293825
+     */
+    protected static int IDENTITY_NUMBER = 0x4A953A81;
+    /**
+     * 初始字节数组大小
+     */
+    private static final int INIT_BUF_SIZE = 256;
+    /**
+     * 线程缓存的字节数组的最大大小，编码大对象后超过该大小的数组不缓存
+     */
+    private static final int MAX_CACHED_BUF_SIZE = 64 * 1024;
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_TRUE = 1;
+    static final byte TYPE_FALSE = 2;
+    static final byte TYPE_BYTE = 3;
+    static final byte TYPE_SHORT = 4;
+    static final byte TYPE_CHAR = 5;
+    static final byte TYPE_INT = 6;
+    static final byte TYPE_LONG = 7;
+    static final byte TYPE_FLOAT = 8;
+    static final byte TYPE_DOUBLE = 9;
+    static final byte TYPE_STRING = 10;
+    static final byte TYPE_BYTES = 11;
+    static final byte TYPE_DATE = 12;
+    static final byte TYPE_BIG_DECIMAL = 13;
+    static final byte TYPE_BIG_INTEGER = 14;
+    static final byte TYPE_ARRAY_LIST = 15;
+    static final byte TYPE_LINKED_LIST = 16;
+    static final byte TYPE_HASH_SET = 17;
+    static final byte TYPE_LINKED_HASH_SET = 18;
+    static final byte TYPE_HASH_MAP = 19;
+    static final byte TYPE_LINKED_HASH_MAP = 20;
+    static final byte TYPE_HOLDER = 21;
+    static final byte TYPE_JAVA = 22;
+    /**
+     * 带写入时存活时间的 CacheValueHolder，存活时间未知时仍然使用 TYPE_HOLDER
+     */
+    static final byte TYPE_HOLDER_TTL = 23;
+
+    private static final JavaValueEncoder JAVA_ENCODER = new JavaValueEncoder(false);
+
+    private static ThreadLocal<WeakReference<Output>> threadLocal =
+        ThreadLocal.withInitial(() -> new WeakReference<>(new Output()));
+
+    public BinaryValueEncoder(boolean useIdentityNumber) {
+        super(useIdentityNumber);
+    }
+
+    @Override
+    public byte[] apply(Object value) {
+        WeakReference<Output> ref = threadLocal.get();
+        Output out = ref.get();
+        if (out == null) {
+            out = new Output();
+            threadLocal.set(new WeakReference<>(out));
+        }
+        try {
+            if (useIdentityNumber) {
+                out.writeInt(IDENTITY_NUMBER);
+            }
+            writeObject(out, value);
+            return out.toByteArray();
+        } finally {
+            out.reset();
+        }
+    }
+
+    private void writeObject(Output out, Object value) {
+        if (value == null) {
+            out.write(TYPE_NULL);
+            return;
+        }
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class) {
+            out.write(TYPE_STRING);
+            out.writeString((String) value);
+        } else if (clazz == Integer.class) {
+            out.write(TYPE_INT);
+            out.writeVarLong((Integer) value);
+        } else if (clazz == Long.class) {
+            out.write(TYPE_LONG);
+            out.writeVarLong((Long) value);
+        } else if (clazz == Boolean.class) {
+            out.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (clazz == CacheValueHolder.class) {
+            CacheValueHolder<?> holder = (CacheValueHolder<?>) value;
+            out.write(holder.getExpireAfterWrite() > 0 ? TYPE_HOLDER_TTL : TYPE_HOLDER);
+            out.writeVarLong(holder.getExpireTime());
+            out.writeVarLong(holder.getAccessTime());
+            if (holder.getExpireAfterWrite() > 0) {
+                out.writeVarLong(holder.getExpireAfterWrite());
+            }
+            writeObject(out, holder.getValue());
+        } else if (clazz == Double.class) {
+            out.write(TYPE_DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (clazz == Float.class) {
+            out.write(TYPE_FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (clazz == Short.class) {
+            out.write(TYPE_SHORT);
+            out.writeVarLong((Short) value);
+        } else if (clazz == Byte.class) {
+            out.write(TYPE_BYTE);
+            out.write((Byte) value);
+        } else if (clazz == Character.class) {
+            out.write(TYPE_CHAR);
+            out.writeVarLong((Character) value);
+        } else if (clazz == byte[].class) {
+            out.write(TYPE_BYTES);
+            out.writeBytes((byte[]) value);
+        } else if (clazz == Date.class) {
+            out.write(TYPE_DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (clazz == BigDecimal.class) {
+            out.write(TYPE_BIG_DECIMAL);
+            out.writeString(value.toString());
+        } else if (clazz == BigInteger.class) {
+            out.write(TYPE_BIG_INTEGER);
+            out.writeBytes(((BigInteger) value).toByteArray());
+        } else if (clazz == ArrayList.class) {
+            writeCollection(out, TYPE_ARRAY_LIST, (Collection<?>) value);
+        } else if (clazz == LinkedList.class) {
+            writeCollection(out, TYPE_LINKED_LIST, (Collection<?>) value);
+        } else if (clazz == HashSet.class) {
+            writeCollection(out, TYPE_HASH_SET, (Collection<?>) value);
+        } else if (clazz == LinkedHashSet.class) {
+            writeCollection(out, TYPE_LINKED_HASH_SET, (Collection<?>) value);
+        } else if (clazz == HashMap.class) {
+            writeMap(out, TYPE_HASH_MAP, (Map<?, ?>) value);
+        } else if (clazz == LinkedHashMap.class) {
+            writeMap(out, TYPE_LINKED_HASH_MAP, (Map<?, ?>) value);
+        } else {
+            out.write(TYPE_JAVA);
+            out.writeBytes(JAVA_ENCODER.apply(value));
+        }
+    }
+
+    private void writeCollection(Output out, byte type, Collection<?> collection) {
+        out.write(type);
+        out.writeVarLong(collection.size());
+        for (Object o : collection) {
+            writeObject(out, o);
+        }
+    }
+
+    private void writeMap(Output out, byte type, Map<?, ?> map) {
+        out.write(type);
+        out.writeVarLong(map.size());
+        for (Map.Entry<?, ?> en : map.entrySet()) {
+            writeObject(out, en.getKey());
+            writeObject(out, en.getValue());
+        }
+    }
+
+    /**
+     * 可扩容的字节数组输出
+     */
+    private static final class Output {
+        private byte[] buf = new byte[INIT_BUF_SIZE];
+        private int count;
+
+        private void ensureCapacity(int n) {
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+            }
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        void writeInt(int v) {
+            ensureCapacity(4);
+            buf[count++] = (byte) (v >>> 24);
+            buf[count++] = (byte) (v >>> 16);
+            buf[count++] = (byte) (v >>> 8);
+            buf[count++] = (byte) v;
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        /**
+         * ZigZag + 变长编码，绝对值小的数（包括负数）占用的字节少
+         */
+        void writeVarLong(long v) {
+            long zigzag = (v << 1) ^ (v >> 63);
+            ensureCapacity(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[count++] = (byte) zigzag;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void writeString(String s) {
+            int length = s.length();
+            for (int i = 0; i < length; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    writeBytes(s.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            // ASCII 字符串直接写入，不创建中间数组
+            writeVarLong(length);
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                buf[count++] = (byte) s.charAt(i);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        void reset() {
+            count = 0;
+            if (buf.length > MAX_CACHED_BUF_SIZE) {
+                buf = new byte[INIT_BUF_SIZE];
+            }
+        }
+    }
+}
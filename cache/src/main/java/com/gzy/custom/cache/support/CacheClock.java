@@ -0,0 +1,38 @@
+package com.gzy.custom.cache.support;
+
+/**
+ * 缓存使用的时钟，过期判断等热点路径都通过它获取当前时间
+ * 默认直接使用 System.currentTimeMillis()，可以替换成后台线程定时更新时间的 TickingCacheClock，
+ * 测试时也可以替换成手动推进时间的实现
+ */
+public abstract class CacheClock {
+
+    public static final CacheClock SYSTEM = new CacheClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile CacheClock defaultClock = SYSTEM;
+
+    /**
+     * @return 当前时间戳（毫秒）
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * 通过默认时钟获取当前时间戳（毫秒）
+     */
+    public static long now() {
+        return defaultClock.currentTimeMillis();
+    }
+
+    public static CacheClock defaultClock() {
+        return defaultClock;
+    }
+
+    public static void setDefaultClock(CacheClock clock) {
+        CacheClock.defaultClock = clock == null ? SYSTEM : clock;
+    }
+}
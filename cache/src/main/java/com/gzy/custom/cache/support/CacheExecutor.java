@@ -1,15 +1,24 @@
 package com.gzy.custom.cache.support;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class CacheExecutor {
     protected static ScheduledExecutorService defaultExecutor;
     protected static ScheduledExecutorService heavyIOExecutor;
+    /**
+     * 异步加载（computeIfAbsentAsync、getAllAsync）执行 loader 的线程池，
+     * loader 通常会阻塞在数据源上，与 heavyIOExecutor 分开，避免占满后影响刷新、写回等定时任务
+     */
+    protected static ExecutorService loaderExecutor;
 
     private static int threadCount;
+    private static int loaderThreadCount;
 
     static {
         Runtime.getRuntime().addShutdownHook(new Thread() {
@@ -21,6 +30,9 @@ public class CacheExecutor {
                 if (heavyIOExecutor != null) {
                     heavyIOExecutor.shutdownNow();
                 }
+                if (loaderExecutor != null) {
+                    loaderExecutor.shutdownNow();
+                }
             }
         });
     }
@@ -59,6 +71,26 @@ public class CacheExecutor {
         return heavyIOExecutor;
     }
 
+    public static ExecutorService loaderExecutor() {
+        if (loaderExecutor != null) {
+            return loaderExecutor;
+        }
+        synchronized (CacheExecutor.class) {
+            if (loaderExecutor == null) {
+                ThreadFactory tf = r -> {
+                    Thread t = new Thread(r, "JetCacheLoaderExecutor" + loaderThreadCount++);
+                    t.setDaemon(true);
+                    return t;
+                };
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(20, 20, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(), tf);
+                executor.allowCoreThreadTimeOut(true);
+                loaderExecutor = executor;
+            }
+        }
+        return loaderExecutor;
+    }
+
     public static void setDefaultExecutor(ScheduledExecutorService executor) {
         CacheExecutor.defaultExecutor = executor;
     }
@@ -66,4 +98,8 @@ public class CacheExecutor {
     public static void setHeavyIOExecutor(ScheduledExecutorService heavyIOExecutor) {
         CacheExecutor.heavyIOExecutor = heavyIOExecutor;
     }
+
+    public static void setLoaderExecutor(ExecutorService loaderExecutor) {
+        CacheExecutor.loaderExecutor = loaderExecutor;
+    }
 }
@@ -0,0 +1,159 @@
+package com.gzy.custom.cache.support;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 通过 InvalidationChannel 在节点之间同步缓存失效：
+ * 本节点写入或删除的 Key 合并后发布出去，收到其他节点发布的 Key 时删除本地缓存
+ *
+ * 消息是用 BinaryValueEncoder 编码的列表，第一个元素是发送方的 id，用于忽略自己发布的消息，其余元素是 Key
+ * 合并窗口由专用的定时线程触发，不与 CacheExecutor.defaultExecutor 中的清理等任务排队
+ */
+public class CacheInvalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private static final BinaryValueEncoder ENCODER = new BinaryValueEncoder(false);
+    private static final BinaryValueDecoder DECODER = new BinaryValueDecoder(false);
+
+    /**
+     * 所有 CacheInvalidator 共用的定时线程，只用于合并窗口结束时发布消息
+     */
+    private static volatile ScheduledExecutorService timer;
+
+    private final InvalidationChannel channel;
+    /**
+     * 合并失效消息的时间窗口（毫秒），0 表示每次操作立即发布
+     */
+    private final long batchWindowMillis;
+    /**
+     * 一条消息最多包含的 Key 数量
+     */
+    private final int maxBatchKeys;
+    /**
+     * 收到其他节点的消息时删除本地缓存
+     */
+    private final Consumer<List<Object>> localInvalidator;
+
+    private final long senderId = ThreadLocalRandom.current().nextLong();
+
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public CacheInvalidator(InvalidationChannel channel, long batchWindowMillis, int maxBatchKeys,
+                            Consumer<List<Object>> localInvalidator) {
+        this.channel = channel;
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxBatchKeys = Math.max(1, maxBatchKeys);
+        this.localInvalidator = localInvalidator;
+        channel.subscribe(this::onMessage);
+    }
+
+    /**
+     * 通知其他节点这些 Key 已失效
+     */
+    public void invalidate(Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (batchWindowMillis <= 0) {
+            publish(new ArrayList<>(keys));
+            return;
+        }
+        pending.addAll(keys);
+        if (pendingCount.addAndGet(keys.size()) >= maxBatchKeys) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                timer().schedule(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                }, batchWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    private static ScheduledExecutorService timer() {
+        ScheduledExecutorService t = timer;
+        if (t == null) {
+            synchronized (CacheInvalidator.class) {
+                t = timer;
+                if (t == null) {
+                    t = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread thread = new Thread(r, "JetCacheInvalidator");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    timer = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    /**
+     * 发布所有待发布的 Key，每条消息最多 maxBatchKeys 个
+     */
+    private void flush() {
+        List<Object> keys = new ArrayList<>();
+        Object key;
+        while ((key = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            keys.add(key);
+            if (keys.size() >= maxBatchKeys) {
+                publish(keys);
+                keys = new ArrayList<>();
+            }
+        }
+        if (!keys.isEmpty()) {
+            publish(keys);
+        }
+    }
+
+    private void publish(List<Object> keys) {
+        List<Object> message = new ArrayList<>(keys.size() + 1);
+        message.add(senderId);
+        message.addAll(keys);
+        try {
+            channel.publish(ENCODER.apply(message));
+        } catch (Exception e) {
+            logger.error("publish invalidation error, keys({}): {}", keys.size(), e.toString());
+        }
+    }
+
+    private void onMessage(byte[] bytes) {
+        try {
+            List<Object> message = (List<Object>) DECODER.apply(bytes);
+            if (message.isEmpty() || Long.valueOf(senderId).equals(message.get(0))) {
+                return;
+            }
+            localInvalidator.accept(message.subList(1, message.size()));
+        } catch (Exception e) {
+            logger.error("handle invalidation error: {}", e.toString());
+        }
+    }
+
+    public void close() {
+        flush();
+        channel.close();
+    }
+}
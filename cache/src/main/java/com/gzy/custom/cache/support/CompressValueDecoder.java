@@ -0,0 +1,85 @@
+package com.gzy.custom.cache.support;
+
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.gzy.custom.cache.exception.CacheException;
+
+/**
+ * CompressValueEncoder 对应的解码器，解压后按原数据的标识数字找到对应的解码器解码
+ * 分配解压缓冲区之前先校验头部中的压缩前长度，数据损坏或被截断时抛出 CacheException，不会按错误的长度分配内存
+ */
+public class CompressValueDecoder extends AbstractValueDecoder {
+
+    public static final CompressValueDecoder INSTANCE = new CompressValueDecoder();
+
+    /**
+     * 默认的解压后最大长度
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64 * 1024 * 1024;
+    /**
+     * Deflate 的最大压缩比约为 1032:1，超过压缩数据长度该倍数的压缩前长度一定是错误的
+     */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * 解压后允许的最大长度（字节）
+     */
+    private final int maxLength;
+
+    public CompressValueDecoder() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+
+    public CompressValueDecoder(int maxLength) {
+        super(true);
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public Object doApply(byte[] buffer) throws Exception {
+        byte[] bytes = decompress(buffer);
+        int identityNumber = parseHeader(bytes);
+        AbstractValueDecoder decoder = DecoderMap.getDecoder(identityNumber);
+        Objects.requireNonNull(decoder, "no decoder for identity number:" + identityNumber);
+        return decoder.doApply(bytes);
+    }
+
+    private byte[] decompress(byte[] buffer) throws DataFormatException {
+        if (buffer.length <= CompressValueEncoder.HEADER_SIZE) {
+            throw new CacheException("compressed value too short: " + buffer.length + " bytes");
+        }
+        int length = ((buffer[4] & 0xFF) << 24) | ((buffer[5] & 0xFF) << 16)
+            | ((buffer[6] & 0xFF) << 8) | (buffer[7] & 0xFF);
+        long compressedLength = buffer.length - CompressValueEncoder.HEADER_SIZE;
+        // 解压后至少包含原编码函数的标识数字
+        if (length < 4 || length > maxLength || length > compressedLength * MAX_DEFLATE_RATIO) {
+            throw new CacheException("illegal uncompressed length " + length + " for " + compressedLength
+                + " compressed bytes");
+        }
+        // 解码函数需要完整的字节数组，按压缩前长度分配
+        byte[] bytes = new byte[length];
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(buffer, CompressValueEncoder.HEADER_SIZE,
+                buffer.length - CompressValueEncoder.HEADER_SIZE);
+            int n = 0;
+            while (n < length && !inflater.finished()) {
+                int count = inflater.inflate(bytes, n, length - n);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != length) {
+                throw new DataFormatException("expect " + length + " bytes, but got " + n);
+            }
+            return bytes;
+        } finally {
+            inflater.reset();
+        }
+    }
+}
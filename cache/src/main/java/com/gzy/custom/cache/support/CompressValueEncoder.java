@@ -0,0 +1,97 @@
+package com.gzy.custom.cache.support;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+/**
+ * 压缩编码：包装一个使用标识数字的编码函数，编码结果超过阈值时使用 Deflate 压缩
+ * 压缩后的格式：[标识数字][int 压缩前长度][压缩数据]，压缩数据解压后是原编码函数的输出（包含其标识数字）
+ * 未超过阈值或压缩后没有变小时，直接返回原编码函数的输出
+ */
+public class CompressValueEncoder extends AbstractValueEncoder {
+
+    /**
+     * 十六进制：0x4A953A82 十进制：1251293826
+     */
+    protected static int IDENTITY_NUMBER = 0x4A953A82;
+
+    static final int HEADER_SIZE = 8;
+
+    public static final int DEFAULT_THRESHOLD = 8 * 1024;
+    /**
+     * 线程缓存的输出数组的最大大小，超过该大小的数组不缓存
+     */
+    private static final int MAX_CACHED_BUF_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<>();
+
+    private final Function<Object, byte[]> encoder;
+
+    /**
+     * 超过该大小（字节）才压缩
+     */
+    private final int threshold;
+
+    public CompressValueEncoder(Function<Object, byte[]> encoder) {
+        this(encoder, DEFAULT_THRESHOLD);
+    }
+
+    public CompressValueEncoder(Function<Object, byte[]> encoder, int threshold) {
+        super(true);
+        if (encoder instanceof AbstractValueEncoder && !((AbstractValueEncoder) encoder).isUseIdentityNumber()) {
+            throw new IllegalArgumentException("encoder must use identity number");
+        }
+        this.encoder = encoder;
+        this.threshold = threshold;
+    }
+
+    public Function<Object, byte[]> getEncoder() {
+        return encoder;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public byte[] apply(Object value) {
+        byte[] bytes = encoder.apply(value);
+        if (bytes.length <= threshold) {
+            return bytes;
+        }
+        byte[] buf = BUFFER.get();
+        if (buf == null || buf.length < bytes.length) {
+            buf = new byte[bytes.length];
+            if (bytes.length <= MAX_CACHED_BUF_SIZE) {
+                BUFFER.set(buf);
+            }
+        }
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            // 只写入到 原数据长度 - 头部长度，写满说明压缩后没有变小
+            int limit = bytes.length - HEADER_SIZE;
+            int length = 0;
+            while (!deflater.finished() && length < limit) {
+                length += deflater.deflate(buf, length, limit - length);
+            }
+            if (!deflater.finished()) {
+                return bytes;
+            }
+            byte[] result = new byte[HEADER_SIZE + length];
+            writeHeader(result, IDENTITY_NUMBER);
+            result[4] = (byte) (bytes.length >>> 24);
+            result[5] = (byte) (bytes.length >>> 16);
+            result[6] = (byte) (bytes.length >>> 8);
+            result[7] = (byte) bytes.length;
+            System.arraycopy(buf, 0, result, HEADER_SIZE, length);
+            return result;
+        } finally {
+            deflater.reset();
+        }
+    }
+}
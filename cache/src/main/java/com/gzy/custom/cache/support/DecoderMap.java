@@ -26,6 +26,8 @@ public class DecoderMap {
     static void registerBuildInDecoder() {
         if (!inited) {
             register(JavaValueEncoder.IDENTITY_NUMBER, defaultJavaValueDecoder());
+            register(BinaryValueEncoder.IDENTITY_NUMBER, BinaryValueDecoder.INSTANCE);
+            register(CompressValueEncoder.IDENTITY_NUMBER, CompressValueDecoder.INSTANCE);
             inited = true;
         }
     }
@@ -0,0 +1,31 @@
+package com.gzy.custom.cache.support;
+
+import java.util.function.Consumer;
+
+/**
+ * 缓存失效消息的传输通道，MultiLevelCache 写入或删除数据后通过它通知其他节点删除本地缓存
+ *
+ * 实现只负责传输字节数组，消息的编码、合并由 CacheInvalidator 完成
+ */
+public interface InvalidationChannel {
+
+    /**
+     * 发布一条失效消息，不需要等待发送完成
+     *
+     * @param message 消息内容
+     */
+    void publish(byte[] message);
+
+    /**
+     * 订阅失效消息，包括当前节点自己发布的消息
+     *
+     * @param listener 消息处理器
+     */
+    void subscribe(Consumer<byte[]> listener);
+
+    /**
+     * 取消订阅并释放资源
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,52 @@
+package com.gzy.custom.cache.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 由后台守护线程按固定间隔更新的时钟，读取时间只是读取一个 volatile 字段
+ * 精度为 tickMillis，适合过期判断这类允许毫秒级误差的场景
+ */
+public class TickingCacheClock extends CacheClock implements AutoCloseable {
+
+    private static final long DEFAULT_TICK_MILLIS = 1;
+
+    private volatile long now = System.currentTimeMillis();
+
+    private volatile boolean running = true;
+
+    private final Thread ticker;
+
+    public TickingCacheClock() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+
+    public TickingCacheClock(long tickMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        ticker = new Thread(() -> {
+            while (running) {
+                now = System.currentTimeMillis();
+                LockSupport.parkNanos(tickNanos);
+            }
+        }, "JetCacheClockTicker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    /**
+     * 停止后台线程，之后时间不再更新
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
@@ -0,0 +1,159 @@
+package com.gzy.custom.cache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.gzy.custom.cache.localcache.LinkedHashMapCacheBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SynchronizedLoadAllTest {
+
+    private ExecutorService pool;
+    private AbstractCache<Integer, String> cache;
+    /**
+     * 每次 loadAll 调用的线程名和 Key
+     */
+    private final List<String> loadCalls = new CopyOnWriteArrayList<>();
+    /**
+     * 每次更新缓存的数据
+     */
+    private final List<Map<Integer, String>> updates = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(2, r -> new Thread(r, "loader-" + System.identityHashCode(r)));
+        cache = (AbstractCache) LinkedHashMapCacheBuilder.createLinkedHashMapCacheBuilder()
+                .limit(100).buildCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private static Set<Integer> keys(Integer... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    /**
+     * 加载时记录调用，started 计数后等待 release
+     */
+    private CacheLoader<Integer, String> loader(String name, CountDownLatch started, CountDownLatch release,
+                                                boolean fail) {
+        return new CacheLoader<Integer, String>() {
+            @Override
+            public String load(Integer key) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Map<Integer, String> loadAll(Set<Integer> keys) throws Throwable {
+                loadCalls.add(name + keys);
+                if (started != null) {
+                    started.countDown();
+                }
+                if (release != null) {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                if (fail) {
+                    throw new IllegalStateException("load failed");
+                }
+                Map<Integer, String> m = new HashMap<>();
+                keys.forEach(k -> m.put(k, name + k));
+                return m;
+            }
+        };
+    }
+
+    private Future<Map<Integer, String>> submit(Set<Integer> keys, CacheLoader<Integer, String> loader) {
+        Consumer<Map<Integer, String>> updater = updates::add;
+        return pool.submit(() -> {
+            try {
+                return AbstractCache.synchronizedLoadAll(cache.config(), cache, keys, loader, updater);
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    void overlappingKeysLoadedOnce() throws Exception {
+        CountDownLatch aStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<Integer, String>> a = submit(keys(1, 2, 3), loader("A", aStarted, release, false));
+        assertTrue(aStarted.await(5, TimeUnit.SECONDS));
+        CountDownLatch bStarted = new CountDownLatch(1);
+        Future<Map<Integer, String>> b = submit(keys(3, 4, 5), loader("B", bStarted, null, false));
+        assertTrue(bStarted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        Map<Integer, String> ra = a.get(5, TimeUnit.SECONDS);
+        Map<Integer, String> rb = b.get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of(1, "A1", 2, "A2", 3, "A3"), ra);
+        // Key 3 使用 A 的加载结果
+        assertEquals(Map.of(3, "A3", 4, "B4", 5, "B5"), rb);
+        assertEquals(Arrays.asList("A" + keys(1, 2, 3), "B" + keys(4, 5)), loadCalls.stream().sorted().toList());
+        assertEquals(2, updates.size());
+        assertTrue(cache.initOrGetLoaderMap().isEmpty());
+    }
+
+    @Test
+    void failedLoaderMakesWaitersRegisterAgain() throws Exception {
+        CountDownLatch aStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<Integer, String>> a = submit(keys(1, 3), loader("A", aStarted, release, true));
+        assertTrue(aStarted.await(5, TimeUnit.SECONDS));
+        CountDownLatch bStarted = new CountDownLatch(1);
+        Future<Map<Integer, String>> b = submit(keys(3, 4), loader("B", bStarted, null, false));
+        assertTrue(bStarted.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertThrows(Exception.class, () -> a.get(5, TimeUnit.SECONDS));
+        Map<Integer, String> rb = b.get(5, TimeUnit.SECONDS);
+        assertEquals(Map.of(3, "B3", 4, "B4"), rb);
+        // B 先加载自己登记的 4，A 失败后重新登记并加载 3，结果更新至缓存
+        assertEquals(Arrays.asList("A" + keys(1, 3), "B" + keys(4), "B" + keys(3)), loadCalls);
+        assertEquals(Arrays.asList(Map.of(4, "B4"), Map.of(3, "B3")), updates);
+        assertTrue(cache.initOrGetLoaderMap().isEmpty());
+    }
+
+    @Test
+    void sharedDeadlineTimeoutLoadsWithoutCacheUpdate() throws Exception {
+        cache.config().setPenetrationProtectTimeout(Duration.ofMillis(200));
+        CountDownLatch aStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<Integer, String>> a = submit(keys(1, 2, 3), loader("A", aStarted, release, false));
+        assertTrue(aStarted.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        Map<Integer, String> rb = submit(keys(1, 2, 3, 4), loader("B", null, null, false)).get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 三个 Key 共用一个等待截止时间，而不是每个 Key 各等待一次
+        assertTrue(elapsedMillis < 500, "waited " + elapsedMillis + "ms");
+        assertEquals(Map.of(1, "B1", 2, "B2", 3, "B3", 4, "B4"), rb);
+        // 超时后自己加载的 Key 不更新缓存，只有 B 登记成功的 4 更新了缓存
+        assertEquals(Arrays.asList(Map.of(4, "B4")), updates);
+        assertTrue(loadCalls.contains("B" + keys(1, 2, 3)));
+
+        release.countDown();
+        assertEquals(Map.of(1, "A1", 2, "A2", 3, "A3"), a.get(5, TimeUnit.SECONDS));
+        assertEquals(2, updates.size());
+    }
+}
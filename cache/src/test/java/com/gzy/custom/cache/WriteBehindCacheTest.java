@@ -0,0 +1,175 @@
+package com.gzy.custom.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import com.gzy.custom.cache.exception.CacheException;
+import com.gzy.custom.cache.localcache.LinkedHashMapCacheBuilder;
+import com.gzy.custom.cache.support.CacheClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<Map<String, String>> writes = new CopyOnWriteArrayList<>();
+    private final List<Set<String>> deletes = new CopyOnWriteArrayList<>();
+    private WriteBehindCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        CacheClock.setDefaultClock(new CacheClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now.get();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+        CacheClock.setDefaultClock(null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private WriteBehindCache<String, String> build(CacheWriter<String, String> writer, WriteBehindPolicy policy) {
+        cache = (WriteBehindCache) LinkedHashMapCacheBuilder.createLinkedHashMapCacheBuilder()
+                .limit(100).expireAfterWrite(1, TimeUnit.HOURS)
+                .writer(writer).writeBehindPolicy(policy).buildCache();
+        return cache;
+    }
+
+    private CacheWriter<String, String> recordingWriter() {
+        return new CacheWriter<String, String>() {
+            @Override
+            public void writeAll(Map<String, String> entries) {
+                writes.add(new HashMap<>(entries));
+            }
+
+            @Override
+            public void deleteAll(Set<String> keys) {
+                deletes.add(keys);
+            }
+        };
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in 5s");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void writesToSameKeyAreCoalesced() {
+        build(recordingWriter(), WriteBehindPolicy.newPolicy(1, TimeUnit.HOURS));
+        cache.put("k", "1");
+        cache.put("k", "2");
+        cache.put("j", "x");
+        cache.put("k", "3");
+        cache.put("d", "tmp");
+        cache.remove("d");
+        assertEquals(3, cache.dirtySize());
+        cache.flush();
+        assertEquals(List.of(Map.of("k", "3", "j", "x")), writes);
+        assertEquals(List.of(Set.of("d")), deletes);
+        assertEquals(0, cache.dirtySize());
+    }
+
+    @Test
+    void keyOverwrittenDuringFlushStaysDirty() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        build(entries -> {
+            writes.add(new HashMap<>(entries));
+            if (writes.size() == 1) {
+                writing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+        }, WriteBehindPolicy.newPolicy(1, TimeUnit.HOURS));
+        cache.put("k", "v1");
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(cache::flush);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // 写回 v1 期间写入 v2
+        cache.put("k", "v2");
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, cache.dirtySize());
+        assertEquals("v2", cache.get("k"));
+        cache.flush();
+        assertEquals(List.of(Map.of("k", "v1"), Map.of("k", "v2")), writes);
+        assertEquals(0, cache.dirtySize());
+    }
+
+    @Test
+    void failedWriteRetriesWithBackoffThenDrops() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        build(entries -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("db down");
+        }, WriteBehindPolicy.newPolicy(10, TimeUnit.MILLISECONDS).retry(2, 1, TimeUnit.HOURS));
+        cache.put("k", "v");
+        await(() -> attempts.get() == 1);
+        // 时钟没有前进，重试等待时间没到
+        Thread.sleep(100);
+        assertEquals(1, attempts.get());
+        assertEquals(1, cache.dirtySize());
+
+        now.addAndGet(HOUR);
+        await(() -> attempts.get() == 2);
+        // 第二次失败后等待 2 倍的重试间隔
+        now.addAndGet(HOUR);
+        Thread.sleep(100);
+        assertEquals(2, attempts.get());
+        now.addAndGet(HOUR);
+        await(() -> attempts.get() == 3);
+        // 超过最大重试次数后丢弃
+        await(() -> cache.dirtySize() == 0);
+        now.addAndGet(10 * HOUR);
+        Thread.sleep(100);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void backPressureTimesOutWhenWriterKeepsFailing() {
+        build(entries -> {
+            throw new IllegalStateException("db down");
+        }, WriteBehindPolicy.newPolicy(1, TimeUnit.HOURS).retry(100, 1, TimeUnit.SECONDS)
+                .maxDirtyEntries(2, 100, TimeUnit.MILLISECONDS));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // 已经在待写回的 Key 不占用新的空间
+        cache.put("a", "3");
+        long start = System.nanoTime();
+        assertThrows(CacheException.class, () -> cache.put("c", "4"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 100, "gave up after " + elapsedMillis + "ms");
+        assertEquals(2, cache.dirtySize());
+        List<String> values = new ArrayList<>();
+        values.add(cache.get("a"));
+        values.add(cache.get("b"));
+        assertEquals(List.of("3", "2"), values);
+    }
+}
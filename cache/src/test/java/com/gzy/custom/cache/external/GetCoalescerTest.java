@@ -0,0 +1,134 @@
+package com.gzy.custom.cache.external;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gzy.custom.cache.exception.CacheException;
+import com.gzy.custom.cache.support.CacheExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GetCoalescerTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 模拟 mget：Key 以 "k" 开头时返回 "v" + 后缀，否则返回 null，并在另一个线程中完成
+     */
+    private static CompletableFuture<List<byte[]>> mget(byte[][] keys, AtomicInteger batches) {
+        batches.incrementAndGet();
+        return CompletableFuture.supplyAsync(() -> {
+            List<byte[]> values = new ArrayList<>();
+            for (byte[] key : keys) {
+                String k = new String(key, StandardCharsets.UTF_8);
+                values.add(k.startsWith("k") ? bytes("v" + k.substring(1)) : null);
+            }
+            return values;
+        }, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void concurrentGetsAreCoalesced() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        GetCoalescer coalescer = new GetCoalescer(keys -> mget(keys, batches), 500, 64);
+        int threads = 50;
+        int perThread = 40;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+                        for (int i = 0; i < perThread; i++) {
+                            futures.add(coalescer.get(bytes("k" + (base + i))));
+                        }
+                        for (int i = 0; i < perThread; i++) {
+                            byte[] value = futures.get(i).get(5, TimeUnit.SECONDS);
+                            if (!("v" + (base + i)).equals(new String(value, StandardCharsets.UTF_8))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    } catch (Exception e) {
+                        return false;
+                    }
+                }, pool));
+            }
+            start.countDown();
+            for (CompletableFuture<Boolean> r : results) {
+                assertTrue(r.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // 2000 次查询合并成的批量查询次数明显更少
+        assertTrue(batches.get() < threads * perThread / 2, "batches: " + batches.get());
+    }
+
+    @Test
+    void missingKeyCompletesWithNull() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        GetCoalescer coalescer = new GetCoalescer(keys -> mget(keys, batches), 200, 64);
+        assertNull(coalescer.get(bytes("missing")).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shortReplyFailsEveryCaller() throws Exception {
+        GetCoalescer coalescer = new GetCoalescer(
+                keys -> CompletableFuture.completedFuture(Collections.singletonList(bytes("v"))), 1_000_000, 2);
+        CompletableFuture<byte[]> f1 = coalescer.get(bytes("k1"));
+        CompletableFuture<byte[]> f2 = coalescer.get(bytes("k2"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f2.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof CacheException);
+        assertThrows(ExecutionException.class, () -> f1.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void nullReplyFailsEveryCaller() throws Exception {
+        GetCoalescer coalescer = new GetCoalescer(keys -> CompletableFuture.completedFuture(null), 200, 64);
+        CompletableFuture<byte[]> f = coalescer.get(bytes("k1"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof CacheException);
+    }
+
+    @Test
+    void windowFlushDoesNotWaitForDefaultExecutor() throws Exception {
+        AtomicInteger batches = new AtomicInteger();
+        GetCoalescer coalescer = new GetCoalescer(keys -> mget(keys, batches), 200, 64);
+        CountDownLatch release = new CountDownLatch(1);
+        // 占住 defaultExecutor 唯一的线程
+        CacheExecutor.defaultExecutor().execute(() -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            byte[] value = coalescer.get(bytes("k1")).get(1, TimeUnit.SECONDS);
+            assertEquals("v1", new String(value, StandardCharsets.UTF_8));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.gzy.custom.cache.localcache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongKeyMapTest {
+
+    private static final Object ABSENT = new Object();
+    private static final long NOW = 1_000_000;
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * 哈希值低 10 位相同的 Key，表容量不超过 1024 时全部落在同一个槽位上
+     */
+    private static List<Long> collidingKeys(int count) {
+        List<Long> keys = new ArrayList<>();
+        for (long k = 0; keys.size() < count; k++) {
+            if ((LongKeyMap.mix(k) & 1023) == 0) {
+                keys.add(k);
+            }
+        }
+        return keys;
+    }
+
+    private static List<Long> keyPool(Random random) {
+        List<Long> keys = new ArrayList<>(collidingKeys(40));
+        for (int i = 0; i < 200; i++) {
+            keys.add(random.nextLong());
+        }
+        for (long i = -20; i < 20; i++) {
+            keys.add(i);
+        }
+        return keys;
+    }
+
+    private static void assertSameContent(Map<Long, Object> expected, LongKeyMap map, List<Long> keyPool) {
+        assertEquals(expected.size(), map.size());
+        for (long key : keyPool) {
+            CacheValueHolder<Object> holder = map.peekHolder(key);
+            if (expected.containsKey(key)) {
+                assertNotNull(holder, "missing key " + key);
+                assertSame(expected.get(key), holder.getValue());
+            } else {
+                assertNull(holder, "unexpected key " + key);
+            }
+        }
+    }
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            List<Long> keyPool = keyPool(random);
+            // max 大于 Key 的数量，不会触发淘汰
+            LongKeyMap map = new LongKeyMap(1000, false);
+            Map<Long, Object> expected = new HashMap<>();
+            for (int op = 0; op < 5000; op++) {
+                long key = keyPool.get(random.nextInt(keyPool.size()));
+                int action = random.nextInt(10);
+                if (action < 3) {
+                    Object value = new Object();
+                    map.put(key, value, NEVER, NOW);
+                    expected.put(key, value);
+                } else if (action < 4) {
+                    Object value = new Object();
+                    boolean absent = !expected.containsKey(key);
+                    assertEquals(absent, map.putIfAbsent(key, value, NEVER, NOW, 0));
+                    expected.putIfAbsent(key, value);
+                } else if (action < 8) {
+                    // 删除为主，覆盖 backward shift 的各种位置
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                } else {
+                    Object value = map.get(key, NOW, 0, ABSENT);
+                    assertSame(expected.containsKey(key) ? expected.get(key) : ABSENT, value);
+                }
+                assertEquals(expected.size(), map.size());
+                if (op % 100 == 0) {
+                    assertSameContent(expected, map, keyPool);
+                }
+            }
+            assertSameContent(expected, map, keyPool);
+        }
+    }
+
+    @Test
+    void collidingKeysSurviveRemovalInAnyOrder() {
+        List<Long> keys = collidingKeys(30);
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            LongKeyMap map = new LongKeyMap(100, false);
+            Map<Long, Object> expected = new HashMap<>();
+            for (long key : keys) {
+                Object value = new Object();
+                map.put(key, value, NEVER, NOW);
+                expected.put(key, value);
+            }
+            List<Long> order = new ArrayList<>(keys);
+            Collections.shuffle(order, random);
+            for (long key : order) {
+                assertTrue(map.remove(key));
+                expected.remove(key);
+                assertSameContent(expected, map, keys);
+            }
+        }
+    }
+
+    @Test
+    void evictionKeepsSizeAndValues() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            List<Long> keyPool = keyPool(random);
+            int max = 1 + random.nextInt(64);
+            LongKeyMap map = new LongKeyMap(max, false);
+            // 每个 Key 最后一次写入的值，被删除的 Key 不在其中
+            Map<Long, Object> latest = new HashMap<>();
+            for (int op = 0; op < 5000; op++) {
+                long key = keyPool.get(random.nextInt(keyPool.size()));
+                int action = random.nextInt(10);
+                if (action < 5) {
+                    Object value = new Object();
+                    map.put(key, value, NEVER, NOW);
+                    latest.put(key, value);
+                    assertSame(value, map.peekHolder(key).getValue());
+                } else if (action < 8) {
+                    map.remove(key);
+                    latest.remove(key);
+                } else {
+                    Object value = map.get(key, NOW, 0, ABSENT);
+                    if (value != ABSENT) {
+                        assertSame(latest.get(key), value);
+                    }
+                }
+                assertTrue(map.size() <= max);
+            }
+            // 留在表中的 Key 都是最后一次写入的值，表的大小与实际存在的 Key 数量一致
+            int present = 0;
+            for (long key : latest.keySet()) {
+                CacheValueHolder<Object> holder = map.peekHolder(key);
+                if (holder != null) {
+                    assertSame(latest.get(key), holder.getValue());
+                    present++;
+                }
+            }
+            for (long key : keyPool) {
+                if (!latest.containsKey(key)) {
+                    assertNull(map.peekHolder(key));
+                }
+            }
+            assertEquals(present, map.size());
+        }
+    }
+
+    @Test
+    void clockEvictionSkipsReferencedKey() {
+        LongKeyMap map = new LongKeyMap(4, false);
+        for (long k = 0; k < 4; k++) {
+            map.put(k, "v" + k, NEVER, NOW);
+        }
+        for (long k = 4; k < 20; k++) {
+            // 每次写入新 Key 之前访问 0，它一直不会被淘汰
+            assertEquals("v0", map.get(0, NOW, 0, ABSENT));
+            map.put(k, "v" + k, NEVER, NOW);
+            assertEquals(4, map.size());
+        }
+        assertNotNull(map.peekHolder(0));
+    }
+
+    @Test
+    void expiredKeysEvictedFirstAndCleaned() {
+        LongKeyMap map = new LongKeyMap(4, false);
+        map.put(1, "a", NOW + 10, NOW);
+        map.put(2, "b", NEVER, NOW);
+        map.put(3, "c", NEVER, NOW);
+        map.put(4, "d", NEVER, NOW);
+        for (long k = 2; k <= 4; k++) {
+            map.get(k, NOW + 20, 0, ABSENT);
+        }
+        // 2、3、4 都被访问过，过期的 1 被淘汰
+        map.put(5, "e", NEVER, NOW + 20);
+        assertNull(map.peekHolder(1));
+        assertEquals(4, map.size());
+
+        map.put(6, "x", NOW + 30, NOW + 20);
+        assertSame(LongKeyMap.EXPIRED, map.getHolder(6, NOW + 40, 0));
+        assertFalse(map.remove(6));
+
+        LongKeyMap cleaned = new LongKeyMap(100, true);
+        for (long k = 0; k < 50; k++) {
+            cleaned.put(k, "v", k % 2 == 0 ? NOW + 10 : NEVER, NOW);
+        }
+        int removed = 0;
+        for (int i = 0; i < 10; i++) {
+            removed += cleaned.cleanExpired(NOW + 20, 0, 64);
+        }
+        assertEquals(25, removed);
+        assertEquals(25, cleaned.size());
+        for (long k = 0; k < 50; k++) {
+            assertEquals(k % 2 == 1, cleaned.peekHolder(k) != null);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.gzy.custom.cache.localcache;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import com.gzy.custom.cache.support.CacheClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapMapTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @BeforeEach
+    void setUp() {
+        CacheClock.setDefaultClock(new CacheClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now.get();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        CacheClock.setDefaultClock(null);
+    }
+
+    private static OffHeapMap newMap(int limit) {
+        // 每个值 16 字节，每个内存块可以放 4 个值，共 4 个内存块
+        return new OffHeapMap(limit, 256, 64,
+                v -> ((String) v).getBytes(StandardCharsets.UTF_8),
+                b -> new String(b, StandardCharsets.UTF_8));
+    }
+
+    private CacheValueHolder<String> holder(String value, long ttl) {
+        return new CacheValueHolder<>(String.format("%-16s", value), ttl);
+    }
+
+    /**
+     * 索引中的每个 Key 恰好出现在一个内存块的 Key 集合中，集合中没有多余的 Key
+     */
+    private static void assertTrackedOnce(OffHeapMap map) throws Exception {
+        Field indexField = OffHeapMap.class.getDeclaredField("index");
+        indexField.setAccessible(true);
+        Field slabKeysField = OffHeapMap.class.getDeclaredField("slabKeys");
+        slabKeysField.setAccessible(true);
+        Map<Object, ?> index = (Map<Object, ?>) indexField.get(map);
+        Set<Object>[] slabKeys = (Set<Object>[]) slabKeysField.get(map);
+        int tracked = 0;
+        Set<Object> all = new HashSet<>();
+        for (Set<Object> keys : slabKeys) {
+            tracked += keys.size();
+            all.addAll(keys);
+        }
+        assertEquals(tracked, all.size(), "key tracked in more than one slab");
+        assertEquals(index.keySet(), all);
+    }
+
+    @Test
+    void lruEvictionUntracksKey() throws Exception {
+        OffHeapMap map = newMap(3);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 6; i++) {
+                map.putValue("k" + i, holder("v" + round, 60_000));
+                assertTrackedOnce(map);
+            }
+        }
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void expiredKeyUntrackedOnRead() throws Exception {
+        OffHeapMap map = newMap(100);
+        map.putValue("a", holder("a", 10));
+        map.putValue("b", holder("b", 10));
+        now.addAndGet(20);
+        CacheValueHolder<?> expired = (CacheValueHolder<?>) map.getValue("a");
+        assertTrue(expired.getValue() == null && expired.getExpireTime() <= now.get());
+        map.getAllValues(Arrays.asList("b"));
+        assertTrackedOnce(map);
+        // 写满当前内存块，之后再次写入的 Key 位于其他内存块
+        for (int i = 0; i < 6; i++) {
+            map.putValue("f" + i, holder("f", 60_000));
+        }
+        map.putValue("a", holder("a2", 60_000));
+        map.putValue("b", holder("b2", 60_000));
+        assertTrackedOnce(map);
+        assertEquals("a2", ((String) ((CacheValueHolder<?>) map.getValue("a")).getValue()).trim());
+    }
+
+    @Test
+    void recycledSlabDropsItsKeys() throws Exception {
+        OffHeapMap map = newMap(1000);
+        for (int i = 0; i < 40; i++) {
+            map.putValue("k" + i, holder("v", 60_000));
+            assertTrackedOnce(map);
+        }
+        // 4 个内存块最多保留 16 个值
+        assertTrue(map.size() <= 16);
+        assertNull(map.getValue("k0"));
+    }
+}
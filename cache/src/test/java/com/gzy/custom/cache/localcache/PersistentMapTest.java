@@ -0,0 +1,141 @@
+package com.gzy.custom.cache.localcache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import com.gzy.custom.cache.support.CacheClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PersistentMapTest {
+
+    private static final int SLAB_SIZE = 256;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @TempDir
+    File directory;
+
+    @BeforeEach
+    void setUp() {
+        CacheClock.setDefaultClock(new CacheClock() {
+            @Override
+            public long currentTimeMillis() {
+                return now.get();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        CacheClock.setDefaultClock(null);
+    }
+
+    private PersistentMap open() {
+        return new PersistentMap(10000, 4 * SLAB_SIZE, SLAB_SIZE,
+                v -> ((String) v).getBytes(StandardCharsets.UTF_8),
+                b -> new String(b, StandardCharsets.UTF_8), directory);
+    }
+
+    private static void put(PersistentMap map, String key, String value, long ttl) {
+        map.putValue(key, new CacheValueHolder<>(value, ttl));
+    }
+
+    private static String get(PersistentMap map, String key) {
+        CacheValueHolder<?> holder = (CacheValueHolder<?>) map.getValue(key);
+        return holder == null ? null : (String) holder.getValue();
+    }
+
+    private PersistentMap reopen(PersistentMap map) {
+        map.force();
+        return open();
+    }
+
+    @Test
+    void replaysLatestValueInSlabOrder() {
+        PersistentMap map = open();
+        Map<String, String> expected = new HashMap<>();
+        // 写入约 10 个内存块的数据，内存块会被循环复用，文件下标与内存块序号不再一致
+        for (int i = 0; i < 120; i++) {
+            String key = "k" + (i % 7);
+            String value = "value-" + i;
+            put(map, key, value, 60_000);
+            expected.put(key, value);
+        }
+        PersistentMap reopened = reopen(map);
+        for (Map.Entry<String, String> en : expected.entrySet()) {
+            assertEquals(en.getValue(), get(reopened, en.getKey()), en.getKey());
+        }
+        // 重启后继续写入，不会覆盖已恢复的数据
+        put(reopened, "new", "n", 60_000);
+        PersistentMap again = reopen(reopened);
+        assertEquals("n", get(again, "new"));
+        assertEquals(expected.get("k3"), get(again, "k3"));
+    }
+
+    @Test
+    void tombstoneRemovesKeyAfterRestart() {
+        PersistentMap map = open();
+        put(map, "a", "1", 60_000);
+        put(map, "b", "2", 60_000);
+        map.removeValue("a");
+        map.removeAllValues(Arrays.asList("b"));
+        put(map, "c", "3", 60_000);
+        PersistentMap reopened = reopen(map);
+        assertNull(get(reopened, "a"));
+        assertNull(get(reopened, "b"));
+        assertEquals("3", get(reopened, "c"));
+        assertEquals(1, reopened.size());
+    }
+
+    @Test
+    void expiredEntriesAreSkipped() {
+        PersistentMap map = open();
+        put(map, "short", "s", 10);
+        put(map, "long", "l", 60_000);
+        now.addAndGet(100);
+        PersistentMap reopened = reopen(map);
+        assertEquals(1, reopened.size());
+        assertNull(get(reopened, "short"));
+        assertEquals("l", get(reopened, "long"));
+    }
+
+    @Test
+    void tornLastRecordIsIgnored() {
+        PersistentMap map = new PersistentMap(10000, 4 * SLAB_SIZE, SLAB_SIZE,
+                v -> ((String) v).getBytes(StandardCharsets.UTF_8),
+                b -> new String(b, StandardCharsets.UTF_8), directory) {
+            @Override
+            protected int writeRecord(ByteBuffer slab, int position, Object key, byte[] value, long expireTime) {
+                int offset = super.writeRecord(slab, position, key, value, expireTime);
+                if (value != null && "torn".equals(new String(value, StandardCharsets.UTF_8))) {
+                    // 模拟写入 keyLength 之前进程崩溃
+                    slab.putInt(position, 0);
+                }
+                return offset;
+            }
+        };
+        put(map, "a", "1", 60_000);
+        put(map, "a", "torn", 60_000);
+        put(map, "b", "torn", 60_000);
+        PersistentMap reopened = reopen(map);
+        assertEquals("1", get(reopened, "a"));
+        assertNull(get(reopened, "b"));
+        // 从不完整记录的位置继续写入
+        put(reopened, "c", "3", 60_000);
+        PersistentMap again = reopen(reopened);
+        assertEquals("1", get(again, "a"));
+        assertEquals("3", get(again, "c"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.gzy.custom.cache.support;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.gzy.custom.cache.CacheValueHolder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BinaryValueCodecTest {
+
+    static final class User implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String name;
+        final int age;
+
+        User(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof User && ((User) o).name.equals(name) && ((User) o).age == age;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, age);
+        }
+    }
+
+    private static Object roundTrip(Object value, byte expectedType) {
+        byte[] bytes = BinaryValueEncoder.INSTANCE.apply(value);
+        assertEquals(BinaryValueEncoder.IDENTITY_NUMBER, BinaryValueDecoder.INSTANCE.parseHeader(bytes));
+        assertEquals(expectedType, bytes[4]);
+        Object decoded = BinaryValueDecoder.INSTANCE.apply(bytes);
+        if (value != null) {
+            assertSame(value.getClass(), decoded.getClass());
+        }
+        return decoded;
+    }
+
+    private static void assertRoundTrip(Object value, byte expectedType) {
+        assertEquals(value, roundTrip(value, expectedType));
+    }
+
+    @Test
+    void scalars() {
+        assertNull(roundTrip(null, BinaryValueEncoder.TYPE_NULL));
+        assertRoundTrip(true, BinaryValueEncoder.TYPE_TRUE);
+        assertRoundTrip(false, BinaryValueEncoder.TYPE_FALSE);
+        assertRoundTrip((byte) -7, BinaryValueEncoder.TYPE_BYTE);
+        assertRoundTrip(Short.MIN_VALUE, BinaryValueEncoder.TYPE_SHORT);
+        assertRoundTrip('中', BinaryValueEncoder.TYPE_CHAR);
+        for (int v : new int[]{0, 1, -1, 63, -64, 64, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertRoundTrip(v, BinaryValueEncoder.TYPE_INT);
+        }
+        for (long v : new long[]{0, -1, 1L << 40, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertRoundTrip(v, BinaryValueEncoder.TYPE_LONG);
+        }
+        assertRoundTrip(-1.5f, BinaryValueEncoder.TYPE_FLOAT);
+        assertRoundTrip(Float.NaN, BinaryValueEncoder.TYPE_FLOAT);
+        assertRoundTrip(Math.PI, BinaryValueEncoder.TYPE_DOUBLE);
+        assertRoundTrip(Double.NEGATIVE_INFINITY, BinaryValueEncoder.TYPE_DOUBLE);
+        assertRoundTrip("", BinaryValueEncoder.TYPE_STRING);
+        assertRoundTrip("ascii only", BinaryValueEncoder.TYPE_STRING);
+        assertRoundTrip("中文 😀 mixed", BinaryValueEncoder.TYPE_STRING);
+        assertArrayEquals(new byte[]{1, -2, 3}, (byte[]) roundTrip(new byte[]{1, -2, 3}, BinaryValueEncoder.TYPE_BYTES));
+        assertRoundTrip(new Date(1_600_000_000_123L), BinaryValueEncoder.TYPE_DATE);
+        assertRoundTrip(new BigDecimal("-12345.678900"), BinaryValueEncoder.TYPE_BIG_DECIMAL);
+        assertRoundTrip(new BigInteger("-123456789012345678901234567890"), BinaryValueEncoder.TYPE_BIG_INTEGER);
+    }
+
+    @Test
+    void collections() {
+        assertRoundTrip(new ArrayList<>(Arrays.asList(1, "a", null, 2L)), BinaryValueEncoder.TYPE_ARRAY_LIST);
+        assertRoundTrip(new LinkedList<>(Arrays.asList("x", "y")), BinaryValueEncoder.TYPE_LINKED_LIST);
+        assertRoundTrip(new HashSet<>(Arrays.asList(1, 2, 3)), BinaryValueEncoder.TYPE_HASH_SET);
+        LinkedHashSet<String> linkedSet = new LinkedHashSet<>(Arrays.asList("c", "a", "b"));
+        LinkedHashSet<?> decodedSet = (LinkedHashSet<?>) roundTrip(linkedSet, BinaryValueEncoder.TYPE_LINKED_HASH_SET);
+        assertEquals(new ArrayList<>(linkedSet), new ArrayList<>(decodedSet));
+        Map<Object, Object> map = new HashMap<>();
+        map.put("k", 1);
+        map.put(2, null);
+        assertRoundTrip(map, BinaryValueEncoder.TYPE_HASH_MAP);
+        LinkedHashMap<String, Integer> linkedMap = new LinkedHashMap<>();
+        linkedMap.put("z", 1);
+        linkedMap.put("a", 2);
+        LinkedHashMap<?, ?> decodedMap = (LinkedHashMap<?, ?>) roundTrip(linkedMap, BinaryValueEncoder.TYPE_LINKED_HASH_MAP);
+        assertEquals(new ArrayList<>(linkedMap.keySet()), new ArrayList<>(decodedMap.keySet()));
+        assertRoundTrip(new ArrayList<>(), BinaryValueEncoder.TYPE_ARRAY_LIST);
+    }
+
+    @Test
+    void nestedCollections() {
+        Map<String, Object> inner = new HashMap<>();
+        inner.put("list", new ArrayList<>(Arrays.asList(new HashSet<>(Arrays.asList(1, 2)), new LinkedList<>())));
+        inner.put("date", new Date(1L));
+        LinkedHashMap<String, Object> outer = new LinkedHashMap<>();
+        outer.put("inner", inner);
+        outer.put("user", new User("n", 3));
+        List<Object> value = new ArrayList<>(Arrays.asList(outer, new BigDecimal("1.0"), "s"));
+        List<?> decoded = (List<?>) roundTrip(value, BinaryValueEncoder.TYPE_ARRAY_LIST);
+        assertEquals(value, decoded);
+        Map<?, ?> decodedInner = (Map<?, ?>) ((Map<?, ?>) decoded.get(0)).get("inner");
+        assertSame(HashSet.class, ((List<?>) decodedInner.get("list")).get(0).getClass());
+        assertSame(LinkedList.class, ((List<?>) decodedInner.get("list")).get(1).getClass());
+    }
+
+    @Test
+    void javaSerializationFallback() {
+        assertRoundTrip(new User("name", 18), BinaryValueEncoder.TYPE_JAVA);
+        TreeMap<String, Integer> treeMap = new TreeMap<>();
+        treeMap.put("b", 2);
+        treeMap.put("a", 1);
+        assertRoundTrip(treeMap, BinaryValueEncoder.TYPE_JAVA);
+        // Arrays.asList 不是 ArrayList，不能按集合编码
+        assertRoundTrip(Arrays.asList(1, 2), BinaryValueEncoder.TYPE_JAVA);
+    }
+
+    @Test
+    void holders() {
+        CacheValueHolder<Object> holder = new CacheValueHolder<>();
+        holder.setValue(new ArrayList<>(Arrays.asList("v", 1)));
+        holder.setExpireTime(1_700_000_000_000L);
+        holder.setAccessTime(1_699_999_999_000L);
+        CacheValueHolder<?> decoded = (CacheValueHolder<?>) roundTrip(holder, BinaryValueEncoder.TYPE_HOLDER);
+        assertEquals(holder.getValue(), decoded.getValue());
+        assertEquals(holder.getExpireTime(), decoded.getExpireTime());
+        assertEquals(holder.getAccessTime(), decoded.getAccessTime());
+        assertEquals(0, decoded.getExpireAfterWrite());
+
+        CacheValueHolder<String> withTtl = new CacheValueHolder<>("v", 60_000);
+        CacheValueHolder<?> decodedTtl = (CacheValueHolder<?>) roundTrip(withTtl, BinaryValueEncoder.TYPE_HOLDER_TTL);
+        assertEquals("v", decodedTtl.getValue());
+        assertEquals(withTtl.getExpireTime(), decodedTtl.getExpireTime());
+        assertEquals(withTtl.getAccessTime(), decodedTtl.getAccessTime());
+        assertEquals(60_000, decodedTtl.getExpireAfterWrite());
+
+        CacheValueHolder<Object> nullValue = new CacheValueHolder<>(null, 1000);
+        assertNull(((CacheValueHolder<?>) roundTrip(nullValue, BinaryValueEncoder.TYPE_HOLDER_TTL)).getValue());
+    }
+
+    @Test
+    void withoutIdentityNumber() {
+        BinaryValueEncoder encoder = new BinaryValueEncoder(false);
+        BinaryValueDecoder decoder = new BinaryValueDecoder(false);
+        assertEquals("plain", decoder.apply(encoder.apply("plain")));
+    }
+
+    @Test
+    void javaEncodedEntriesStillDecode() {
+        // 切换编码方式之前写入的数据仍然按标识数字找到 Java 解码器
+        User user = new User("old", 1);
+        assertEquals(user, BinaryValueDecoder.INSTANCE.apply(JavaValueEncoder.INSTANCE.apply(user)));
+        CacheValueHolder<User> holder = new CacheValueHolder<>(user, 1000);
+        CacheValueHolder<?> decoded = (CacheValueHolder<?>) BinaryValueDecoder.INSTANCE
+                .apply(JavaValueEncoder.INSTANCE.apply(holder));
+        assertEquals(user, decoded.getValue());
+        assertEquals(holder.getExpireTime(), decoded.getExpireTime());
+        // 反过来 Java 解码器也能解码新格式的数据
+        assertEquals(user, DecoderMap.defaultJavaValueDecoder().apply(BinaryValueEncoder.INSTANCE.apply(user)));
+    }
+}
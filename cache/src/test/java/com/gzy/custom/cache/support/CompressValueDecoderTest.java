@@ -0,0 +1,69 @@
+package com.gzy.custom.cache.support;
+
+import java.util.Arrays;
+
+import com.gzy.custom.cache.exception.CacheException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CompressValueDecoderTest {
+
+    private static final CompressValueEncoder ENCODER = new CompressValueEncoder(BinaryValueEncoder.INSTANCE, 16);
+
+    private static byte[] compressed() {
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        byte[] bytes = ENCODER.apply(new String(chars));
+        assertEquals(CompressValueEncoder.IDENTITY_NUMBER, CompressValueDecoder.INSTANCE.parseHeader(bytes));
+        return bytes;
+    }
+
+    private static void setLength(byte[] bytes, int length) {
+        bytes[4] = (byte) (length >>> 24);
+        bytes[5] = (byte) (length >>> 16);
+        bytes[6] = (byte) (length >>> 8);
+        bytes[7] = (byte) length;
+    }
+
+    @Test
+    void roundTrip() {
+        byte[] bytes = compressed();
+        assertEquals(1000, ((String) CompressValueDecoder.INSTANCE.apply(bytes)).length());
+    }
+
+    @Test
+    void truncatedHeader() {
+        byte[] bytes = Arrays.copyOf(compressed(), 6);
+        assertThrows(CacheException.class, () -> CompressValueDecoder.INSTANCE.apply(bytes));
+    }
+
+    @Test
+    void truncatedData() {
+        byte[] full = compressed();
+        byte[] bytes = Arrays.copyOf(full, CompressValueEncoder.HEADER_SIZE + 4);
+        assertThrows(CacheException.class, () -> CompressValueDecoder.INSTANCE.apply(bytes));
+    }
+
+    @Test
+    void negativeLength() {
+        byte[] bytes = compressed();
+        setLength(bytes, -1);
+        assertThrows(CacheException.class, () -> CompressValueDecoder.INSTANCE.apply(bytes));
+    }
+
+    @Test
+    void lengthBeyondDeflateRatio() {
+        byte[] bytes = compressed();
+        setLength(bytes, Integer.MAX_VALUE);
+        assertThrows(CacheException.class, () -> CompressValueDecoder.INSTANCE.apply(bytes));
+    }
+
+    @Test
+    void lengthBeyondMaxLength() {
+        byte[] bytes = compressed();
+        CompressValueDecoder decoder = new CompressValueDecoder(100);
+        assertThrows(CacheException.class, () -> decoder.doApply(bytes));
+    }
+}